@@ -0,0 +1,93 @@
+package com.zwift.elements;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable copy of one event card from the events listing.
+ * <p>
+ * Values are read from the page once, so unlike a WebElement a card never goes stale and reading a field costs no
+ * remote call.
+ */
+public final class EventCard {
+
+    private final String id;
+    private final String title;
+    private final String sport;
+    private final String startTime;
+    private final String type;
+    private final String link;
+
+    public EventCard(String id, String title, String sport, String startTime, String type, String link) {
+        this.id = id;
+        this.title = title;
+        this.sport = sport;
+        this.startTime = startTime;
+        this.type = type;
+        this.link = link;
+    }
+
+    /**
+     * @param values One row returned by event-listing.js
+     * @return The card, with missing values as empty strings
+     */
+    static EventCard of(Map<?, ?> values) {
+        return new EventCard(value(values, "id"), value(values, "title"), value(values, "sport"),
+                value(values, "startTime"), value(values, "type"), value(values, "link"));
+    }
+
+    private static String value(Map<?, ?> values, String key) {
+        Object value = values.get(key);
+        return value == null ? "" : value.toString();
+    }
+
+    /**
+     * @return Identifier of the card: its data-id, element id or link, whichever the page provides first
+     */
+    public String getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getSport() {
+        return sport;
+    }
+
+    public String getStartTime() {
+        return startTime;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getLink() {
+        return link;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof EventCard)) {
+            return false;
+        }
+        EventCard that = (EventCard) o;
+        return id.equals(that.id) && title.equals(that.title) && sport.equals(that.sport)
+                && startTime.equals(that.startTime) && type.equals(that.type) && link.equals(that.link);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, title, sport, startTime, type, link);
+    }
+
+    @Override
+    public String toString() {
+        return "EventCard{" + title + ", " + sport + ", " + type + ", " + startTime + ", " + link + "}";
+    }
+}
@@ -0,0 +1,131 @@
+package com.zwift.elements;
+
+import com.zwift.framework.utils.Scripts;
+import org.openqa.selenium.JavascriptExecutor;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams the cards of an infinitely scrolling events listing.
+ * <p>
+ * Cards are read in batches of at most {@code batchSize}. Each batch only contains cards the page has not returned
+ * before (they are marked in the DOM), found by walking the page from the last card read so earlier cards are not
+ * searched again, and when none are left the listing is scrolled to trigger the next lazy load.
+ * Pages that re-mount cards are handled by a fixed-size window of recently seen ids, so memory and per-batch latency
+ * stay flat however long the listing is. The stream ends once scrolling stops producing new cards.
+ */
+public class EventCardIterator implements Iterator<EventCard> {
+
+    private static final int DEFAULT_WINDOW = 1024;
+    private static final int IDLE_ROUNDS = 2;
+
+    private final JavascriptExecutor js;
+    private final String cardSelector;
+    private final int batchSize;
+    private final Duration settle;
+
+    private final Deque<EventCard> buffer = new ArrayDeque<>();
+    private final Map<String, Boolean> seen;
+
+    private boolean exhausted;
+    private int batches;
+    private long lastBatchNanos;
+
+    /**
+     * @param js           Driver of the page holding the listing
+     * @param cardSelector CSS selector matching one event card
+     * @param batchSize    Maximum number of cards read per script call
+     * @param settle       How long to wait for new cards after scrolling before treating the listing as complete
+     */
+    public EventCardIterator(JavascriptExecutor js, String cardSelector, int batchSize, Duration settle) {
+        this(js, cardSelector, batchSize, settle, DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param window Number of recent card ids remembered to drop re-rendered duplicates
+     */
+    public EventCardIterator(JavascriptExecutor js, String cardSelector, int batchSize, Duration settle, int window) {
+        this.js = js;
+        this.cardSelector = cardSelector;
+        this.batchSize = batchSize;
+        this.settle = settle;
+        this.seen = new LinkedHashMap<String, Boolean>(window * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > window;
+            }
+        };
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (buffer.isEmpty() && !exhausted) {
+            fetch();
+        }
+        return !buffer.isEmpty();
+    }
+
+    @Override
+    public EventCard next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more events in the listing");
+        }
+        return buffer.poll();
+    }
+
+    /**
+     * @return Number of batches read from the page so far
+     */
+    public int getBatches() {
+        return batches;
+    }
+
+    /**
+     * @return Wall time of the most recent batch, including any scrolling it needed
+     */
+    public Duration getLastBatchDuration() {
+        return Duration.ofNanos(lastBatchNanos);
+    }
+
+    /**
+     * @return Number of card ids currently held for de-duplication, never more than the window size
+     */
+    public int getSeenWindowSize() {
+        return seen.size();
+    }
+
+    private void fetch() {
+        long start = System.nanoTime();
+        for (int idle = 0; idle < IDLE_ROUNDS; ) {
+            List<?> rows = (List<?>) js.executeScript(Scripts.load("event-listing.js"), cardSelector, batchSize, true);
+            if (!rows.isEmpty()) {
+                for (Object row : rows) {
+                    offer(EventCard.of((Map<?, ?>) row));
+                }
+                batches++;
+                lastBatchNanos = System.nanoTime() - start;
+                return;
+            }
+            Number unread = (Number) js.executeAsyncScript(Scripts.load("scroll-for-more.js"), cardSelector,
+                    settle.toMillis());
+            if (unread == null || unread.intValue() == 0) {
+                idle++;
+            }
+        }
+        exhausted = true;
+    }
+
+    private void offer(EventCard card) {
+        String key = card.getId().isEmpty() ? card.getTitle() + '\u001f' + card.getStartTime() : card.getId();
+        if (seen.put(key, Boolean.TRUE) == null) {
+            buffer.add(card);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.zwift.elements;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot of the events listing: the cards in page order plus a content hash.
+ * <p>
+ * The hash only depends on the card values, so two snapshots of the same listing match even though they were read
+ * from different DOM nodes, and any added, removed, reordered or edited card changes it.
+ */
+public final class EventListing {
+
+    private final List<EventCard> cards;
+    private final String contentHash;
+
+    public EventListing(List<EventCard> cards) {
+        this.cards = Collections.unmodifiableList(new ArrayList<>(cards));
+        this.contentHash = hash(this.cards);
+    }
+
+    /**
+     * @param rows Rows returned by event-listing.js
+     * @return The listing
+     */
+    static EventListing of(List<?> rows) {
+        List<EventCard> cards = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            cards.add(EventCard.of((Map<?, ?>) row));
+        }
+        return new EventListing(cards);
+    }
+
+    public List<EventCard> getCards() {
+        return cards;
+    }
+
+    public int size() {
+        return cards.size();
+    }
+
+    /**
+     * @return Hex encoded SHA-256 of every card's values in page order
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    private static String hash(List<EventCard> cards) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (EventCard card : cards) {
+            for (String field : new String[]{card.getId(), card.getTitle(), card.getSport(), card.getStartTime(),
+                    card.getType(), card.getLink()}) {
+                digest.update(field.getBytes(StandardCharsets.UTF_8));
+                // Unit separator, keeps ("ab", "c") and ("a", "bc") apart
+                digest.update((byte) 0x1f);
+            }
+            digest.update((byte) 0x1e);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof EventListing && contentHash.equals(((EventListing) o).contentHash));
+    }
+
+    @Override
+    public int hashCode() {
+        return contentHash.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "EventListing{" + cards.size() + " cards, " + contentHash.substring(0, 12) + "}";
+    }
+}
@@ -1,14 +1,24 @@
 package com.zwift.elements;
 
 import com.zwift.framework.helpers.Helper;
+import com.zwift.framework.metrics.PerformanceBudget;
+import com.zwift.framework.utils.Scripts;
 import io.qameta.allure.Step;
 import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.TimeoutException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.ui.WebDriverWait;
 import org.testng.Assert;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Created by DHOLMAN on 09/13/21.
@@ -18,8 +28,13 @@ public class Events {
     private WebDriver driver;
     private Helper helper;
 
+    private static final String EVENT_CARD = ".tab-listing";
+    private static final int STREAM_BATCH_SIZE = 50;
+    private static final Duration STREAM_SETTLE = Duration.ofSeconds(2);
+    private static final long LISTING_CHANGE_TIMEOUT = 10;
+
     private By bFiterToggle = By.cssSelector(".filter-toggle");
-    private By dEvents = By.cssSelector(".tab-listing");
+    private By dEvents = By.cssSelector(EVENT_CARD);
 
     public Events(WebDriver driver) {
         this.driver = driver;
@@ -37,15 +52,96 @@ public class Events {
         return list;
     }
 
+    /**
+     * Reads every displayed event card in a single script call, once the listing is visible.
+     *
+     * @return Snapshot of the listing, independent of the DOM once returned
+     */
+    @Step("Get a snapshot of the displayed events")
+    public EventListing getEventListing() {
+        helper.waitVisible(dEvents);
+        return readEventListing();
+    }
+
+    /**
+     * Waits for the listing to be re-rendered, e.g. after applying filters, and reads it. The listing container stays
+     * visible while its cards are replaced, so the snapshot is read again until its content differs from the previous
+     * one.
+     *
+     * @param previous Snapshot taken before the listing was asked to change
+     * @return The first snapshot that differs from previous, or the current one if the listing did not change within
+     * the timeout
+     */
+    @Step("Get a snapshot of the displayed events once they changed")
+    public EventListing getEventListing(EventListing previous) {
+        helper.waitVisible(dEvents);
+        EventListing[] current = {previous};
+        try {
+            new WebDriverWait(driver, LISTING_CHANGE_TIMEOUT).until(browser -> {
+                current[0] = readEventListing();
+                return !current[0].equals(previous);
+            });
+        } catch (TimeoutException e) {
+            // Left to verifyEventChanged, which reports the unchanged listing
+        }
+        return current[0];
+    }
+
+    private EventListing readEventListing() {
+        List<?> rows = (List<?>) ((JavascriptExecutor) driver).executeScript(Scripts.load("event-listing.js"), EVENT_CARD);
+        return EventListing.of(rows);
+    }
+
+    /**
+     * Lazily streams every event of the listing, scrolling the page as the stream is consumed.
+     *
+     * @return Stream of event cards in page order, without duplicates
+     */
+    public Stream<EventCard> streamEvents() {
+        return streamEvents(STREAM_BATCH_SIZE);
+    }
+
+    /**
+     * @param batchSize Maximum number of cards read per script call
+     * @return Stream of event cards in page order, without duplicates
+     * @see EventCardIterator
+     */
+    public Stream<EventCard> streamEvents(int batchSize) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterateEvents(batchSize),
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT), false);
+    }
+
+    /**
+     * @param batchSize Maximum number of cards read per script call
+     * @return Iterator over every event of the listing, exposing batch statistics
+     */
+    public EventCardIterator iterateEvents(int batchSize) {
+        return new EventCardIterator((JavascriptExecutor) driver, EVENT_CARD, batchSize, STREAM_SETTLE);
+    }
+
     @Step("Verify Filtering Changed Events")
     public void verifyEventChanged(List<WebElement> initialEvents, List<WebElement> filteredEvents) {
         Assert.assertFalse(initialEvents == filteredEvents, "Initial Events Matched Filtered Events");
     }
 
+    @Step("Verify Filtering Changed Events")
+    public void verifyEventChanged(EventListing initialEvents, EventListing filteredEvents) {
+        Assert.assertNotEquals(filteredEvents.getContentHash(), initialEvents.getContentHash(),
+                "Initial Events Matched Filtered Events (" + initialEvents.size() + " events)");
+    }
+
     @Step("Validate the page loads")
     public void verifyPageLoads() {
         Assert.assertTrue(driver.getCurrentUrl().contains("zwift.com/events"), "Actual URL: " + driver.getCurrentUrl());
         Assert.assertTrue(driver.getTitle().contains("The at Home Cycling & Running Virtual Training App"), "Actual: " + driver.getTitle());
     }
 
+    /**
+     * Checks the page against the EVENTS budget in budgets.properties, which includes the event listing payload.
+     */
+    @Step("Validate the page is within its performance budget")
+    public void verifyWithinBudget() {
+        PerformanceBudget.forPage("EVENTS").verify(driver);
+    }
+
 }
@@ -1,6 +1,7 @@
 package com.zwift.elements;
 
 import com.zwift.framework.helpers.Helper;
+import com.zwift.framework.metrics.PerformanceBudget;
 import io.qameta.allure.Step;
 import org.openqa.selenium.By;
 import org.openqa.selenium.WebDriver;
@@ -27,6 +28,14 @@ public class Home {
         Assert.assertTrue(driver.getTitle().contains("The at Home Cycling & Running Virtual Training App - Zwift"), "Actual: " + driver.getTitle());
     }
 
+    /**
+     * Checks the page against the HOME budget in budgets.properties, which includes the hero video payload.
+     */
+    @Step("Validate the page is within its performance budget")
+    public void verifyWithinBudget() {
+        PerformanceBudget.forPage("HOME").verify(driver);
+    }
+
     @Step("Validate content of your choice is present")
     public void verifyVideoDisplayed() {
         helper.verifyDisplayed("Hero Video", vHeroVid);
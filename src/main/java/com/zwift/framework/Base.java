@@ -1,17 +1,28 @@
 package com.zwift.framework;
 
+import com.zwift.framework.health.CircuitBreaker;
+import com.zwift.framework.health.EnvironmentGuard;
 import com.zwift.framework.listeners.AllureListener;
+import com.zwift.framework.logging.Log;
+import com.zwift.framework.metrics.Timings;
+import com.zwift.framework.metrics.WaitStats;
+import com.zwift.framework.replay.Recorder;
+import com.zwift.framework.replay.ReplayArchive;
+import com.zwift.framework.replay.ReplayServer;
 import org.testng.ITestContext;
 import org.testng.ITestResult;
 import org.testng.annotations.*;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Properties;
-
-import static org.testng.Reporter.log;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Created by DHOLMAN on 09/13/21.
@@ -21,16 +32,29 @@ import static org.testng.Reporter.log;
 @Listeners({AllureListener.class})
 public class Base {
 
+    private static final Log log = Log.of(Base.class);
+
+    /**
+     * Static test properties, replaced as a whole and never modified in place
+     */
+    private static volatile Environment environment = Environment.EMPTY;
+
     /**
-     * Static test properties
+     * Timestamp format for test logs, DateTimeFormatter is safe to share between threads
      */
-    private static final Properties properties = new Properties();
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM-dd-yy HH:mm:ss.SSS");
 
     /**
-     * Non-static test properties
+     * Serves recorded responses when running against the REPLAY environment
      */
-    private ZonedDateTime dateTime;
-    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM-dd-yy HH:mm:ss.SSS");
+    private static ReplayServer replayServer;
+
+    /**
+     * What the suites still running had set up when a suite started, e.g. a framework test running a sample suite
+     * with TestNG, put back when that suite ends. Suites run one at a time, so a suite starting before another ended
+     * runs inside it.
+     */
+    private static final Deque<Enclosing> enclosing = new ArrayDeque<>();
 
     /**
      * Gets a property from the static property store, based on the key passed in
@@ -39,32 +63,51 @@ public class Base {
      * @return Returns a value for the given key
      */
     public static String getProperty(String key) {
-        return properties.getProperty(key);
+        return environment.getProperty(key);
+    }
+
+    /**
+     * @return The environment snapshot the suite is running against
+     */
+    public static Environment getEnvironment() {
+        return environment;
     }
 
     /**
      * Sets up static test properties
+     *
+     * @param environment STAGE, PROD or REPLAY to serve the responses recorded in the replay archive
+     * @param record      TRUE to record every response of the suite into the replay archive
+     * @param healthProbe FALSE for suites that do not test the live site, which is then not probed
      */
     @BeforeSuite(alwaysRun = true)
-    @Parameters({"environment"})
-    public void setupStaticProperties(ITestContext context, String environment) {
+    @Parameters({"environment", "record", "healthProbe"})
+    public void setupStaticProperties(ITestContext context, String environment, @Optional("false") String record,
+                                      @Optional("true") String healthProbe) {
+
+        synchronized (enclosing) {
+            enclosing.push(new Enclosing());
+        }
+        replayServer = null;
+
+        Map<String, String> properties = new HashMap<>();
 
         try {
 
             if (environment.equalsIgnoreCase("STAGE")) {
 
                 //<editor-fold desc="">
-                properties.setProperty("ENV", "STAGE");
-                properties.setProperty("URL", "https://stage.zwift.com");
-                properties.setProperty("API_URL", "https://stage-api.zwift.com");
+                properties.put("ENV", "STAGE");
+                properties.put("URL", "https://stage.zwift.com");
+                properties.put("API_URL", "https://stage-api.zwift.com");
                 //</editor-fold>
 
             } else if (environment.equalsIgnoreCase("PROD")) {
 
                 //<editor-fold desc="">
-                properties.setProperty("ENV", "PROD");
-                properties.setProperty("URL", "https://zwift.com");
-                properties.setProperty("API_URL", "https://api.zwift.com");
+                properties.put("ENV", "PROD");
+                properties.put("URL", "https://zwift.com");
+                properties.put("API_URL", "https://api.zwift.com");
                 //</editor-fold>
             }
 
@@ -73,12 +116,41 @@ public class Base {
             e.printStackTrace();
         }
 
+        if (environment.equalsIgnoreCase("REPLAY")) {
+            ReplayArchive archive = ReplayArchive.open(replayArchive());
+            if (archive.size() == 0) {
+                throw new IllegalStateException("No recorded responses in " + archive.getDirectory()
+                        + ", run the suite with the record parameter set to TRUE first");
+            }
+            properties.put("ENV", "REPLAY");
+            properties.put("URL", archive.getProperty("URL"));
+            properties.put("API_URL", archive.getProperty("API_URL"));
+            replayServer = ReplayServer.start(archive);
+            properties.put("HOST_RESOLVER_RULES", replayServer.hostResolverRules());
+        } else if (record.equalsIgnoreCase("TRUE")) {
+            ReplayArchive archive = ReplayArchive.open(replayArchive());
+            archive.setProperty("URL", properties.get("URL"));
+            archive.setProperty("API_URL", properties.get("API_URL"));
+            Recorder.start(archive);
+        }
+
+        Base.environment = Environment.of(properties);
+        // A replayed suite never reaches the real hosts, nor do framework suites, only their failures are counted
+        boolean probe = replayServer == null && !healthProbe.equalsIgnoreCase("FALSE");
+        EnvironmentGuard.start(probe ? Base.environment : Environment.EMPTY);
+    }
+
+    /**
+     * @return Directory of the replay archive, replay/ in the root directory unless -Dreplay.archive is set
+     */
+    private static Path replayArchive() {
+        return Paths.get(System.getProperty("replay.archive", "replay"));
     }
 
     @BeforeMethod
     public void logTime(ITestResult result) {
-        dateTime = LocalDateTime.now().atZone(ZoneId.of("America/Los_Angeles"));
-        log("Test Started at: " + dateTime.format(formatter), true);
+        ZonedDateTime dateTime = LocalDateTime.now().atZone(ZoneId.of("America/Los_Angeles"));
+        log.info("Test Started at: {}", dateTime.format(formatter));
     }
 
     /**
@@ -88,7 +160,50 @@ public class Base {
      */
     @AfterMethod
     public void breakDown(ITestResult result) {
-        dateTime = LocalDateTime.now().atZone(ZoneId.of("America/Los_Angeles"));
-        log("Test Ended at: " + dateTime.format(formatter), true);
+        ZonedDateTime dateTime = LocalDateTime.now().atZone(ZoneId.of("America/Los_Angeles"));
+        log.info("Test Ended at: {}", dateTime.format(formatter));
+    }
+
+    /**
+     * Reports the step, wait and driver timings collected during the suite, and saves the wait times per locator.
+     */
+    @AfterSuite(alwaysRun = true)
+    public void reportTimings() {
+        Timings.report();
+        WaitStats.report();
+    }
+
+    /**
+     * Saves the recorded responses, or stops serving them, once the browsers are closed. Then puts back the
+     * environment, breaker and replay server of the suite this one ran in, if any.
+     */
+    @AfterSuite(alwaysRun = true)
+    public void stopReplay() {
+        Enclosing outer;
+        synchronized (enclosing) {
+            outer = enclosing.poll();
+        }
+        if (outer == null || !outer.recording) {
+            Recorder.finish();
+        }
+        if (replayServer != null) {
+            replayServer.stop();
+        }
+        replayServer = outer == null ? null : outer.replayServer;
+        if (outer != null) {
+            environment = outer.environment;
+            EnvironmentGuard.restore(outer.breaker);
+        }
+    }
+
+    /**
+     * Static state of the suite running when another one started
+     */
+    private static final class Enclosing {
+
+        final Environment environment = Base.environment;
+        final CircuitBreaker breaker = EnvironmentGuard.getBreaker();
+        final ReplayServer replayServer = Base.replayServer;
+        final boolean recording = Recorder.isRecording();
     }
 }
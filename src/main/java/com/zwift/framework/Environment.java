@@ -0,0 +1,52 @@
+package com.zwift.framework;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the environment properties a suite runs against.
+ * <p>
+ * Built once in {@link Base#setupStaticProperties} and published to every test thread, so reads need no locking.
+ */
+public final class Environment {
+
+    /**
+     * Snapshot used until the suite has set up its environment
+     */
+    static final Environment EMPTY = new Environment(Collections.emptyMap());
+
+    private final Map<String, String> properties;
+
+    private Environment(Map<String, String> properties) {
+        this.properties = Collections.unmodifiableMap(new HashMap<>(properties));
+    }
+
+    /**
+     * @param properties Key value pairs to freeze, later changes to the map are not seen by the snapshot
+     * @return A new snapshot holding a copy of the given properties
+     */
+    public static Environment of(Map<String, String> properties) {
+        return new Environment(properties);
+    }
+
+    /**
+     * @param key The key of the property you want
+     * @return The value for the given key, or null if it is not set
+     */
+    public String getProperty(String key) {
+        return properties.get(key);
+    }
+
+    /**
+     * @return Read-only view of every property in the snapshot
+     */
+    public Map<String, String> asMap() {
+        return properties;
+    }
+
+    @Override
+    public String toString() {
+        return "Environment" + properties;
+    }
+}
@@ -1,23 +1,47 @@
 package com.zwift.framework;
 
+import com.zwift.framework.driver.BrowserEvents;
+import com.zwift.framework.driver.BrowserLauncher;
+import com.zwift.framework.driver.ChromeDriverResolver;
+import com.zwift.framework.driver.DriverPool;
+import com.zwift.framework.driver.InMemoryDriver;
+import com.zwift.framework.driver.ProfileTemplate;
+import com.zwift.framework.driver.RequestInterceptor;
+import com.zwift.framework.health.EnvironmentGuard;
+import com.zwift.framework.helpers.Helper;
+import com.zwift.framework.logging.Log;
+import com.zwift.framework.metrics.PageLoadListener;
+import com.zwift.framework.metrics.PageMetrics;
+import com.zwift.framework.metrics.Timings;
+import com.zwift.framework.replay.Recorder;
+import com.zwift.framework.replay.RecordingListener;
 import io.qameta.allure.Step;
 import org.openqa.selenium.WebDriver;
-import org.openqa.selenium.WebDriverException;
-import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
 import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.logging.LogType;
 import org.openqa.selenium.logging.LoggingPreferences;
 import org.openqa.selenium.remote.CapabilityType;
-import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.support.events.EventFiringWebDriver;
+import org.testng.ITestContext;
 import org.testng.ITestResult;
-import org.testng.Reporter;
 import org.testng.annotations.AfterMethod;
+import org.testng.annotations.AfterSuite;
 import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeSuite;
+import org.testng.annotations.Optional;
 import org.testng.annotations.Parameters;
+import org.testng.xml.XmlSuite;
 
-import java.io.File;
-import java.net.URISyntaxException;
-import java.util.concurrent.TimeUnit;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.Level;
 
 /**
@@ -26,18 +50,48 @@ import java.util.logging.Level;
  */
 public class WebDriverSetup extends Base {
 
-    public WebDriver driver;
+    private static final Log log = Log.of(WebDriverSetup.class);
 
-    private String baseURL;
-    private String headless;
+    /**
+     * Name of the {@link ITestResult} attribute holding the session a test ran with, used by the listeners
+     */
+    public static final String DRIVER_ATTRIBUTE = "driver";
+
+    /**
+     * Session owned by the current worker thread, one instance can run methods on several threads in parallel mode
+     */
+    private final ThreadLocal<WebDriver> driver = new ThreadLocal<>();
+
+    /**
+     * Pool the current worker thread's session was leased from
+     */
+    private final ThreadLocal<DriverPool> lease = new ThreadLocal<>();
 
-    private static final String MAC_DRIVER = "/chromedriver";
-    private static final String WINDOWS_DRIVER = "/chromedriver.exe";
+    /**
+     * Chrome sessions shared by the tests of the suite, one set per combination of the session settings
+     */
+    private static final Map<String, ChromeSessions> chromeSessions = new HashMap<>();
+
+    /**
+     * In-process sessions for tests run with browser=inmemory, kept apart so a suite can mix them with Chrome tests
+     */
+    private static DriverPool inMemoryPool;
+
+    /**
+     * Pools of the suites still running when a suite started, set aside so the suite gets its own and put back when it
+     * ends, see {@link Base}
+     */
+    private static final Deque<Pools> enclosingPools = new ArrayDeque<>();
+
+    /**
+     * One chromedriver process shared by every session
+     */
+    private static ChromeDriverService service;
 
     private static final String WINDOW_RESOLUTION = "1920,1080";
 
     public WebDriver getDriver() {
-        return driver;
+        return driver.get();
     }
 
     /**
@@ -45,83 +99,296 @@ public class WebDriverSetup extends Base {
      * executed. Environment "LOCAL" will use a local driver.
      *
      * @param environment STAGE or PROD
-     * @param browser     CHROME, SAFARI, EDGE, FIREFOX (CHROME ONLY IMPLEMENTED IN THIS DEMO)
+     * @param browser     CHROME, SAFARI, EDGE, FIREFOX (CHROME ONLY IMPLEMENTED IN THIS DEMO), or INMEMORY for page
+     *                    object tests against local fixtures, see {@link InMemoryDriver}
      * @param config      .properties file for passing test parameters
      * @param headless    TRUE or FALSE - will run browser in headless mode
+     * @param poolSize    Maximum number of browser sessions kept alive and reused between tests, 0 matches the
+     *                    suite thread-count when running in parallel
+     * @param intercept   TRUE to block the requests listed in intercept.properties, FALSE for performance suites
+     * @param profile     TRUE to start sessions from a profile template that already accepted the cookie consent
+     * @param spares      Number of browsers kept started ahead of time, ready for the next test
+     * @param context     Context of the running test, used to size the pool
+     * @param result      Result of the test method about to run, the session is recorded on it for the listeners
      */
     @BeforeMethod
-    @Parameters({"environment", "browser", "config", "headless"})
-    public void openRemoteBrowser(String environment, String browser, String config, String headless) throws Exception {
-
-        this.headless = headless;
+    @Parameters({"environment", "browser", "config", "headless", "poolSize", "intercept", "profileTemplate", "spares"})
+    public void openRemoteBrowser(String environment, String browser, String config, String headless,
+                                  @Optional("0") String poolSize, @Optional("true") String intercept,
+                                  @Optional("true") String profile, @Optional("1") String spares,
+                                  ITestContext context, ITestResult result) throws Exception {
 
-        baseURL = Base.getProperty("URL");
+        String baseURL = Base.getProperty("URL");
 
-        Reporter.log("Test Executed: " + environment, true);
+        log.info("Test Executed: {}", environment);
 
-        if (browser.equalsIgnoreCase("chrome")) {
-            chrome();
+        if (browser.equalsIgnoreCase("chrome") || browser.equalsIgnoreCase("inmemory")) {
+            // In-memory sessions are served from local fixtures and do not depend on the environment. A refused test
+            // gets no session and is skipped by the guard, skipping here would skip the rest of the class
+            if (browser.equalsIgnoreCase("chrome") && !EnvironmentGuard.admit(result)) {
+                return;
+            }
+            long waitStart = System.nanoTime();
+            DriverPool sessions = getPool(browser, poolSize(poolSize, context), headless, intercept, profile,
+                    Integer.parseInt(spares));
+            WebDriver session = sessions.acquire();
+            Timings.record("Wait for browser", System.nanoTime() - waitStart);
+            driver.set(session);
+            lease.set(sessions);
+            result.setAttribute(DRIVER_ATTRIBUTE, session);
+            BrowserEvents.begin(session);
+            PageMetrics.begin(result.getMethod().getRealClass().getSimpleName() + "." + result.getMethod().getMethodName());
+            navigate(baseURL);
         } else {
-            Reporter.log("TestNG parameter \"browser\" must be CHROME in this demo", true);
+            log.warn("TestNG parameter \"browser\" must be CHROME or INMEMORY in this demo, was {}", browser);
+        }
+    }
+
+    /**
+     * Resolves the pool size, defaulting to one session per worker thread.
+     */
+    private static int poolSize(String poolSize, ITestContext context) {
+        int size = Integer.parseInt(poolSize);
+        if (size > 0) {
+            return size;
+        }
+        XmlSuite suite = context.getSuite().getXmlSuite();
+        XmlSuite.ParallelMode mode = suite.getParallel();
+        boolean serial = mode == null || mode == XmlSuite.ParallelMode.NONE;
+        return serial ? 1 : suite.getThreadCount();
+    }
+
+    /**
+     * Creates the session pool for the given settings on first use. Tests declaring other settings, e.g. a performance
+     * test with intercept=FALSE next to functional tests, get a pool of their own.
+     *
+     * @param browser   CHROME, or INMEMORY for the in-process pool, which ignores the Chrome only settings
+     * @param size      Maximum number of live sessions
+     * @param headless  TRUE or FALSE - will run browser in headless mode
+     * @param intercept TRUE to block requests in every session of the pool
+     * @param profile   TRUE to build a profile template and start every session from a copy of it
+     * @param spares    Number of browsers kept started ahead of time
+     * @return The shared pool
+     */
+    private static synchronized DriverPool getPool(String browser, int size, String headless, String intercept,
+                                                   String profile, int spares) {
+        if (browser.equalsIgnoreCase("inmemory")) {
+            if (inMemoryPool == null) {
+                inMemoryPool = new DriverPool(size, InMemoryDriver::new);
+            }
+            return inMemoryPool;
+        }
+        boolean isHeadless = headless.equalsIgnoreCase("TRUE");
+        boolean isIntercepted = intercept.equalsIgnoreCase("TRUE");
+        boolean withTemplate = profile.equalsIgnoreCase("TRUE");
+        String key = "headless=" + isHeadless + ", intercept=" + isIntercepted + ", profileTemplate=" + withTemplate
+                + ", spares=" + spares;
+        ChromeSessions sessions = chromeSessions.get(key);
+        if (sessions == null) {
+            if (!chromeSessions.isEmpty()) {
+                log.info("Starting a separate browser pool for {}", key);
+            }
+            sessions = new ChromeSessions(size, isHeadless, isIntercepted, withTemplate, spares);
+            chromeSessions.put(key, sessions);
+        }
+        return sessions.pool;
+    }
+
+    /**
+     * Pool, spare browsers and profile template of Chrome sessions started with the same settings
+     */
+    private static final class ChromeSessions {
+
+        final ProfileTemplate template;
+        final BrowserLauncher launcher;
+        final DriverPool pool;
+
+        ChromeSessions(int size, boolean headless, boolean intercept, boolean profile, int spares) {
+            template = profile ? buildProfileTemplate(headless, intercept) : null;
+            launcher = new BrowserLauncher(spares, () -> {
+                WebDriver chrome = launch(headless, intercept, template == null ? null : template.newProfile());
+                EventFiringWebDriver session = new EventFiringWebDriver(chrome).register(new PageLoadListener())
+                        .register(new BrowserEvents.Listener());
+                return Recorder.isRecording() ? session.register(new RecordingListener()) : session;
+            });
+            pool = new DriverPool(size, launcher::take, template == null ? driver -> {
+            } : template::seedCookies);
+        }
+
+        void shutdown() {
+            pool.shutdown();
+            launcher.shutdown();
+            if (template != null) {
+                template.delete();
+            }
         }
-        TimeUnit.MILLISECONDS.sleep(500);
+    }
+
+    /**
+     * Builds the profile template by accepting the cookie consent on the home page once.
+     *
+     * @return The template, or null if it could not be built and sessions have to start from an empty profile
+     */
+    private static ProfileTemplate buildProfileTemplate(boolean headless, boolean intercept) {
+        try {
+            return ProfileTemplate.build(directory -> launch(headless, intercept, directory), browser -> {
+                browser.navigate().to(Base.getProperty("URL"));
+                new Helper(browser).waitAcceptCookie();
+            });
+        } catch (RuntimeException e) {
+            log.warn("Could not build the browser profile template, sessions start with an empty profile: {}",
+                    e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Starts Chrome with the long task observer and request blocking installed.
+     *
+     * @param headless  true to run the browser in headless mode
+     * @param intercept true to block the requests listed in intercept.properties
+     * @param profile   User data directory, or null for a new temporary profile
+     */
+    private static WebDriver launch(boolean headless, boolean intercept, Path profile) {
+        WebDriver browser = chrome(headless, profile);
+        PageMetrics.install(browser);
+        RequestInterceptor.install(browser, intercept);
+        return browser;
     }
 
     /**
      * Sets up the Chrome Driver.
      *
-     * @throws URISyntaxException Bad String or path to a file.
+     * @param headless true to run the browser in headless mode
+     * @param profile  User data directory, or null for a new temporary profile
+     * @return A new Chrome session
      */
-    private void chrome() throws URISyntaxException, NullPointerException {
+    private static WebDriver chrome(boolean headless, Path profile) {
 
         ChromeOptions options = new ChromeOptions();
         options.addArguments("chrome.switches", "--disable--extensions");
         options.addArguments("window.size", WINDOW_RESOLUTION);
         options.addArguments("disable-infobars");
 
-        // Gets browser console and network logs - does not work with ChromeOptions
-        DesiredCapabilities capabilities = DesiredCapabilities.chrome();
+        // Gets browser console and network logs for BrowserEvents, W3C sessions only read the goog: prefixed capability
         LoggingPreferences logPrefs = new LoggingPreferences();
-        logPrefs.enable(LogType.PERFORMANCE, Level.SEVERE);
-        logPrefs.enable(LogType.BROWSER, Level.SEVERE);
-        capabilities.setCapability(CapabilityType.LOGGING_PREFS, logPrefs);
+        logPrefs.enable(LogType.PERFORMANCE, Level.INFO);
+        logPrefs.enable(LogType.BROWSER, Level.INFO);
+        options.setCapability(CapabilityType.LOGGING_PREFS, logPrefs);
+        options.setCapability("goog:loggingPrefs", logPrefs);
+        Map<String, Object> perfLogging = new HashMap<>();
+        perfLogging.put("enableNetwork", true);
+        perfLogging.put("enablePage", false);
+        options.setExperimentalOption("perfLoggingPrefs", perfLogging);
 
-        if (headless.equalsIgnoreCase("TRUE")) {
+        if (headless) {
             options.addArguments("--headless");
         }
 
-        if (System.getProperty("os.name").contains("Mac")) {
-            File cDriver = new File(this.getClass().getResource(MAC_DRIVER).toURI());
-            if (!cDriver.canExecute()) {
-                cDriver.setExecutable(true);
-            }
-            System.setProperty("webdriver.chrome.driver", this.getClass().getResource(MAC_DRIVER).toURI().getPath());
-        } else {
-            File wDriver = new File(this.getClass().getResource(WINDOWS_DRIVER).toURI());
-            if (!wDriver.canExecute()) {
-                wDriver.setExecutable(true);
+        if (profile != null) {
+            options.addArguments("--user-data-dir=" + profile.toAbsolutePath());
+        }
+
+        // REPLAY environment, every host resolves to the local replay server which uses a self-signed certificate
+        String hostRules = Base.getProperty("HOST_RESOLVER_RULES");
+        if (hostRules != null) {
+            options.addArguments("--host-resolver-rules=" + hostRules, "--ignore-certificate-errors");
+        }
+
+        // Chrome refuses to start its sandbox as root, which is how CI containers usually run
+        if ("root".equals(System.getProperty("user.name"))) {
+            options.addArguments("--no-sandbox", "--disable-dev-shm-usage");
+        }
+
+        Path chromeBinary = ChromeDriverResolver.resolve().getChrome();
+        if (chromeBinary != null) {
+            options.setBinary(chromeBinary.toFile());
+        }
+        return new RemoteWebDriver(service().getUrl(), options);
+    }
+
+    /**
+     * Starts the shared chromedriver process on first use, sessions talk to it instead of each starting their own.
+     */
+    private static synchronized ChromeDriverService service() {
+        if (service == null || !service.isRunning()) {
+            service = new ChromeDriverService.Builder()
+                    .usingDriverExecutable(ChromeDriverResolver.resolve().getDriver().toFile())
+                    .usingAnyFreePort()
+                    .build();
+            try {
+                service.start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to start chromedriver", e);
             }
-            System.setProperty("webdriver.chrome.driver", this.getClass().getResource(WINDOWS_DRIVER).toURI().getPath());
         }
-        driver = new ChromeDriver(options);
-        navigate(baseURL);
+        return service;
     }
 
     /**
-     * Cleans up after a Selenium session has exited.
+     * Hands the Selenium session back to the pool once the test has finished with it.
      *
      * @param result An object reference to the results of the ran test.
      */
     @AfterMethod
     public void breakDown(ITestResult result) {
-        if (driver != null) {
-            try {
-                driver.quit();
-            } catch (WebDriverException e) {
-                Reporter.log("***** CAUGHT EXCEPTION IN DRIVER TEARDOWN *****", true);
-                e.printStackTrace();
+        WebDriver session = driver.get();
+        if (session != null) {
+            Recorder.capture(session);
+            driver.remove();
+            lease.get().release(session);
+            lease.remove();
+        }
+    }
+
+    /**
+     * Sets aside the pools of a suite still running, so a suite run by one of its tests neither reuses nor closes them.
+     */
+    @BeforeSuite(alwaysRun = true)
+    public void setAsideBrowsers() {
+        synchronized (WebDriverSetup.class) {
+            enclosingPools.push(new Pools(new HashMap<>(chromeSessions), inMemoryPool));
+            chromeSessions.clear();
+            inMemoryPool = null;
+        }
+    }
+
+    /**
+     * Quits every pooled browser once the suite is done, and puts back the pools of the suite it ran in, if any.
+     */
+    @AfterSuite(alwaysRun = true)
+    public void closeBrowsers() {
+        synchronized (WebDriverSetup.class) {
+            chromeSessions.values().forEach(ChromeSessions::shutdown);
+            chromeSessions.clear();
+            if (inMemoryPool != null) {
+                inMemoryPool.shutdown();
+                inMemoryPool = null;
+            }
+            Pools outer = enclosingPools.poll();
+            if (outer != null) {
+                chromeSessions.putAll(outer.chromeSessions);
+                inMemoryPool = outer.inMemoryPool;
             }
-            driver.quit();
+            // Sessions of the enclosing suite still use chromedriver
+            if (enclosingPools.isEmpty() && service != null) {
+                service.stop();
+                service = null;
+            }
+        }
+    }
+
+    /**
+     * Pools of a suite set aside while another one runs
+     */
+    private static final class Pools {
+
+        final Map<String, ChromeSessions> chromeSessions;
+        final DriverPool inMemoryPool;
+
+        Pools(Map<String, ChromeSessions> chromeSessions, DriverPool inMemoryPool) {
+            this.chromeSessions = chromeSessions;
+            this.inMemoryPool = inMemoryPool;
         }
     }
 
@@ -134,8 +401,8 @@ public class WebDriverSetup extends Base {
      */
     @Step("Navigate to {url}")
     public void navigate(String url) {
-        Reporter.log("Navigating to: " + url, true);
-        driver.navigate().to(url);
+        log.info("Navigating to: {}", url);
+        getDriver().navigate().to(url);
     }
 
 }
\ No newline at end of file
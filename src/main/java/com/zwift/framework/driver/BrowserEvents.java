@@ -0,0 +1,413 @@
+package com.zwift.framework.driver;
+
+import io.qameta.allure.Allure;
+import org.openqa.selenium.UnsupportedCommandException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WrapsDriver;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.json.JsonException;
+import org.openqa.selenium.logging.LogEntry;
+import org.openqa.selenium.logging.LogType;
+import org.openqa.selenium.support.events.AbstractWebDriverEventListener;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+
+/**
+ * Console messages, uncaught exceptions and network requests of each session, kept while the test runs.
+ * <p>
+ * Chrome's browser and performance logs are drained after every navigation (see {@link Listener}) and at the end of
+ * the test into a ring buffer of the last -Dbrowser.events (500) events per session, so memory does not depend on the
+ * length of the test, and early errors do not depend on when the logs are read: the first {@value #PINNED} errors are
+ * kept apart from the ring, and every event is counted even once it left it. Only the performance log messages for
+ * requests, responses and failed requests are parsed. {@link #report} attaches the counts and first errors to every
+ * test in Allure, and the whole buffer to failed ones. Sessions without logs, e.g. in-memory ones, are skipped.
+ * <p>
+ * The buffer is the only reader of the logs, which Chrome clears when they are read: {@link RequestInterceptor} and
+ * the failure listeners get their events from it.
+ */
+public final class BrowserEvents {
+
+    private static final int PINNED = 20;
+    private static final int MAX_TEXT = 300;
+    // Requests waiting for their response, and distinct blocked URLs, kept per session
+    private static final int MAX_TRACKED = 1000;
+    private static final Json JSON = new Json();
+
+    private static final Map<WebDriver, Buffer> buffers = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private BrowserEvents() {
+    }
+
+    /**
+     * Starts a new buffer for the test about to run, dropping what the session logged before.
+     *
+     * @param driver The test's session
+     */
+    public static void begin(WebDriver driver) {
+        Buffer buffer = buffer(driver);
+        if (buffer != null) {
+            buffer.read(driver);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Adds what the session logged since the last call to its buffer.
+     *
+     * @param driver The test's session
+     * @return The session's buffer, null for sessions without logs
+     */
+    public static Buffer collect(WebDriver driver) {
+        Buffer buffer = buffer(driver);
+        if (buffer != null) {
+            buffer.read(driver);
+        }
+        return buffer;
+    }
+
+    /**
+     * Collects the last events and attaches the summary to the current Allure test, and the whole buffer if it failed.
+     *
+     * @param driver The test's session
+     * @param failed true to attach every buffered event
+     */
+    public static void report(WebDriver driver, boolean failed) {
+        Buffer buffer = collect(driver);
+        if (buffer == null || buffer.isEmpty()) {
+            return;
+        }
+        Allure.addAttachment("Browser events", "text/plain", buffer.summary(), ".txt");
+        if (failed) {
+            Allure.addAttachment("Browser event log", "text/plain", buffer.dump(), ".txt");
+        }
+    }
+
+    private static Buffer buffer(WebDriver driver) {
+        if (driver == null) {
+            return null;
+        }
+        WebDriver session = driver;
+        while (session instanceof WrapsDriver) {
+            session = ((WrapsDriver) session).getWrappedDriver();
+        }
+        synchronized (buffers) {
+            Buffer buffer = buffers.computeIfAbsent(session,
+                    key -> new Buffer(Integer.getInteger("browser.events", 500)));
+            return buffer.supported ? buffer : null;
+        }
+    }
+
+    /**
+     * Drains the logs after every navigation, so a test's events are kept even if it never finishes.
+     */
+    public static class Listener extends AbstractWebDriverEventListener {
+
+        @Override
+        public void afterNavigateTo(String url, WebDriver driver) {
+            collect(driver);
+        }
+    }
+
+    /**
+     * Kind of a buffered event
+     */
+    public enum Kind {
+        CONSOLE, EXCEPTION, RESPONSE, FAILED, BLOCKED
+    }
+
+    /**
+     * One console message or request
+     */
+    public static final class Event {
+
+        private final long timestamp;
+        private final Kind kind;
+        private final String level;
+        private final String text;
+        private final boolean error;
+
+        Event(long timestamp, Kind kind, String level, String text, boolean error) {
+            this.timestamp = timestamp;
+            this.kind = kind;
+            this.level = level;
+            this.text = text.length() > MAX_TEXT ? text.substring(0, MAX_TEXT) + "..." : text;
+            this.error = error;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return Console level, or the HTTP status or error of a request
+         */
+        public String getLevel() {
+            return level;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return true for console errors, uncaught exceptions, HTTP errors and failed requests
+         */
+        public boolean isError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return new SimpleDateFormat("HH:mm:ss.SSS").format(new Date(timestamp)) + " " + kind + " " + level + " "
+                    + text;
+        }
+    }
+
+    /**
+     * Events of one session: the latest ones in a ring, the first errors, and counts of everything seen
+     */
+    public static final class Buffer {
+
+        private final Event[] ring;
+        private int next;
+        private int size;
+        private volatile boolean supported = true;
+
+        private final List<Event> firstErrors = new ArrayList<>();
+        private final Map<Kind, Integer> counts = new LinkedHashMap<>();
+        private int consoleErrors;
+        private int consoleWarnings;
+        private int httpErrors;
+
+        private final Map<String, String> pending = new LinkedHashMap<String, String>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > MAX_TRACKED;
+            }
+        };
+        private final Map<String, Integer> blocked = new LinkedHashMap<>();
+
+        /**
+         * @param capacity Number of events kept in the ring
+         */
+        public Buffer(int capacity) {
+            this.ring = new Event[Math.max(capacity, 1)];
+        }
+
+        private void read(WebDriver driver) {
+            try {
+                add(LogType.BROWSER, driver.manage().logs().get(LogType.BROWSER).getAll());
+                add(LogType.PERFORMANCE, driver.manage().logs().get(LogType.PERFORMANCE).getAll());
+            } catch (UnsupportedCommandException | UnsupportedOperationException e) {
+                // Sessions without a log API are not read again
+                supported = false;
+            } catch (RuntimeException e) {
+                // Only this read is lost, unless the session was started without the logs
+                supported = hasLogs(driver);
+            }
+        }
+
+        /**
+         * @return false if the session has no browser or performance log, true if it has or it cannot tell
+         */
+        private static boolean hasLogs(WebDriver driver) {
+            try {
+                Set<String> types = driver.manage().logs().getAvailableLogTypes();
+                return types.contains(LogType.BROWSER) && types.contains(LogType.PERFORMANCE);
+            } catch (UnsupportedCommandException | UnsupportedOperationException e) {
+                return false;
+            } catch (RuntimeException e) {
+                return true;
+            }
+        }
+
+        /**
+         * @param type    LogType.BROWSER or LogType.PERFORMANCE
+         * @param entries Entries read from that log
+         */
+        public synchronized void add(String type, List<LogEntry> entries) {
+            for (LogEntry entry : entries) {
+                if (LogType.BROWSER.equals(type)) {
+                    addConsole(entry);
+                } else if (LogType.PERFORMANCE.equals(type)) {
+                    addNetwork(entry);
+                }
+            }
+        }
+
+        private void addConsole(LogEntry entry) {
+            boolean error = entry.getLevel().intValue() >= Level.SEVERE.intValue();
+            boolean exception = error && entry.getMessage().contains("Uncaught");
+            if (error) {
+                consoleErrors++;
+            } else if (entry.getLevel().intValue() >= Level.WARNING.intValue()) {
+                consoleWarnings++;
+            }
+            add(new Event(entry.getTimestamp(), exception ? Kind.EXCEPTION : Kind.CONSOLE, entry.getLevel().getName(),
+                    entry.getMessage(), error));
+        }
+
+        @SuppressWarnings("unchecked")
+        private void addNetwork(LogEntry entry) {
+            String message = entry.getMessage();
+            // Most of the log is other events, only the ones kept are parsed
+            boolean sent = message.contains("\"Network.requestWillBeSent\"");
+            boolean response = !sent && message.contains("\"Network.responseReceived\"");
+            boolean failed = !sent && !response && message.contains("\"Network.loadingFailed\"");
+            if (!sent && !response && !failed) {
+                return;
+            }
+            Map<String, Object> params;
+            try {
+                Map<String, Object> event = JSON.toType(message, Map.class);
+                params = (Map<String, Object>) ((Map<String, Object>) event.get("message")).get("params");
+            } catch (JsonException | ClassCastException | NullPointerException e) {
+                return;
+            }
+            if (params == null) {
+                return;
+            }
+            String requestId = String.valueOf(params.get("requestId"));
+            if (sent) {
+                Object request = params.get("request");
+                if (request instanceof Map) {
+                    pending.put(requestId, String.valueOf(((Map<String, Object>) request).get("url")));
+                }
+            } else if (response) {
+                Object received = params.get("response");
+                if (!(received instanceof Map)) {
+                    return;
+                }
+                Map<String, Object> fields = (Map<String, Object>) received;
+                pending.remove(requestId);
+                int status = fields.get("status") instanceof Number ? ((Number) fields.get("status")).intValue() : 0;
+                if (status >= 400) {
+                    httpErrors++;
+                }
+                add(new Event(entry.getTimestamp(), Kind.RESPONSE, String.valueOf(status),
+                        params.get("type") + " " + fields.get("url"), status >= 400));
+            } else {
+                String url = pending.remove(requestId);
+                url = url == null ? "unknown" : url;
+                if (params.get("blockedReason") != null) {
+                    if (blocked.containsKey(url) || blocked.size() < MAX_TRACKED) {
+                        blocked.merge(url, 1, Integer::sum);
+                    }
+                    add(new Event(entry.getTimestamp(), Kind.BLOCKED, String.valueOf(params.get("blockedReason")),
+                            url, false));
+                } else if (!Boolean.TRUE.equals(params.get("canceled"))) {
+                    add(new Event(entry.getTimestamp(), Kind.FAILED, String.valueOf(params.get("errorText")), url,
+                            true));
+                }
+            }
+        }
+
+        private void add(Event event) {
+            ring[next] = event;
+            next = (next + 1) % ring.length;
+            size = Math.min(size + 1, ring.length);
+            counts.merge(event.kind, 1, Integer::sum);
+            if (event.isError() && firstErrors.size() < PINNED) {
+                firstErrors.add(event);
+            }
+        }
+
+        synchronized void clear() {
+            Arrays.fill(ring, null);
+            next = 0;
+            size = 0;
+            firstErrors.clear();
+            counts.clear();
+            consoleErrors = 0;
+            consoleWarnings = 0;
+            httpErrors = 0;
+            pending.clear();
+            blocked.clear();
+        }
+
+        public synchronized boolean isEmpty() {
+            return counts.isEmpty();
+        }
+
+        /**
+         * @return Buffered events, oldest first
+         */
+        public synchronized List<Event> getEvents() {
+            List<Event> events = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                events.add(ring[(next - size + i + ring.length) % ring.length]);
+            }
+            return events;
+        }
+
+        /**
+         * @return Buffered console messages and exceptions, oldest first, as log entries
+         */
+        public synchronized List<LogEntry> getConsole() {
+            List<LogEntry> console = new ArrayList<>();
+            for (Event event : getEvents()) {
+                if (event.kind == Kind.CONSOLE || event.kind == Kind.EXCEPTION) {
+                    console.add(new LogEntry(Level.parse(event.level), event.timestamp, event.text));
+                }
+            }
+            return console;
+        }
+
+        /**
+         * @return URL of every request blocked since the test began, once per time it was blocked
+         */
+        public synchronized List<String> getBlocked() {
+            List<String> urls = new ArrayList<>();
+            blocked.forEach((url, times) -> urls.addAll(Collections.nCopies(times, url)));
+            return urls;
+        }
+
+        /**
+         * @param kind Kind of event
+         * @return How many were seen since the test began, including those no longer buffered
+         */
+        public synchronized int count(Kind kind) {
+            return counts.getOrDefault(kind, 0);
+        }
+
+        /**
+         * @return Counts and first errors
+         */
+        public synchronized String summary() {
+            StringBuilder summary = new StringBuilder()
+                    .append(String.format("Console:  %d messages, %d errors, %d warnings, %d uncaught exceptions%n",
+                            count(Kind.CONSOLE) + count(Kind.EXCEPTION), consoleErrors, consoleWarnings,
+                            count(Kind.EXCEPTION)))
+                    .append(String.format("Network:  %d responses, %d HTTP errors, %d failed, %d blocked%n",
+                            count(Kind.RESPONSE), httpErrors, count(Kind.FAILED), count(Kind.BLOCKED)));
+            if (!firstErrors.isEmpty()) {
+                summary.append(String.format("First errors:%n"));
+                firstErrors.forEach(error -> summary.append("  ").append(error).append(System.lineSeparator()));
+            }
+            return summary.toString();
+        }
+
+        /**
+         * @return The summary and every buffered event
+         */
+        public synchronized String dump() {
+            StringBuilder dump = new StringBuilder(summary()).append(String.format("%nLast %d events:%n", size));
+            getEvents().forEach(event -> dump.append(event).append(System.lineSeparator()));
+            return dump.toString();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.zwift.framework.driver;
+
+import com.zwift.framework.logging.Log;
+import com.zwift.framework.metrics.Timings;
+import com.zwift.framework.utils.Reports;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a number of browsers started ahead of time, so a new session does not wait for Chrome to launch.
+ * <p>
+ * Every {@link #take()} hands out a spare and immediately starts a replacement in the background. It is a hit when
+ * a spare had finished starting, otherwise the caller waits for the oldest one still starting. Hits, misses and wait
+ * times are reported at {@link #shutdown()}, the waits are also recorded in {@link Timings}.
+ */
+public class BrowserLauncher {
+
+    private static final Log log = Log.of(BrowserLauncher.class);
+
+    private static final String WAIT_TIMING = "Wait for spare browser";
+    private static final String REPORT_FILE = "browser-launcher.json";
+
+    private final Supplier<WebDriver> factory;
+    private final ExecutorService executor;
+    private final Deque<CompletableFuture<WebDriver>> spares = new ArrayDeque<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    private boolean shutdown;
+
+    /**
+     * @param spares  Number of browsers kept started, at least 1
+     * @param factory Starts a new browser, called on background threads
+     */
+    public BrowserLauncher(int spares, Supplier<WebDriver> factory) {
+        if (spares < 1) {
+            throw new IllegalArgumentException("Number of spare browsers must be at least 1, was " + spares);
+        }
+        this.factory = factory;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(spares, runnable -> {
+            Thread thread = new Thread(runnable, "browser-launcher-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        synchronized (this) {
+            for (int i = 0; i < spares; i++) {
+                this.spares.add(launch());
+            }
+        }
+    }
+
+    /**
+     * Hands out a started browser, waiting for one if none is ready yet.
+     *
+     * @return A new browser owned by the caller
+     * @throws WebDriverException if the browser failed to start
+     */
+    public WebDriver take() {
+        long start = System.nanoTime();
+        CompletableFuture<WebDriver> spare;
+        synchronized (this) {
+            if (shutdown) {
+                throw new IllegalStateException("Browser launcher is shut down");
+            }
+            spare = firstReady();
+            if (spare == null) {
+                spare = spares.poll();
+                misses.increment();
+            } else {
+                hits.increment();
+            }
+            spares.add(launch());
+        }
+        try {
+            return spare.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof WebDriverException ? (WebDriverException) e.getCause()
+                    : new WebDriverException("Unable to start a browser", e.getCause());
+        } finally {
+            long waited = System.nanoTime() - start;
+            waitNanos.add(waited);
+            Timings.record(WAIT_TIMING, waited);
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Share of {@link #take()} calls that found a browser already started, 0 before the first call
+     */
+    public double getHitRate() {
+        long total = getHits() + getMisses();
+        return total == 0 ? 0 : (double) getHits() / total;
+    }
+
+    /**
+     * Quits the spares, including those still starting, and reports the launcher metrics.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+            for (CompletableFuture<WebDriver> spare : spares) {
+                spare.thenAccept(BrowserLauncher::quit);
+            }
+            spares.clear();
+        }
+        executor.shutdown();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("hits", getHits());
+        report.put("misses", getMisses());
+        report.put("hitRate", Math.round(getHitRate() * 1000) / 1000.0);
+        report.put("totalWaitMillis", waitNanos.sum() / 1_000_000);
+        Reports.writeJson(REPORT_FILE, report);
+        log.info("Spare browsers: {} hits, {} misses, waited {} ms in total", getHits(), getMisses(),
+                waitNanos.sum() / 1_000_000);
+    }
+
+    private CompletableFuture<WebDriver> firstReady() {
+        for (Iterator<CompletableFuture<WebDriver>> it = spares.iterator(); it.hasNext(); ) {
+            CompletableFuture<WebDriver> spare = it.next();
+            if (spare.isDone() && !spare.isCompletedExceptionally()) {
+                it.remove();
+                return spare;
+            }
+        }
+        return null;
+    }
+
+    private CompletableFuture<WebDriver> launch() {
+        return CompletableFuture.supplyAsync(factory, executor);
+    }
+
+    private static void quit(WebDriver driver) {
+        try {
+            driver.quit();
+        } catch (WebDriverException e) {
+            log.warn("Could not quit spare browser: {}", e.getMessage());
+        }
+    }
+}
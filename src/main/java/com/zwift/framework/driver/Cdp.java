@@ -0,0 +1,104 @@
+package com.zwift.framework.driver;
+
+import org.apache.commons.io.IOUtils;
+import org.openqa.selenium.UnsupportedCommandException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WrapsDriver;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.remote.HttpCommandExecutor;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sends Chrome DevTools Protocol commands to a Chrome session.
+ * <p>
+ * Selenium 3 has no DevTools API, so commands go straight to chromedriver's {@code goog/cdp/execute} endpoint of the
+ * session. Only commands and their results are available this way, not DevTools events; events are read from the
+ * performance log instead.
+ */
+public final class Cdp {
+
+    private static final Json JSON = new Json();
+
+    private Cdp() {
+    }
+
+    /**
+     * @param driver A session, possibly wrapped by an EventFiringWebDriver
+     * @return true if the session is a local chromedriver session that accepts DevTools commands
+     */
+    public static boolean isSupported(WebDriver driver) {
+        return executor(unwrap(driver)) != null;
+    }
+
+    /**
+     * Runs a DevTools command.
+     *
+     * @param driver  A Chrome session, possibly wrapped by an EventFiringWebDriver
+     * @param command Command name, e.g. Network.setBlockedURLs
+     * @param params  Command parameters
+     * @return The command result
+     * @throws UnsupportedCommandException if the session is not a chromedriver session
+     * @throws WebDriverException          if chromedriver or the browser rejects the command
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> execute(WebDriver driver, String command, Map<String, ?> params) {
+        RemoteWebDriver remote = unwrap(driver);
+        HttpCommandExecutor executor = executor(remote);
+        if (executor == null) {
+            throw new UnsupportedCommandException("DevTools commands need a chromedriver session, not " + driver);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("cmd", command);
+        body.put("params", params);
+        String address = executor.getAddressOfRemoteServer().toString().replaceAll("/$", "");
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(address + "/session/" + remote.getSessionId()
+                    + "/goog/cdp/execute").openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(JSON.toJson(body).getBytes(StandardCharsets.UTF_8));
+            }
+            int status = connection.getResponseCode();
+            String response;
+            try (InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream()) {
+                response = in == null ? "{}" : IOUtils.toString(in, StandardCharsets.UTF_8);
+            }
+            Map<String, Object> json = JSON.toType(response, Map.class);
+            Object value = json.get("value");
+            if (status >= 400) {
+                Object message = value instanceof Map ? ((Map<String, Object>) value).get("message") : response;
+                throw new WebDriverException(command + " failed: " + message);
+            }
+            return value instanceof Map ? (Map<String, Object>) value : Collections.emptyMap();
+        } catch (IOException e) {
+            throw new WebDriverException("Unable to send " + command + " to chromedriver", e);
+        }
+    }
+
+    private static RemoteWebDriver unwrap(WebDriver driver) {
+        while (driver instanceof WrapsDriver) {
+            driver = ((WrapsDriver) driver).getWrappedDriver();
+        }
+        return driver instanceof RemoteWebDriver ? (RemoteWebDriver) driver : null;
+    }
+
+    private static HttpCommandExecutor executor(RemoteWebDriver driver) {
+        if (driver == null || driver.getSessionId() == null || !(driver.getCommandExecutor() instanceof HttpCommandExecutor)) {
+            return null;
+        }
+        return (HttpCommandExecutor) driver.getCommandExecutor();
+    }
+}
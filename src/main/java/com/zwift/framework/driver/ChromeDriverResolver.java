@@ -0,0 +1,278 @@
+package com.zwift.framework.driver;
+
+import com.zwift.framework.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the chromedriver binary matching the installed Chrome, once per JVM.
+ * <p>
+ * Candidates are looked up in this order, for the current OS and architecture:
+ * <ol>
+ * <li>-Dwebdriver.chrome.driver, used as is</li>
+ * <li>-Dchromedriver.dir: chromedriver-&lt;os&gt;-&lt;arch&gt;, &lt;os&gt;-&lt;arch&gt;/chromedriver, then chromedriver</li>
+ * <li>the classpath: /chromedriver-&lt;os&gt;-&lt;arch&gt;, then /chromedriver (Mac) or /chromedriver.exe (Windows)</li>
+ * <li>every directory on the PATH</li>
+ * </ol>
+ * Chrome is -Dchrome.binary or the usual install location of the OS. When its version can be read, the first
+ * candidate with the same major version is used, otherwise the first candidate found.
+ */
+public final class ChromeDriverResolver {
+
+    private static final Log log = Log.of(ChromeDriverResolver.class);
+
+    private static final Pattern VERSION = Pattern.compile("(\\d+)\\.\\d+\\.\\d+");
+    private static final long VERSION_TIMEOUT_SECONDS = 10;
+
+    private static volatile Resolution resolved;
+
+    private ChromeDriverResolver() {
+    }
+
+    /**
+     * @return The chromedriver and Chrome to use, resolved on the first call only
+     * @throws IllegalStateException if no chromedriver is found, or none matches the installed Chrome
+     */
+    public static Resolution resolve() {
+        Resolution resolution = resolved;
+        if (resolution == null) {
+            synchronized (ChromeDriverResolver.class) {
+                resolution = resolved;
+                if (resolution == null) {
+                    resolution = lookup();
+                    resolved = resolution;
+                }
+            }
+        }
+        return resolution;
+    }
+
+    private static Resolution lookup() {
+        Platform platform = Platform.current();
+        Path chrome = chromeBinary(platform);
+        Integer chromeVersion = chrome == null ? null : majorVersion(chrome);
+
+        List<String> found = new ArrayList<>();
+        for (Path driver : candidates(platform)) {
+            Integer driverVersion = majorVersion(driver);
+            if (chromeVersion == null || chromeVersion.equals(driverVersion)) {
+                log.info("Using {} (ChromeDriver {}) for {}", driver, driverVersion,
+                        chrome == null ? "the default Chrome" : chrome + " (Chrome " + chromeVersion + ")");
+                return new Resolution(driver, chrome, driverVersion);
+            }
+            found.add(driver + " (ChromeDriver " + driverVersion + ")");
+        }
+        throw new IllegalStateException(found.isEmpty()
+                ? "No chromedriver found for " + platform + ". Set -Dwebdriver.chrome.driver or -Dchromedriver.dir, "
+                + "or put chromedriver on the PATH"
+                : "No chromedriver matches Chrome " + chromeVersion + " at " + chrome + ", found " + found);
+    }
+
+    private static Set<Path> candidates(Platform platform) {
+        Set<Path> candidates = new LinkedHashSet<>();
+        String explicit = System.getProperty("webdriver.chrome.driver");
+        if (explicit != null) {
+            addExecutable(candidates, Paths.get(explicit));
+        }
+        String directory = System.getProperty("chromedriver.dir");
+        if (directory != null) {
+            Path dir = Paths.get(directory);
+            addExecutable(candidates, dir.resolve("chromedriver-" + platform + platform.extension));
+            addExecutable(candidates, dir.resolve(platform.toString()).resolve(platform.driverName()));
+            addExecutable(candidates, dir.resolve(platform.driverName()));
+        }
+        addExecutable(candidates, fromClasspath("/chromedriver-" + platform + platform.extension));
+        if (!platform.os.equals("linux")) {
+            addExecutable(candidates, fromClasspath("/" + platform.driverName()));
+        }
+        for (String dir : System.getenv().getOrDefault("PATH", "").split(File.pathSeparator)) {
+            if (!dir.isEmpty()) {
+                addExecutable(candidates, Paths.get(dir, platform.driverName()));
+            }
+        }
+        return candidates;
+    }
+
+    private static void addExecutable(Set<Path> candidates, Path file) {
+        if (file == null || !Files.isRegularFile(file)) {
+            return;
+        }
+        if (!Files.isExecutable(file) && !file.toFile().setExecutable(true)) {
+            log.warn("Skipping {}, it is not executable", file);
+            return;
+        }
+        candidates.add(file.toAbsolutePath());
+    }
+
+    /**
+     * Classpath resources inside a jar cannot be executed, those are copied to a temporary file.
+     */
+    private static Path fromClasspath(String resource) {
+        URL url = ChromeDriverResolver.class.getResource(resource);
+        if (url == null) {
+            return null;
+        }
+        try {
+            if ("file".equals(url.getProtocol())) {
+                return Paths.get(url.toURI());
+            }
+            Path copy = Files.createTempFile("chromedriver", resource.endsWith(".exe") ? ".exe" : "");
+            copy.toFile().deleteOnExit();
+            try (InputStream in = url.openStream()) {
+                Files.copy(in, copy, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return copy;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to extract " + resource, e);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Bad chromedriver location " + url, e);
+        }
+    }
+
+    private static Path chromeBinary(Platform platform) {
+        String explicit = System.getProperty("chrome.binary");
+        if (explicit != null) {
+            return Paths.get(explicit);
+        }
+        List<Path> locations = new ArrayList<>();
+        switch (platform.os) {
+            case "mac":
+                locations.add(Paths.get("/Applications/Google Chrome.app/Contents/MacOS/Google Chrome"));
+                break;
+            case "linux":
+                for (String dir : System.getenv().getOrDefault("PATH", "").split(File.pathSeparator)) {
+                    for (String name : new String[]{"google-chrome", "google-chrome-stable", "chromium", "chromium-browser"}) {
+                        if (!dir.isEmpty()) {
+                            locations.add(Paths.get(dir, name));
+                        }
+                    }
+                }
+                break;
+            default:
+                // chrome.exe --version prints nothing on Windows, the default Chrome is used unchecked
+                break;
+        }
+        for (Path location : locations) {
+            if (Files.isExecutable(location)) {
+                return location;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Major version printed by {@code <binary> --version}, or null if it could not be read
+     */
+    private static Integer majorVersion(Path binary) {
+        try {
+            // Read from a file once the process exited, reading its stdout would block past the timeout on a hang
+            Path output = Files.createTempFile("chrome-version", ".txt");
+            try {
+                Process process = new ProcessBuilder(binary.toString(), "--version").redirectErrorStream(true)
+                        .redirectOutput(output.toFile()).start();
+                try {
+                    if (!process.waitFor(VERSION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                        log.warn("{} --version did not answer within {} s", binary, VERSION_TIMEOUT_SECONDS);
+                        return null;
+                    }
+                } finally {
+                    process.destroy();
+                }
+                Matcher version = VERSION.matcher(new String(Files.readAllBytes(output), StandardCharsets.UTF_8));
+                return version.find() ? Integer.valueOf(version.group(1)) : null;
+            } finally {
+                Files.deleteIfExists(output);
+            }
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * The binaries to start sessions with
+     */
+    public static final class Resolution {
+
+        private final Path driver;
+        private final Path chrome;
+        private final Integer version;
+
+        private Resolution(Path driver, Path chrome, Integer version) {
+            this.driver = driver;
+            this.chrome = chrome;
+            this.version = version;
+        }
+
+        public Path getDriver() {
+            return driver;
+        }
+
+        /**
+         * @return The Chrome binary the driver was matched with, or null to let chromedriver find Chrome
+         */
+        public Path getChrome() {
+            return chrome;
+        }
+
+        /**
+         * @return Major version of the driver, or null if it could not be read
+         */
+        public Integer getVersion() {
+            return version;
+        }
+    }
+
+    /**
+     * Operating system and architecture, as used in binary names, e.g. linux-x64
+     */
+    static final class Platform {
+
+        final String os;
+        final String arch;
+        final String extension;
+
+        private Platform(String os, String arch) {
+            this.os = os;
+            this.arch = arch;
+            this.extension = os.equals("win") ? ".exe" : "";
+        }
+
+        static Platform current() {
+            String name = System.getProperty("os.name").toLowerCase(Locale.ROOT);
+            String arch = System.getProperty("os.arch").toLowerCase(Locale.ROOT);
+            String os = name.contains("win") ? "win" : name.contains("mac") ? "mac" : "linux";
+            return new Platform(os, arch.equals("aarch64") || arch.startsWith("arm") ? "arm64"
+                    : arch.contains("64") ? "x64" : "x86");
+        }
+
+        String driverName() {
+            return "chromedriver" + extension;
+        }
+
+        @Override
+        public String toString() {
+            return os + "-" + arch;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.zwift.framework.driver;
+
+import com.zwift.framework.logging.Log;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Pool of reusable WebDriver sessions.
+ * <p>
+ * Sessions are handed out with {@link #acquire()} and given back with {@link #release(WebDriver)}. A released session
+ * is reset (cookies, storage and extra windows cleared, parked on about:blank) instead of quit, so the next test skips
+ * the browser start. Sessions that fail the health check or the reset are quit and replaced with a new one.
+ * <p>
+ * Chrome sessions are reset through DevTools: every cookie is deleted, and the storage of every origin in the
+ * navigation history of the session's windows is cleared. Other sessions only have WebDriver, which reaches the cookies
+ * and storage of the current page's origin; what other origins stored, e.g. third-party frames, survives the reset.
+ * <p>
+ * Resets and quits run on a background thread so the releasing test returns at once. A session being reset still
+ * counts against the pool size until it is back in the pool.
+ */
+public class DriverPool {
+
+    private static final Log log = Log.of(DriverPool.class);
+
+    private static final String BLANK_PAGE = "about:blank";
+
+    private final int size;
+    private final Supplier<WebDriver> factory;
+    private final Consumer<WebDriver> prepare;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<WebDriver> idle = new LinkedBlockingDeque<>();
+    private final Set<WebDriver> sessions = ConcurrentHashMap.newKeySet();
+    private final ExecutorService maintenance = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "driver-pool-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param size    Maximum number of live browser sessions
+     * @param factory Creates a new, ready to use WebDriver session
+     */
+    public DriverPool(int size, Supplier<WebDriver> factory) {
+        this(size, factory, driver -> {
+        });
+    }
+
+    /**
+     * @param size    Maximum number of live browser sessions
+     * @param factory Creates a new, ready to use WebDriver session
+     * @param prepare Restores state every test expects after a session has been reset, e.g. consent cookies
+     */
+    public DriverPool(int size, Supplier<WebDriver> factory, Consumer<WebDriver> prepare) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Driver pool size must be at least 1, was " + size);
+        }
+        this.size = size;
+        this.factory = factory;
+        this.prepare = prepare;
+        this.permits = new Semaphore(size, true);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Leases a healthy session, reusing an idle one when possible. Blocks while all sessions are leased.
+     *
+     * @return A WebDriver session owned by the caller until it is released
+     */
+    public WebDriver acquire() throws InterruptedException {
+        permits.acquire();
+        try {
+            WebDriver driver;
+            while ((driver = idle.pollFirst()) != null) {
+                if (isHealthy(driver)) {
+                    return driver;
+                }
+                log.warn("Discarding unhealthy browser session");
+                retire(driver);
+            }
+            driver = factory.get();
+            sessions.add(driver);
+            return driver;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a leased session to the pool, resetting it in the background. A session that cannot be reset is quit
+     * instead.
+     *
+     * @param driver A session obtained from {@link #acquire()}
+     */
+    public void release(WebDriver driver) {
+        maintenance.execute(() -> {
+            try {
+                if (reset(driver)) {
+                    idle.offerFirst(driver);
+                } else {
+                    log.warn("Browser session failed to reset, quitting it");
+                    destroy(driver);
+                }
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * Quits a leased session in the background without returning it to the pool.
+     *
+     * @param driver A session obtained from {@link #acquire()}
+     */
+    public void invalidate(WebDriver driver) {
+        retire(driver);
+        permits.release();
+    }
+
+    /**
+     * Waits for pending resets, then quits every session the pool has created.
+     */
+    public void shutdown() {
+        maintenance.shutdown();
+        try {
+            if (!maintenance.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Browser sessions were still being reset at shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        idle.clear();
+        List<WebDriver> all = new ArrayList<>(sessions);
+        for (WebDriver driver : all) {
+            destroy(driver);
+        }
+    }
+
+    /**
+     * A session is healthy when the browser still answers and has at least one window open.
+     */
+    private boolean isHealthy(WebDriver driver) {
+        try {
+            return !driver.getWindowHandles().isEmpty();
+        } catch (WebDriverException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Brings a session back to a clean state: a single window, no cookies, no web storage and an empty page.
+     *
+     * @return false if the browser did not respond to the reset, or any step of it failed, e.g. a driver that cannot
+     * run scripts on the current page or a throwing prepare step
+     */
+    private boolean reset(WebDriver driver) {
+        try {
+            List<String> handles = new ArrayList<>(driver.getWindowHandles());
+            if (handles.isEmpty()) {
+                return false;
+            }
+            boolean devTools = Cdp.isSupported(driver);
+            Set<String> origins = new LinkedHashSet<>();
+            for (String handle : handles.subList(1, handles.size())) {
+                driver.switchTo().window(handle);
+                if (devTools) {
+                    origins.addAll(visitedOrigins(driver));
+                }
+                driver.close();
+            }
+            driver.switchTo().window(handles.get(0));
+
+            if (devTools) {
+                origins.addAll(visitedOrigins(driver));
+                Cdp.execute(driver, "Network.clearBrowserCookies", Collections.emptyMap());
+                for (String origin : origins) {
+                    Map<String, Object> params = new HashMap<>();
+                    params.put("origin", origin);
+                    params.put("storageTypes", "all");
+                    Cdp.execute(driver, "Storage.clearDataForOrigin", params);
+                }
+            } else {
+                driver.manage().deleteAllCookies();
+            }
+            if (driver instanceof JavascriptExecutor) {
+                // Session storage belongs to the window, not the origin, so it has to be cleared before leaving the page
+                ((JavascriptExecutor) driver).executeScript(
+                        "try { window.localStorage.clear(); window.sessionStorage.clear(); } catch (e) {}");
+            }
+            driver.navigate().to(BLANK_PAGE);
+            prepare.accept(driver);
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Resetting browser session failed: {}", e.toString());
+            return false;
+        }
+    }
+
+    /**
+     * @return Origins of the pages the current window has navigated to, from its DevTools navigation history
+     */
+    @SuppressWarnings("unchecked")
+    private static Set<String> visitedOrigins(WebDriver driver) {
+        Set<String> origins = new LinkedHashSet<>();
+        Object entries = Cdp.execute(driver, "Page.getNavigationHistory", Collections.emptyMap()).get("entries");
+        if (!(entries instanceof List)) {
+            return origins;
+        }
+        for (Object entry : (List<Object>) entries) {
+            Object url = entry instanceof Map ? ((Map<String, Object>) entry).get("url") : null;
+            try {
+                URL parsed = new URL(String.valueOf(url));
+                if (parsed.getProtocol().startsWith("http")) {
+                    origins.add(parsed.getProtocol() + "://" + parsed.getHost()
+                            + (parsed.getPort() == -1 ? "" : ":" + parsed.getPort()));
+                }
+            } catch (MalformedURLException e) {
+                // about:blank, data: and the like have no storage to clear
+            }
+        }
+        return origins;
+    }
+
+    /**
+     * Quits a session on the maintenance thread, it no longer counts as a pool session right away.
+     */
+    private void retire(WebDriver driver) {
+        sessions.remove(driver);
+        maintenance.execute(() -> destroy(driver));
+    }
+
+    private void destroy(WebDriver driver) {
+        sessions.remove(driver);
+        try {
+            driver.quit();
+        } catch (WebDriverException e) {
+            log.warn("Could not quit browser session: {}", e.getMessage());
+        }
+    }
+}
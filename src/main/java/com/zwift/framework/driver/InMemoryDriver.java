@@ -0,0 +1,185 @@
+package com.zwift.framework.driver;
+
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.WebResponseData;
+import com.gargoylesoftware.htmlunit.util.NameValuePair;
+import com.gargoylesoftware.htmlunit.util.WebConnectionWrapper;
+import com.zwift.framework.logging.Log;
+import org.apache.commons.io.IOUtils;
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process browser for page object and {@link com.zwift.framework.helpers.Helper Helper} tests, started with
+ * browser=inmemory.
+ * <p>
+ * Pages are parsed and their scripts run by HtmlUnit inside the JVM, so a session starts in milliseconds and needs no
+ * browser process. Every request is answered from local HTML fixtures instead of the network: a URL maps to
+ * {@code <fixtures>/<host>/<path>}, where a path without extension is looked up as {@code <path>.html}, then
+ * {@code <path>/index.html}. Requests without a fixture get an empty 404, file: URLs are read as usual. Fixtures are
+ * classpath resources under fixtures/ (src/test/resources/fixtures), so they are found whatever the working
+ * directory, unless -Dinmemory.fixtures names a directory to read them from instead.
+ * <p>
+ * Screenshots, browser logs and DevTools commands are not available, the listeners skip them for these sessions.
+ */
+public class InMemoryDriver extends HtmlUnitDriver {
+
+    private static final Log log = Log.of(InMemoryDriver.class);
+
+    private static final long SCRIPT_TIMEOUT_SECONDS = 30;
+
+    private static final String FIXTURES = "fixtures";
+
+    public InMemoryDriver() {
+        this(System.getProperty("inmemory.fixtures") == null ? new Fixtures(null)
+                : new Fixtures(Paths.get(System.getProperty("inmemory.fixtures"))));
+    }
+
+    /**
+     * @param fixtures Directory holding one subdirectory of pages per host
+     */
+    public InMemoryDriver(Path fixtures) {
+        this(new Fixtures(fixtures));
+    }
+
+    private InMemoryDriver(Fixtures fixtures) {
+        super(BrowserVersion.CHROME, true);
+        // Wait scripts bound themselves, the session timeout only has to outlast them
+        manage().timeouts().setScriptTimeout(SCRIPT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        getWebClient().setWebConnection(new FixtureConnection(getWebClient(), fixtures));
+    }
+
+    @Override
+    protected WebClient modifyWebClient(WebClient client) {
+        // Fixtures are trimmed copies of the real pages, errors from the scripts they leave out are expected
+        client.getOptions().setThrowExceptionOnScriptError(false);
+        client.getOptions().setThrowExceptionOnFailingStatusCode(false);
+        client.getOptions().setPrintContentOnFailingStatusCode(false);
+        client.getOptions().setCssEnabled(true);
+        return client;
+    }
+
+    /**
+     * Fixture files, read from a directory or, without one, from the classpath
+     */
+    private static final class Fixtures {
+
+        private final Path directory;
+
+        private Fixtures(Path directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * @param path Path of the file below the fixtures root, e.g. "zwift.com/events.html"
+         * @return The file, or null if there is no such file
+         */
+        URL find(String path) throws IOException {
+            if (Arrays.asList(path.split("/")).contains("..")) {
+                return null;
+            }
+            if (directory != null) {
+                Path file = directory.resolve(path);
+                return Files.isRegularFile(file) ? file.toUri().toURL() : null;
+            }
+            URL resource = InMemoryDriver.class.getResource("/" + FIXTURES + "/" + path);
+            if (resource == null) {
+                return null;
+            }
+            if ("file".equals(resource.getProtocol())) {
+                try {
+                    return Files.isRegularFile(Paths.get(resource.toURI())) ? resource : null;
+                } catch (URISyntaxException e) {
+                    return null;
+                }
+            }
+            URLConnection connection = resource.openConnection();
+            return connection instanceof JarURLConnection
+                    && ((JarURLConnection) connection).getJarEntry().isDirectory() ? null : resource;
+        }
+
+        @Override
+        public String toString() {
+            return directory != null ? directory.toString() : "classpath:" + FIXTURES;
+        }
+    }
+
+    /**
+     * Serves requests from the fixtures, nothing reaches the network
+     */
+    private static final class FixtureConnection extends WebConnectionWrapper {
+
+        private final Fixtures fixtures;
+        private final Set<String> missing = ConcurrentHashMap.newKeySet();
+
+        private FixtureConnection(WebClient client, Fixtures fixtures) {
+            super(client);
+            this.fixtures = fixtures;
+        }
+
+        @Override
+        public WebResponse getResponse(WebRequest request) throws IOException {
+            long start = System.currentTimeMillis();
+            URL url = request.getUrl();
+            if ("file".equals(url.getProtocol())) {
+                return super.getResponse(request);
+            }
+            URL file = lookup(url);
+            if (file == null) {
+                if (missing.add(url.getHost() + url.getPath())) {
+                    log.warn("No fixture for {} in {}", url, fixtures);
+                }
+                return response(request, 404, "Not Found", new byte[0], "text/plain", start);
+            }
+            String name = file.getPath();
+            String type = URLConnection.guessContentTypeFromName(name);
+            if (type == null) {
+                type = name.endsWith(".js") ? "application/javascript"
+                        : name.endsWith(".css") ? "text/css" : "application/octet-stream";
+            }
+            return response(request, 200, "OK", IOUtils.toByteArray(file), type, start);
+        }
+
+        /**
+         * @return The fixture for the URL, or null if there is none or the path leaves the host's directory
+         */
+        private URL lookup(URL url) throws IOException {
+            String host = url.getHost();
+            if (host.isEmpty() || host.contains("/") || host.equals("..")) {
+                return null;
+            }
+            String path = url.getPath().replaceAll("^/+|/+$", "");
+            if (path.isEmpty()) {
+                return fixtures.find(host + "/index.html");
+            }
+            URL file = fixtures.find(host + "/" + path);
+            if (file == null) {
+                file = fixtures.find(host + "/" + path + ".html");
+            }
+            return file != null ? file : fixtures.find(host + "/" + path + "/index.html");
+        }
+
+        private static WebResponse response(WebRequest request, int status, String message, byte[] body, String type,
+                                            long start) {
+            WebResponseData data = new WebResponseData(body, status, message,
+                    Collections.singletonList(new NameValuePair("Content-Type", type + "; charset=UTF-8")));
+            return new WebResponse(data, request, System.currentTimeMillis() - start);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.zwift.framework.driver;
+
+import com.zwift.framework.logging.Log;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Browser profile prepared once per suite and copied for every new session.
+ * <p>
+ * The template is made by a throwaway session that visits the site and accepts the consent banner, so its profile
+ * holds the consent cookies, local storage and a warm HTTP cache. Each session then starts from its own copy of the
+ * profile. Files Chrome never changes once written (cache entry blobs, LevelDB tables) are hard-linked instead of
+ * copied, which keeps a copy cheap however large the cache grows. The template's cookies are also kept so they can be
+ * restored with {@link #seedCookies} after a pooled session has been reset.
+ */
+public final class ProfileTemplate {
+
+    private static final Log log = Log.of(ProfileTemplate.class);
+
+    private static final Pattern IMMUTABLE = Pattern.compile("f_[0-9a-f]+|[0-9]+\\.ldb");
+    private static final List<String> LOCK_FILES = Arrays.asList("SingletonLock", "SingletonSocket", "SingletonCookie",
+            "lockfile", "LOCK");
+    private static final List<String> COOKIE_FIELDS = Arrays.asList("name", "value", "domain", "path", "secure",
+            "httpOnly", "sameSite", "expires");
+
+    private final Path root;
+    private final Path template;
+    private final List<Map<String, Object>> cookies;
+    private final AtomicInteger copies = new AtomicInteger();
+
+    private ProfileTemplate(Path root, List<Map<String, Object>> cookies) {
+        this.root = root;
+        this.template = root.resolve("template");
+        this.cookies = cookies;
+    }
+
+    /**
+     * Builds the template with a session started on an empty profile directory.
+     *
+     * @param launcher Starts a browser using the given user data directory
+     * @param warmUp   Visits the pages to cache and accepts the consent banner
+     * @return The template
+     */
+    @SuppressWarnings("unchecked")
+    public static ProfileTemplate build(Function<Path, WebDriver> launcher, Consumer<WebDriver> warmUp) {
+        long start = System.nanoTime();
+        Path root;
+        try {
+            root = Files.createTempDirectory("zwift-profiles");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create the profile template directory", e);
+        }
+        WebDriver driver = launcher.apply(root.resolve("template"));
+        List<Map<String, Object>> cookies = new ArrayList<>();
+        try {
+            warmUp.accept(driver);
+            if (Cdp.isSupported(driver)) {
+                for (Object cookie : (List<Object>) Cdp.execute(driver, "Network.getAllCookies", Collections.emptyMap())
+                        .getOrDefault("cookies", Collections.emptyList())) {
+                    cookies.add(cookieParam((Map<String, Object>) cookie));
+                }
+            }
+        } finally {
+            // Chrome writes the profile to disk when it exits
+            driver.quit();
+        }
+        log.info("Built browser profile template with {} cookies in {} ms", cookies.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        return new ProfileTemplate(root, Collections.unmodifiableList(cookies));
+    }
+
+    /**
+     * @return A new user data directory holding a copy of the template
+     */
+    public Path newProfile() {
+        Path copy = root.resolve("session-" + copies.incrementAndGet());
+        try {
+            Files.walkFileTree(template, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    Files.createDirectories(copy.resolve(template.relativize(dir)));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    String name = file.getFileName().toString();
+                    if (attrs.isRegularFile() && !LOCK_FILES.contains(name)) {
+                        Path target = copy.resolve(template.relativize(file));
+                        if (IMMUTABLE.matcher(name).matches()) {
+                            try {
+                                Files.createLink(target, file);
+                                return FileVisitResult.CONTINUE;
+                            } catch (IOException | UnsupportedOperationException e) {
+                                // File system without hard links, copy instead
+                            }
+                        }
+                        Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to copy the browser profile template", e);
+        }
+        return copy;
+    }
+
+    /**
+     * Restores the template's cookies, e.g. the consent state, in a session whose cookies were cleared.
+     *
+     * @param driver A session, cookies are set through DevTools so it does not have to be on the cookie's domain
+     */
+    public void seedCookies(WebDriver driver) {
+        if (cookies.isEmpty() || !Cdp.isSupported(driver)) {
+            return;
+        }
+        try {
+            Cdp.execute(driver, "Network.setCookies", Collections.singletonMap("cookies", cookies));
+        } catch (WebDriverException e) {
+            log.warn("Could not restore the profile cookies: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes the template and every copy, once their browsers have quit.
+     */
+    public void delete() {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.deleteIfExists(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                    Files.deleteIfExists(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Could not delete browser profiles in {}: {}", root, e.getMessage());
+        }
+    }
+
+    /**
+     * Keeps the fields Network.setCookies accepts; session cookies have no expiry.
+     */
+    private static Map<String, Object> cookieParam(Map<String, Object> cookie) {
+        Map<String, Object> param = new LinkedHashMap<>();
+        for (String field : COOKIE_FIELDS) {
+            if (cookie.containsKey(field)) {
+                param.put(field, cookie.get(field));
+            }
+        }
+        if (Boolean.TRUE.equals(cookie.get("session"))) {
+            param.remove("expires");
+        }
+        return param;
+    }
+}
@@ -0,0 +1,261 @@
+package com.zwift.framework.driver;
+
+import com.zwift.framework.logging.Log;
+import com.zwift.framework.utils.Config;
+import com.zwift.framework.utils.Scripts;
+import io.qameta.allure.Allure;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WrapsDriver;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Blocks and stubs requests the functional tests never assert on: analytics, marketing tags, the hero video.
+ * <p>
+ * Rules come from intercept.properties in the root directory (-Dintercept.rules to use another file):
+ * {@code BLOCK_URLS} is a comma separated list of URL patterns with {@code *} wildcards, {@code BLOCK_TYPES} a list of
+ * resource types (media, font, image) and {@code STUBS=true} injects third-party-stubs.js into every document so
+ * pages calling the blocked libraries keep working. They are applied through DevTools when the session is created.
+ * <p>
+ * Blocked requests are counted per test from the network events {@link BrowserEvents} collects; their size is
+ * estimated with a HEAD request per URL, once per JVM. Suites measuring performance turn interception off with the
+ * intercept parameter; the rules are applied per session, so one suite can mix both.
+ */
+public final class RequestInterceptor {
+
+    private static final Log log = Log.of(RequestInterceptor.class);
+
+    private static final String DEFAULT_RULES = "intercept.properties";
+    private static final long SIZE_WAIT_MILLIS = 2000;
+
+    private static final Map<String, List<String>> TYPE_PATTERNS = new HashMap<>();
+
+    static {
+        TYPE_PATTERNS.put("media", Arrays.asList("*.mp4*", "*.webm*", "*.m3u8*", "*.mov*", "*.m4s*"));
+        TYPE_PATTERNS.put("font", Arrays.asList("*.woff*", "*.ttf*", "*.otf*", "*.eot*"));
+        TYPE_PATTERNS.put("image", Arrays.asList("*.png*", "*.jpg*", "*.jpeg*", "*.gif*", "*.webp*", "*.svg*"));
+    }
+
+    private static final Map<String, CompletableFuture<Long>> sizes = new ConcurrentHashMap<>();
+    private static final ExecutorService sizeLookups = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "blocked-size");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static volatile Rules rules;
+
+    // Sessions the rules were installed in, only their blocked requests are reported
+    private static final Set<WebDriver> intercepted = Collections.newSetFromMap(
+            Collections.synchronizedMap(new WeakHashMap<>()));
+
+    private RequestInterceptor() {
+    }
+
+    /**
+     * @return The rules, read from the rules file on first use
+     */
+    private static Rules rules() {
+        Rules current = rules;
+        if (current == null) {
+            synchronized (RequestInterceptor.class) {
+                if (rules == null) {
+                    rules = Rules.load(System.getProperty("intercept.rules", DEFAULT_RULES));
+                }
+                current = rules;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Applies the rules to a new session. Sessions that do not support DevTools are left as they are.
+     *
+     * @param driver  The new session
+     * @param enabled false to let every request through, e.g. for performance suites
+     */
+    public static void install(WebDriver driver, boolean enabled) {
+        Rules current = enabled ? rules() : Rules.NONE;
+        if (!current.isActive() || !Cdp.isSupported(driver)) {
+            return;
+        }
+        intercepted.add(driver);
+        try {
+            Cdp.execute(driver, "Network.enable", Collections.emptyMap());
+            Cdp.execute(driver, "Network.setBlockedURLs", Collections.singletonMap("urls", current.patterns));
+            if (current.stubs) {
+                Cdp.execute(driver, "Page.addScriptToEvaluateOnNewDocument",
+                        Collections.singletonMap("source", Scripts.load("third-party-stubs.js")));
+            }
+        } catch (WebDriverException e) {
+            log.warn("Could not install request blocking: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Counts the requests blocked since {@link BrowserEvents#begin} and attaches the counters to the current Allure
+     * test.
+     *
+     * @param driver The test's session
+     * @return The counters, empty when the session was started without interception
+     */
+    public static Counters report(WebDriver driver) {
+        Counters counters = new Counters();
+        WebDriver session = driver;
+        while (session instanceof WrapsDriver) {
+            session = ((WrapsDriver) session).getWrappedDriver();
+        }
+        if (session == null || !intercepted.contains(session)) {
+            return counters;
+        }
+        BrowserEvents.Buffer events = BrowserEvents.collect(driver);
+        List<String> blocked = events == null ? Collections.emptyList() : events.getBlocked();
+        long deadline = System.currentTimeMillis() + SIZE_WAIT_MILLIS;
+        for (String url : blocked) {
+            counters.add(url, estimateSize(url, deadline));
+        }
+        if (counters.getRequests() > 0) {
+            Allure.addAttachment("Blocked requests", "text/plain", counters.toString(), ".txt");
+            log.info("Blocked {} requests, about {} bytes", counters.getRequests(), counters.getBytes());
+        }
+        return counters;
+    }
+
+    private static long estimateSize(String url, long deadline) {
+        CompletableFuture<Long> size = sizes.computeIfAbsent(url,
+                key -> CompletableFuture.supplyAsync(() -> contentLength(key), sizeLookups));
+        try {
+            return size.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            return 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+    }
+
+    private static long contentLength(String url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setRequestMethod("HEAD");
+            connection.setConnectTimeout(5000);
+            connection.setReadTimeout(5000);
+            return Math.max(connection.getContentLengthLong(), 0);
+        } catch (IOException | RuntimeException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Blocked requests of one test
+     */
+    public static final class Counters {
+
+        private final Map<String, long[]> byHost = new TreeMap<>();
+        private int requests;
+        private long bytes;
+
+        private void add(String url, long size) {
+            requests++;
+            bytes += size;
+            String host;
+            try {
+                host = new URL(url).getHost();
+            } catch (IOException e) {
+                host = url;
+            }
+            long[] hostCounters = byHost.computeIfAbsent(host, key -> new long[2]);
+            hostCounters[0]++;
+            hostCounters[1] += size;
+        }
+
+        public int getRequests() {
+            return requests;
+        }
+
+        /**
+         * @return Estimated bytes the blocked requests would have transferred
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder table = new StringBuilder(String.format("%-40s %8s %14s%n", "Host", "Requests", "Bytes (est.)"));
+            byHost.forEach((host, counters) ->
+                    table.append(String.format("%-40s %8d %14d%n", host, counters[0], counters[1])));
+            return table.append(String.format("%-40s %8d %14d%n", "Total", requests, bytes)).toString();
+        }
+    }
+
+    /**
+     * Blocking rules read from the rules file
+     */
+    private static final class Rules {
+
+        static final Rules NONE = new Rules(Collections.emptyList(), false);
+
+        final List<String> patterns;
+        final boolean stubs;
+
+        private Rules(List<String> patterns, boolean stubs) {
+            this.patterns = Collections.unmodifiableList(patterns);
+            this.stubs = stubs;
+        }
+
+        static Rules load(String file) {
+            if (!Files.isRegularFile(Paths.get(file))) {
+                return NONE;
+            }
+            Config config = new Config(file);
+            List<String> patterns = new ArrayList<>(split(config.ReadProperty("BLOCK_URLS")));
+            for (String type : split(config.ReadProperty("BLOCK_TYPES"))) {
+                List<String> typePatterns = TYPE_PATTERNS.get(type.toLowerCase());
+                if (typePatterns == null) {
+                    throw new IllegalArgumentException("Unknown resource type " + type + " in " + file
+                            + ", expected one of " + TYPE_PATTERNS.keySet());
+                }
+                patterns.addAll(typePatterns);
+            }
+            return new Rules(patterns, Boolean.parseBoolean(config.ReadProperty("STUBS")));
+        }
+
+        boolean isActive() {
+            return !patterns.isEmpty() || stubs;
+        }
+
+        private static List<String> split(String value) {
+            List<String> values = new ArrayList<>();
+            if (value != null) {
+                for (String part : value.split(",")) {
+                    if (!part.trim().isEmpty()) {
+                        values.add(part.trim());
+                    }
+                }
+            }
+            return values;
+        }
+    }
+}
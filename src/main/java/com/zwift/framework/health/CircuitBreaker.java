@@ -0,0 +1,201 @@
+package com.zwift.framework.health;
+
+import com.zwift.framework.logging.Log;
+import org.openqa.selenium.InvalidElementStateException;
+import org.openqa.selenium.NoSuchSessionException;
+import org.openqa.selenium.NotFoundException;
+import org.openqa.selenium.SessionNotCreatedException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.remote.UnreachableBrowserException;
+
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Stops running tests against an environment that is down, and resumes once it is back.
+ * <p>
+ * The breaker starts closed. It opens after a number of consecutive infrastructure failures (see
+ * {@link #isInfrastructureFailure(Throwable)}), or when told to by a failed probe; any other failure or a success resets
+ * the count. Missing elements and wait timeouts are what both a regression and a site that went down mid-suite look
+ * like, since the browser then renders an error page: they count only when the probe, run at most once per probe
+ * interval, finds the environment down. While open, {@link #allow()} refuses every test. Once the cooldown has passed the breaker is half-open:
+ * the next caller runs the probe, the breaker closes if it succeeds and opens for another cooldown if not. Threads
+ * calling meanwhile wait for the probe's outcome.
+ */
+public final class CircuitBreaker {
+
+    private static final Log log = Log.of(CircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final Duration PROBE_INTERVAL = Duration.ofSeconds(10);
+
+    private final int threshold;
+    private final long cooldownNanos;
+    private final long probeIntervalNanos;
+    private final Supplier<String> probe;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private String reason;
+    private boolean probed;
+    private long probedAt;
+    private String lastProbe;
+
+    /**
+     * @param threshold Consecutive infrastructure failures that open the breaker, 0 to never open it on failures
+     * @param cooldown  Time the breaker stays open before probing again
+     * @param probe     Returns null when the environment is up, otherwise why it is down
+     */
+    public CircuitBreaker(int threshold, Duration cooldown, Supplier<String> probe) {
+        this(threshold, cooldown, PROBE_INTERVAL, probe);
+    }
+
+    /**
+     * @param threshold     Consecutive infrastructure failures that open the breaker, 0 to never open it on failures
+     * @param cooldown      Time the breaker stays open before probing again
+     * @param probeInterval Minimum time between the probes classifying element failures, later ones share the outcome
+     * @param probe         Returns null when the environment is up, otherwise why it is down
+     */
+    public CircuitBreaker(int threshold, Duration cooldown, Duration probeInterval, Supplier<String> probe) {
+        this.threshold = threshold;
+        this.cooldownNanos = cooldown.toNanos();
+        this.probeIntervalNanos = probeInterval.toNanos();
+        this.probe = probe;
+    }
+
+    /**
+     * @return null if a test may run, otherwise why it may not
+     */
+    public synchronized String allow() {
+        if (state == State.CLOSED) {
+            return null;
+        }
+        if (System.nanoTime() - openedAt < cooldownNanos) {
+            return reason;
+        }
+        state = State.HALF_OPEN;
+        String failure = probe.get();
+        if (failure == null) {
+            log.info("Circuit breaker closed, the environment is back up");
+            state = State.CLOSED;
+            failures = 0;
+            reason = null;
+            return null;
+        }
+        open("the environment is still down, " + failure);
+        return reason;
+    }
+
+    /**
+     * Opens the breaker, refusing tests for the cooldown.
+     *
+     * @param why Reason given to the refused tests
+     */
+    public synchronized void open(String why) {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        reason = why;
+        log.warn("Circuit breaker open for {} s: {}", cooldownNanos / 1_000_000_000, why);
+    }
+
+    /**
+     * A test passed, so the environment is up.
+     */
+    public synchronized void recordSuccess() {
+        failures = 0;
+    }
+
+    /**
+     * @param failure Why a test or configuration method failed
+     */
+    public void recordFailure(Throwable failure) {
+        // Probed outside the lock, so other tests are not held up by it
+        String down = !isInfrastructureFailure(failure) && isElementFailure(failure) ? probeDown() : null;
+        synchronized (this) {
+            if (!isInfrastructureFailure(failure) && down == null) {
+                failures = 0;
+                return;
+            }
+            failures++;
+            if (state == State.CLOSED && threshold > 0 && failures >= threshold) {
+                open(failures + " consecutive infrastructure failures, the last one " + summary(failure)
+                        + (down == null ? "" : " while " + down));
+            }
+        }
+    }
+
+    /**
+     * Runs the probe unless it ran within the probe interval, then its last outcome is returned.
+     *
+     * @return null if the environment is up, otherwise why it is down
+     */
+    private String probeDown() {
+        synchronized (this) {
+            if (probed && System.nanoTime() - probedAt < probeIntervalNanos) {
+                return lastProbe;
+            }
+            probed = true;
+            probedAt = System.nanoTime();
+        }
+        String outcome = probe.get();
+        synchronized (this) {
+            lastProbe = outcome;
+        }
+        return outcome;
+    }
+
+    /**
+     * WebDriver messages carry several lines of build and session details, only the first one is kept
+     */
+    private static String summary(Throwable failure) {
+        String message = String.valueOf(failure.getMessage());
+        int newline = message.indexOf('\n');
+        return failure.getClass().getSimpleName() + ": " + (newline < 0 ? message : message.substring(0, newline));
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @param failure Why a test failed
+     * @return true for sessions that could not be started or are gone, and for refused, dropped or timed out
+     * connections and unknown hosts, which point at the site or the browser rather than at the code under test.
+     * Missing, stale or disabled elements and wait timeouts are false, see {@link #isElementFailure(Throwable)}.
+     */
+    public static boolean isInfrastructureFailure(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof NotFoundException || cause instanceof StaleElementReferenceException
+                    || cause instanceof InvalidElementStateException || cause instanceof TimeoutException) {
+                return false;
+            }
+            if (cause instanceof SessionNotCreatedException || cause instanceof UnreachableBrowserException
+                    || cause instanceof NoSuchSessionException || cause instanceof SocketException
+                    || cause instanceof SocketTimeoutException || cause instanceof UnknownHostException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param failure Why a test failed
+     * @return true for missing, stale or disabled elements and wait timeouts, a regression unless the environment is
+     * down
+     */
+    public static boolean isElementFailure(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof NotFoundException || cause instanceof StaleElementReferenceException
+                    || cause instanceof InvalidElementStateException || cause instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,144 @@
+package com.zwift.framework.health;
+
+import com.zwift.framework.Environment;
+import com.zwift.framework.logging.Log;
+import com.zwift.framework.metrics.Timings;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ITestResult;
+import org.testng.SkipException;
+import org.testng.TestListenerAdapter;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Skips the browser tests of a suite while the environment it runs against is down.
+ * <p>
+ * {@link #start(Environment)} probes the environment's URL and API_URL once when the suite starts, and opens the
+ * {@link CircuitBreaker} right away if either does not answer. As a listener it feeds the breaker every test and
+ * configuration result, so session and connection errors in a row (-Dbreaker.threshold, 3 by default, 0 to disable)
+ * open it too, and so do missing elements and wait timeouts while a probe (at most one per
+ * -Dbreaker.probe.interval.ms, 10 s by default) finds the environment down. While open, tests refused by
+ * {@link #admit(ITestResult)} are skipped with the reason when they are invoked, only that invocation: a skipped
+ * configuration method would skip the rest of its class for good. After -Dbreaker.cooldown.ms (30 s by default) the
+ * next test probes again and the suite resumes if the environment is back.
+ */
+public class EnvironmentGuard extends TestListenerAdapter implements IInvokedMethodListener {
+
+    private static final Log log = Log.of(EnvironmentGuard.class);
+
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(5);
+    private static final String REFUSED_ATTRIBUTE = "environmentDown";
+
+    private static volatile CircuitBreaker breaker;
+
+    /**
+     * Probes the environment and arms the breaker for the suite.
+     *
+     * @param environment URL and API_URL to probe, nothing is probed when they are not set
+     */
+    public static void start(Environment environment) {
+        HealthProbe probe = new HealthProbe(Arrays.asList(environment.getProperty("URL"),
+                environment.getProperty("API_URL")), PROBE_TIMEOUT);
+        CircuitBreaker started = new CircuitBreaker(Integer.getInteger("breaker.threshold", 3),
+                Duration.ofMillis(Long.getLong("breaker.cooldown.ms", 30_000)),
+                Duration.ofMillis(Long.getLong("breaker.probe.interval.ms", 10_000)), () -> timed(probe));
+        String failure = timed(probe);
+        if (failure != null) {
+            started.open("the environment is down, " + failure);
+        } else {
+            log.info("Environment is up: {}", probe);
+        }
+        breaker = started;
+    }
+
+    /**
+     * Called before a test uses the environment, e.g. from a @BeforeMethod given the test's result.
+     *
+     * @param result Result of the test method about to run
+     * @return false if the breaker is open, the test is then skipped when it is invoked
+     */
+    public static boolean admit(ITestResult result) {
+        CircuitBreaker current = breaker;
+        String reason = current == null ? null : current.allow();
+        if (reason != null) {
+            result.setAttribute(REFUSED_ATTRIBUTE, reason);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Skips a test {@link #admit(ITestResult)} refused.
+     *
+     * @throws SkipException If the breaker was open when the test was set up
+     */
+    @Override
+    public void beforeInvocation(IInvokedMethod method, ITestResult result) {
+        Object reason = result.getAttribute(REFUSED_ATTRIBUTE);
+        if (method.isTestMethod() && reason != null) {
+            throw new SkipException("Skipped, circuit breaker open: " + reason);
+        }
+    }
+
+    @Override
+    public void afterInvocation(IInvokedMethod method, ITestResult result) {
+    }
+
+    /**
+     * @return The suite's breaker, or null before the suite set up its environment
+     */
+    public static CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    /**
+     * Puts back a breaker from {@link #getBreaker()}, e.g. the enclosing suite's once a suite run by one of its tests
+     * has ended.
+     *
+     * @param saved The breaker to use again, null for none
+     */
+    public static void restore(CircuitBreaker saved) {
+        breaker = saved;
+    }
+
+    private static String timed(HealthProbe probe) {
+        long start = System.nanoTime();
+        try {
+            return probe.check();
+        } finally {
+            Timings.record("Health probe", System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void onTestSuccess(ITestResult result) {
+        CircuitBreaker current = breaker;
+        if (current != null) {
+            current.recordSuccess();
+        }
+    }
+
+    @Override
+    public void onTestFailure(ITestResult result) {
+        failed(result);
+    }
+
+    @Override
+    public void onTestFailedButWithinSuccessPercentage(ITestResult result) {
+        failed(result);
+    }
+
+    @Override
+    public void onConfigurationFailure(ITestResult result) {
+        failed(result);
+    }
+
+    private static void failed(ITestResult result) {
+        CircuitBreaker current = breaker;
+        if (current != null && result.getThrowable() != null) {
+            current.recordFailure(result.getThrowable());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.zwift.framework.health;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Checks that the sites a suite runs against answer at all, in seconds rather than after a test's waits time out.
+ * <p>
+ * A URL is up when it answers with a status below 500 within the timeout: a redirect or a 404 on an API root still
+ * shows the server is there. Redirects are not followed.
+ */
+public final class HealthProbe {
+
+    private final List<String> urls;
+    private final int timeoutMillis;
+
+    /**
+     * @param urls    URLs to request, null entries are ignored
+     * @param timeout Connect and read timeout of each request
+     */
+    public HealthProbe(Collection<String> urls, Duration timeout) {
+        this.urls = new ArrayList<>();
+        for (String url : urls) {
+            if (url != null) {
+                this.urls.add(url);
+            }
+        }
+        this.timeoutMillis = (int) timeout.toMillis();
+    }
+
+    /**
+     * @return null when every URL is up, otherwise why the first one that is not is down
+     */
+    public String check() {
+        for (String url : urls) {
+            String failure = check(url);
+            if (failure != null) {
+                return failure;
+            }
+        }
+        return null;
+    }
+
+    private String check(String url) {
+        long start = System.nanoTime();
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            connection.setInstanceFollowRedirects(false);
+            int status = connection.getResponseCode();
+            if (status >= 500) {
+                return url + " answered " + status + " " + connection.getResponseMessage();
+            }
+            return null;
+        } catch (IOException | RuntimeException e) {
+            return url + " did not answer after " + (System.nanoTime() - start) / 1_000_000 + " ms: " + e;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HealthProbe" + urls;
+    }
+}
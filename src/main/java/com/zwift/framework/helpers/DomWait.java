@@ -0,0 +1,204 @@
+package com.zwift.framework.helpers;
+
+import com.zwift.framework.driver.InMemoryDriver;
+import com.zwift.framework.metrics.WaitStats;
+import com.zwift.framework.utils.Scripts;
+import org.openqa.selenium.*;
+import org.openqa.selenium.remote.UnreachableBrowserException;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+import org.openqa.selenium.support.ui.FluentWait;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event driven wait engine used by {@link Helper}.
+ * <p>
+ * Instead of polling the browser over the wire protocol, a MutationObserver is installed in the page with
+ * executeAsyncScript and the call returns as soon as the condition holds. When the script channel is not available
+ * (no JavascriptExecutor, a locator that cannot be evaluated in the page, or a script error) the wait falls back to a
+ * regular {@link FluentWait} on the given {@link ExpectedCondition}. {@link InMemoryDriver} sessions always poll.
+ * Timeouts and polling intervals of waits on a locator adapt to how long it took before, see {@link WaitStats}.
+ */
+public class DomWait {
+
+    /**
+     * States an element can be waited for, named after the matching {@code ExpectedConditions}
+     */
+    public enum Condition {
+        PRESENT("present"),
+        VISIBLE("visible"),
+        CLICKABLE("clickable"),
+        ALL_VISIBLE("allVisible");
+
+        private final String script;
+
+        Condition(String script) {
+            this.script = script;
+        }
+    }
+
+    private static final String WAIT_SCRIPT = "wait-for.js";
+
+    private final WebDriver driver;
+    private final Duration poll;
+
+    /**
+     * Set once the page script fails for a reason other than navigation, later waits go straight to polling
+     */
+    private boolean scriptChannel;
+
+    /**
+     * @param driver The WebDriver to wait on
+     * @param poll   Polling interval used when falling back to {@link FluentWait}, until the locator has a history
+     */
+    public DomWait(WebDriver driver, Duration poll) {
+        this.driver = driver;
+        this.poll = poll;
+        // An in-process driver has no round trips to save and no layout for the visibility checks of the script
+        this.scriptChannel = driver instanceof JavascriptExecutor && !(driver instanceof InMemoryDriver)
+                && !"polling".equalsIgnoreCase(System.getProperty("wait.engine"));
+    }
+
+    /**
+     * Waits for the first element located by the selector to reach the given condition.
+     *
+     * @param selector  Selector for the element
+     * @param condition State to wait for
+     * @param fallback  Equivalent condition used when polling
+     * @param timeout   How long to wait
+     * @return The matching element
+     * @throws TimeoutException if the condition does not hold in time
+     */
+    public WebElement until(By selector, Condition condition, ExpectedCondition<WebElement> fallback, Duration timeout) {
+        return await(Locator.of(selector), condition + " " + selector, null, condition, fallback, timeout);
+    }
+
+    /**
+     * Waits for a known element to reach the given condition.
+     *
+     * @param element   The element to check
+     * @param condition State to wait for
+     * @param fallback  Equivalent condition used when polling
+     * @param timeout   How long to wait
+     * @return The element
+     * @throws TimeoutException if the condition does not hold in time
+     */
+    public WebElement until(WebElement element, Condition condition, ExpectedCondition<WebElement> fallback, Duration timeout) {
+        return await(Locator.ELEMENT, null, element, condition, fallback, timeout);
+    }
+
+    /**
+     * Waits for every element located by the selector to be visible.
+     *
+     * @param selector Selector for the elements
+     * @param fallback Equivalent condition used when polling
+     * @param timeout  How long to wait
+     * @return The visible elements
+     * @throws TimeoutException if the condition does not hold in time
+     */
+    public List<WebElement> untilAllVisible(By selector, ExpectedCondition<List<WebElement>> fallback, Duration timeout) {
+        return await(Locator.of(selector), Condition.ALL_VISIBLE + " " + selector, null, Condition.ALL_VISIBLE, fallback,
+                timeout);
+    }
+
+    /**
+     * Waits with the timeout and polling interval learned for the locator, see {@link WaitStats}, and records how long
+     * it took. Waits on a known element have no locator to learn from and use the given timeout.
+     */
+    private <T> T await(Locator locator, String key, WebElement element, Condition condition,
+                        ExpectedCondition<T> fallback, Duration timeout) {
+        if (key == null) {
+            return await(locator, element, condition, fallback, timeout, poll);
+        }
+        WaitStats.Budget budget = WaitStats.budget(key, timeout, poll);
+        long start = System.nanoTime();
+        try {
+            T result = await(locator, element, condition, fallback, budget.getTimeout(), budget.getPoll());
+            WaitStats.record(key, System.nanoTime() - start, false);
+            return result;
+        } catch (TimeoutException e) {
+            WaitStats.record(key, System.nanoTime() - start, true);
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T await(Locator locator, WebElement element, Condition condition, ExpectedCondition<T> fallback,
+                        Duration timeout, Duration poll) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+
+        while (scriptChannel && locator != null) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                break;
+            }
+            try {
+                Object result = ((JavascriptExecutor) driver).executeAsyncScript(Scripts.load(WAIT_SCRIPT),
+                        locator.kind, locator.value, condition.script, remaining, element);
+                if (result == null) {
+                    throw new TimeoutException("Expected condition failed: waiting for " + fallback
+                            + " (tried for " + timeout.toMillis() + " ms with DOM mutation events)");
+                }
+                return (T) result;
+            } catch (ScriptTimeoutException e) {
+                // The session script timeout is shorter than this wait, install the observer again
+            } catch (NoSuchSessionException | UnreachableBrowserException e) {
+                throw e;
+            } catch (WebDriverException e) {
+                if (!String.valueOf(e.getMessage()).contains("unloaded")) {
+                    scriptChannel = false;
+                }
+                // Otherwise the page navigated while waiting, wait again on the new document
+            }
+        }
+
+        long remaining = Math.max(deadline - System.nanoTime(), 0);
+        return new FluentWait<>(driver)
+                .withTimeout(Duration.ofNanos(remaining))
+                .pollingEvery(poll)
+                .ignoring(NoSuchElementException.class, StaleElementReferenceException.class)
+                .until(fallback);
+    }
+
+    /**
+     * A {@link By} translated into something wait-for.js can evaluate in the page
+     */
+    private static final class Locator {
+
+        static final Locator ELEMENT = new Locator("element", null);
+
+        private static final String[][] KINDS = {
+                {"By.cssSelector: ", "css"},
+                {"By.xpath: ", "xpath"},
+                {"By.id: ", "id"},
+                {"By.name: ", "name"},
+                {"By.className: ", "className"},
+                {"By.tagName: ", "tagName"},
+                {"By.linkText: ", "linkText"},
+                {"By.partialLinkText: ", "partialLinkText"}
+        };
+
+        final String kind;
+        final String value;
+
+        private Locator(String kind, String value) {
+            this.kind = kind;
+            this.value = value;
+        }
+
+        /**
+         * @return The page side locator, or null for custom or chained selectors which are only supported by polling
+         */
+        static Locator of(By selector) {
+            String description = selector.toString();
+            for (String[] kind : KINDS) {
+                if (description.startsWith(kind[0])) {
+                    return new Locator(kind[1], description.substring(kind[0].length()));
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -1,13 +1,12 @@
 package com.zwift.framework.helpers;
 
 import com.zwift.framework.WebDriverSetup;
+import com.zwift.framework.logging.Log;
 import org.openqa.selenium.*;
 import org.openqa.selenium.interactions.Actions;
 import org.openqa.selenium.support.ui.ExpectedCondition;
 import org.openqa.selenium.support.ui.ExpectedConditions;
-import org.openqa.selenium.support.ui.FluentWait;
 import org.openqa.selenium.support.ui.WebDriverWait;
-import org.testng.Reporter;
 
 import java.time.Duration;
 import java.util.List;
@@ -25,14 +24,22 @@ public class Helper {
     private static final long DEFAULT_TIMEOUT = 10;
     private static final long DEFAULT_POLL = 200;
 
+    private static final Log log = Log.of(Helper.class);
+
+    private static final By CONSENT_BUTTON = By.id("truste-consent-button");
+    private static final String CONSENT_COOKIE = "notice_preferences";
+
     public WebDriver driver;
 
+    private final DomWait domWait;
+
     /**
      * @param driver The WebDriver object created in {@link WebDriverSetup
      *               WebDriverSetup}
      */
     public Helper(WebDriver driver) {
         this.driver = driver;
+        this.domWait = new DomWait(driver, Duration.ofMillis(DEFAULT_POLL));
     }
 
     /**
@@ -44,14 +51,14 @@ public class Helper {
      * @param selector    Selector for the element
      */
     public void click(String elementName, By selector) {
-        Reporter.log("Clicking " + elementName, true);
+        log.info("Clicking {}", elementName);
         try {
             WebElement element = waitClickable(selector);
             element.click();
         } catch (TimeoutException e) {
             throw new NoSuchElementException("Unable to locate element: " + elementName + " Button (" + selector + ")" + e);
         }
-        Reporter.log("Clicked " + elementName, true);
+        log.info("Clicked {}", elementName);
     }
 
     /**
@@ -63,7 +70,7 @@ public class Helper {
      * @param selector    Selector for the element
      */
     public void clickJS(String elementName, By selector) {
-        Reporter.log("Clicking " + elementName + " ...", true);
+        log.info("Clicking {} ...", elementName);
         try {
             WebElement element = waitPresent(selector);
             JavascriptExecutor jse = (JavascriptExecutor) driver;
@@ -71,7 +78,7 @@ public class Helper {
         } catch (TimeoutException e) {
             throw new NoSuchElementException("Unable to locate element: " + elementName + " Button (" + selector + ")" + e);
         }
-        Reporter.log("Clicked " + elementName, true);
+        log.info("Clicked {}", elementName);
     }
 
     /**
@@ -86,11 +93,11 @@ public class Helper {
         } catch (NoSuchElementException e) {
             throw new NoSuchElementException("Unable to locate element: " + elementName + " (" + elementSelector + ")");
         }
-        Reporter.log(elementName + " displayed", true);
+        log.info("{} displayed", elementName);
     }
 
     /**
-     * Fluent wait for element to be clickable
+     * Wait for element to be clickable, see {@link DomWait}
      * <p>
      * Return a clickable WebElement
      *
@@ -99,30 +106,24 @@ public class Helper {
      * @throws Exception
      */
     public WebElement waitClickable(By selector) {
-        return new FluentWait<>(driver)
-                .withTimeout(Duration.ofSeconds(DEFAULT_TIMEOUT))
-                .pollingEvery(Duration.ofMillis(DEFAULT_POLL))
-                .ignoring(NoSuchElementException.class, StaleElementReferenceException.class)
-                .until(ExpectedConditions.elementToBeClickable(selector));
+        return domWait.until(selector, DomWait.Condition.CLICKABLE,
+                ExpectedConditions.elementToBeClickable(selector), Duration.ofSeconds(DEFAULT_TIMEOUT));
     }
 
     /**
-     * Fluent wait for element to be clickable before clicking it
+     * Wait for element to be clickable before clicking it, see {@link DomWait}
      *
      * @param element The element you want to click
      * @throws Exception
      */
     public void waitClick(WebElement element) {
-        new FluentWait<>(driver)
-                .withTimeout(Duration.ofSeconds(DEFAULT_TIMEOUT))
-                .pollingEvery(Duration.ofMillis(DEFAULT_POLL))
-                .ignoring(NoSuchElementException.class)
-                .until(ExpectedConditions.elementToBeClickable(element))
+        domWait.until(element, DomWait.Condition.CLICKABLE,
+                ExpectedConditions.elementToBeClickable(element), Duration.ofSeconds(DEFAULT_TIMEOUT))
                 .click();
     }
 
     /**
-     * Fluent wait till element is visible
+     * Wait till element is visible, see {@link DomWait}
      * <p>
      * Return visible WebElement
      *
@@ -130,15 +131,12 @@ public class Helper {
      * @return Visible WebElement
      */
     public WebElement waitVisible(By selector) {
-        return new FluentWait<>(driver)
-                .withTimeout(Duration.ofSeconds(DEFAULT_TIMEOUT))
-                .pollingEvery(Duration.ofMillis(DEFAULT_POLL))
-                .ignoring(NoSuchElementException.class, StaleElementReferenceException.class)
-                .until(ExpectedConditions.visibilityOfElementLocated(selector));
+        return domWait.until(selector, DomWait.Condition.VISIBLE,
+                ExpectedConditions.visibilityOfElementLocated(selector), Duration.ofSeconds(DEFAULT_TIMEOUT));
     }
 
     /**
-     * Fluent wait for element to be present in the dom
+     * Wait for element to be present in the dom, see {@link DomWait}
      * <p>
      * Return present WebElement
      *
@@ -146,15 +144,12 @@ public class Helper {
      * @return Present WebElement
      */
     public WebElement waitPresent(By selector) {
-        return new FluentWait<>(driver)
-                .withTimeout(Duration.ofSeconds(DEFAULT_TIMEOUT))
-                .pollingEvery(Duration.ofMillis(DEFAULT_POLL))
-                .ignoring(NoSuchElementException.class, StaleElementReferenceException.class)
-                .until(ExpectedConditions.presenceOfElementLocated(selector));
+        return domWait.until(selector, DomWait.Condition.PRESENT,
+                ExpectedConditions.presenceOfElementLocated(selector), Duration.ofSeconds(DEFAULT_TIMEOUT));
     }
 
     /**
-     * Fluent wait for visibility of all elements located by the selector
+     * Wait for visibility of all elements located by the selector, see {@link DomWait}
      * <p>
      * Return list of WebElements for selector
      *
@@ -162,18 +157,27 @@ public class Helper {
      * @return List of WebElements for selector
      */
     public List<WebElement> waitListVisible(By selector) {
-        return new FluentWait<>(driver)
-                .withTimeout(Duration.ofSeconds(DEFAULT_TIMEOUT))
-                .pollingEvery(Duration.ofMillis(DEFAULT_POLL))
-                .ignoring(NoSuchElementException.class, StaleElementReferenceException.class)
-                .until(ExpectedConditions.visibilityOfAllElementsLocatedBy(selector));
+        return domWait.untilAllVisible(selector,
+                ExpectedConditions.visibilityOfAllElementsLocatedBy(selector), Duration.ofSeconds(DEFAULT_TIMEOUT));
     }
 
     /**
-     * Waits for an Cookies dialog to pop up on screen and accepts.
-     *
+     * Accepts the Cookies dialog. Sessions started from the profile template already hold the TrustArc consent cookie,
+     * so the banner is never rendered and no wait is spent; other sessions wait for the banner, which may show up
+     * after the page has loaded.
      */
     public void acceptCookie() {
-        waitClick(driver.findElement(By.id("truste-consent-button")));
+        if (driver.manage().getCookieNamed(CONSENT_COOKIE) != null) {
+            log.info("Consent cookie set, no Cookies dialog");
+            return;
+        }
+        waitAcceptCookie();
+    }
+
+    /**
+     * Waits for the Cookies dialog to pop up on screen and accepts, for a browser known to have no consent yet.
+     */
+    public void waitAcceptCookie() {
+        waitClickable(CONSENT_BUTTON).click();
     }
 }
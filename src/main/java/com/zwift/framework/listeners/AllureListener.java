@@ -2,25 +2,62 @@ package com.zwift.framework.listeners;
 
 import com.zwift.framework.Base;
 import com.zwift.framework.WebDriverSetup;
+import com.zwift.framework.driver.BrowserEvents;
+import com.zwift.framework.driver.RequestInterceptor;
+import com.zwift.framework.logging.Log;
+import com.zwift.framework.metrics.PageMetrics;
+import io.qameta.allure.Allure;
+import io.qameta.allure.AllureLifecycle;
 import io.qameta.allure.Attachment;
 import org.openqa.selenium.OutputType;
 import org.openqa.selenium.TakesScreenshot;
 import org.openqa.selenium.WebDriver;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
 import org.testng.ITestContext;
 import org.testng.ITestListener;
 import org.testng.ITestResult;
 import org.testng.Reporter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.util.List;
 
 /**
  * Requires JVM parameter -javaagent:"lib/aspectjweaver-1.9.6.jar"
  */
-public class AllureListener extends Base implements ITestListener {
+public class AllureListener extends Base implements ITestListener, ISuiteListener {
+
+    private static final Log log = Log.of(AllureListener.class);
+
+    private static final Duration ARTIFACT_DRAIN_TIMEOUT = Duration.ofMinutes(1);
+    private static final Duration LOG_DELIVERY_TIMEOUT = Duration.ofSeconds(5);
+
     private static String getTestMethodName(ITestResult iTestResult) {
         return iTestResult.getMethod().getConstructorOrMethod().getName();
     }
 
+    /**
+     * Finds the session the given test ran with, even when several tests run in parallel.
+     *
+     * @param iTestResult Result of a test method
+     * @return The test's WebDriver, or null for non WebDriver tests
+     */
+    static WebDriver getDriver(ITestResult iTestResult) {
+        Object driver = iTestResult.getAttribute(WebDriverSetup.DRIVER_ATTRIBUTE);
+        if (driver instanceof WebDriver) {
+            return (WebDriver) driver;
+        }
+        if (iTestResult.getInstance() instanceof WebDriverSetup) {
+            return ((WebDriverSetup) iTestResult.getInstance()).getDriver();
+        }
+        return null;
+    }
+
     //PNG attachments for Allure
     @Attachment(value = "Screenshot", type = "image/png")
     public byte[] saveScreenshotPNG(WebDriver driver) {
@@ -33,66 +70,108 @@ public class AllureListener extends Base implements ITestListener {
         return message;
     }
 
+    @Override
+    public void onStart(ISuite suite) {
+    }
+
+    /**
+     * Waits for background failure artifacts before the suite reports
+     */
+    @Override
+    public void onFinish(ISuite suite) {
+        ArtifactCollector.drain(ARTIFACT_DRAIN_TIMEOUT);
+        Log.release();
+    }
+
     @Override
     public void onStart(ITestContext iTestContext) {
-        Reporter.log("onStart method " + iTestContext.getName(), true);
+        log.info("onStart method {}", iTestContext.getName());
     }
 
     @Override
     public void onFinish(ITestContext iTestContext) {
-        Reporter.log("onFinish method " + iTestContext.getName(), true);
+        log.info("onFinish method {}", iTestContext.getName());
     }
 
     @Override
     public void onTestStart(ITestResult iTestResult) {
-        Reporter.log(getTestMethodName(iTestResult) + " test starting.", true);
+        log.info("{} test starting.", getTestMethodName(iTestResult));
     }
 
     @Override
     public void onTestSuccess(ITestResult iTestResult) {
-        Reporter.log(getTestMethodName(iTestResult) + " test succeeded.", true);
+        log.info("{} test succeeded.", getTestMethodName(iTestResult));
+
+        PageMetrics.attach();
+        BrowserEvents.report(getDriver(iTestResult), false);
+        RequestInterceptor.report(getDriver(iTestResult));
 
         //Save a log on allure.
-        logOutput(Reporter.getOutput(iTestResult));
+        attachLog(iTestResult);
     }
 
     @Override
     public void onTestFailure(ITestResult iTestResult) {
-        Reporter.log(getTestMethodName(iTestResult) + " test failed.", true);
+        log.info("{} test failed.", getTestMethodName(iTestResult));
 
-        if (iTestResult.getInstance() instanceof WebDriverSetup) {
-            WebDriverSetup setup = (WebDriverSetup) iTestResult.getInstance();
-            WebDriver driver = setup.getDriver();
-
-            // Allure ScreenShot
-            if (driver != null) {
-                //allureChromeLog(driver);
-                saveScreenshotPNG(driver);
-                Reporter.log("Screenshot captured for test case:" + getTestMethodName(iTestResult), true);
-            }
+        PageMetrics.attach();
+        BrowserEvents.report(getDriver(iTestResult), true);
+        RequestInterceptor.report(getDriver(iTestResult));
+
+        // Allure ScreenShot, shared with SeleniumListener and stored once per distinct image in the background
+        ArtifactCollector.FailureCapture capture = ArtifactCollector.capture(iTestResult);
+        if (capture.hasScreenshot()) {
+            ArtifactStore.get().attach("Screenshot", capture.getScreenshotBlob());
+            log.info("Screenshot captured for test case:{}", getTestMethodName(iTestResult));
         }
 
         //Save a log on allure.
-        logOutput(Reporter.getOutput(iTestResult));
+        attachLog(iTestResult);
 
     }
 
     @Override
     public void onTestSkipped(ITestResult iTestResult) {
-        Reporter.log(getTestMethodName(iTestResult) + " test skipped.", true);
+        log.info("{} test skipped.", getTestMethodName(iTestResult));
+
+        PageMetrics.attach();
+        BrowserEvents.report(getDriver(iTestResult), false);
+        RequestInterceptor.report(getDriver(iTestResult));
     }
 
     @Override
     public void onTestFailedButWithinSuccessPercentage(ITestResult iTestResult) {
-        Reporter.log("Test failed but it is in defined success ratio " + getTestMethodName(iTestResult), true);
+        log.info("Test failed but it is in defined success ratio {}", getTestMethodName(iTestResult));
     }
 
-    @Attachment()
-    public String logOutput(List<String> outputList) {
-        String output = "";
-        for (String o : outputList)
-            output += o + "\n";
-        return output;
+    /**
+     * Attaches the test's log file, written while the test ran (see {@link Log}), to its Allure result. The file is
+     * moved into the results in the background, a rename unless they are on another file system. Tests that only used
+     * Reporter get its output.
+     */
+    private static void attachLog(ITestResult iTestResult) {
+        Log.await(iTestResult, LOG_DELIVERY_TIMEOUT);
+        Path file = Log.closeLog(iTestResult);
+        AllureLifecycle lifecycle = Allure.getLifecycle();
+        if (file == null) {
+            List<String> output = Reporter.getOutput(iTestResult);
+            if (!output.isEmpty()) {
+                Allure.addAttachment("Test log", "text/plain", String.join("\n", output) + "\n", ".txt");
+            }
+            return;
+        }
+        boolean gzip = file.getFileName().toString().endsWith(".gz");
+        String source = lifecycle.prepareAttachment("Test log", gzip ? "application/gzip" : "text/plain",
+                gzip ? "log.gz" : "log");
+        Path target = ArtifactStore.get().getResults().resolve(source);
+        ArtifactCollector.submit(() -> {
+            try {
+                Files.createDirectories(target.getParent());
+                Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to attach test log " + file, e);
+            }
+        });
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,199 @@
+package com.zwift.framework.listeners;
+
+import com.zwift.framework.driver.BrowserEvents;
+import com.zwift.framework.logging.Log;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.logging.LogEntry;
+import org.testng.ITestResult;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Captures failure artifacts once per failed test and processes them off the test thread.
+ * <p>
+ * The first listener to handle a failure takes the screenshot from the driver and the console messages collected by
+ * {@link BrowserEvents} since the test began, later listeners get the same {@link FailureCapture}, whose screenshot
+ * they store through {@link ArtifactStore}. Disk writes and Allure attachments are handed to a small bounded executor;
+ * when it is full the submitting thread does the work itself, so nothing is dropped. {@link #drain} is called at the
+ * end of the suite (and from a shutdown hook) so no artifact is lost on exit.
+ */
+public final class ArtifactCollector {
+
+    private static final Log log = Log.of(ArtifactCollector.class);
+
+    private static final String CAPTURE_ATTRIBUTE = "failureCapture";
+    private static final int THREADS = 2;
+    private static final int QUEUE_SIZE = 64;
+
+    private static final AtomicInteger pending = new AtomicInteger();
+    private static final Object drained = new Object();
+
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS,
+            30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(QUEUE_SIZE), runnable -> {
+        Thread thread = new Thread(runnable, "failure-artifacts");
+        thread.setDaemon(true);
+        return thread;
+    }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+    static {
+        executor.allowCoreThreadTimeOut(true);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> drain(Duration.ofSeconds(30)), "failure-artifacts-drain"));
+    }
+
+    private ArtifactCollector() {
+    }
+
+    /**
+     * Captures the artifacts of a failed test, or returns the capture another listener already made.
+     *
+     * @param result Result of the failed test
+     * @return The capture, empty when the test had no WebDriver
+     */
+    public static FailureCapture capture(ITestResult result) {
+        synchronized (result) {
+            Object existing = result.getAttribute(CAPTURE_ATTRIBUTE);
+            if (existing instanceof FailureCapture) {
+                return (FailureCapture) existing;
+            }
+            FailureCapture capture = FailureCapture.take(result, AllureListener.getDriver(result));
+            result.setAttribute(CAPTURE_ATTRIBUTE, capture);
+            return capture;
+        }
+    }
+
+    /**
+     * Runs artifact processing in the background.
+     *
+     * @param task Work that only uses data from a {@link FailureCapture}, never the driver
+     */
+    public static void submit(Runnable task) {
+        pending.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.warn("Failed to save failure artifact: {}", e);
+            } finally {
+                if (pending.decrementAndGet() == 0) {
+                    synchronized (drained) {
+                        drained.notifyAll();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits for every submitted artifact to be written.
+     *
+     * @param timeout Maximum time to wait
+     * @return true if all artifacts were written in time
+     */
+    public static boolean drain(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (drained) {
+            while (pending.get() > 0) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    log.warn("{} failure artifacts were not written before the timeout", pending.get());
+                    return false;
+                }
+                try {
+                    drained.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Artifacts taken from the browser at the moment a test failed.
+     * <p>
+     * Only the remote calls happen on the test thread; the screenshot is kept base64 encoded as the driver returned
+     * it and decoded on first use.
+     */
+    public static final class FailureCapture {
+
+        private final String testName;
+        private final long endMillis;
+        private final String screenshotBase64;
+        private final List<LogEntry> browserLogs;
+        private byte[] screenshot;
+        private ArtifactStore.Blob screenshotBlob;
+
+        private FailureCapture(String testName, long endMillis, String screenshotBase64, List<LogEntry> browserLogs) {
+            this.testName = testName;
+            this.endMillis = endMillis;
+            this.screenshotBase64 = screenshotBase64;
+            this.browserLogs = Collections.unmodifiableList(browserLogs);
+        }
+
+        private static FailureCapture take(ITestResult result, WebDriver driver) {
+            String screenshot = null;
+            List<LogEntry> logs = new ArrayList<>();
+            if (driver instanceof TakesScreenshot) {
+                try {
+                    screenshot = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BASE64);
+                } catch (WebDriverException e) {
+                    log.warn("Could not take Screenshot: {}", e.getMessage());
+                }
+            }
+            // Console messages since the test began, including the ones read before it failed
+            BrowserEvents.Buffer events = BrowserEvents.collect(driver);
+            if (events != null) {
+                logs.addAll(events.getConsole());
+            }
+            return new FailureCapture(result.getName(), result.getEndMillis(), screenshot, logs);
+        }
+
+        public String getTestName() {
+            return testName;
+        }
+
+        public long getEndMillis() {
+            return endMillis;
+        }
+
+        public boolean hasScreenshot() {
+            return screenshotBase64 != null;
+        }
+
+        /**
+         * @return PNG bytes of the screenshot, decoded once on first call
+         */
+        public synchronized byte[] getScreenshot() {
+            if (screenshot == null && screenshotBase64 != null) {
+                screenshot = Base64.getMimeDecoder().decode(screenshotBase64);
+            }
+            return screenshot;
+        }
+
+        /**
+         * @return The screenshot to store, hashed once on first call, null without a screenshot
+         */
+        public synchronized ArtifactStore.Blob getScreenshotBlob() {
+            if (screenshotBlob == null && getScreenshot() != null) {
+                screenshotBlob = ArtifactStore.Blob.screenshot(screenshot);
+            }
+            return screenshotBlob;
+        }
+
+        public List<LogEntry> getBrowserLogs() {
+            return browserLogs;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.zwift.framework.listeners;
+
+import io.qameta.allure.Allure;
+import io.qameta.allure.AllureLifecycle;
+import io.qameta.allure.model.Attachment;
+import io.qameta.allure.util.PropertiesUtils;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Failure artifacts stored once per distinct content.
+ * <p>
+ * A {@link Blob} is named after the SHA-256 of its content, so the same screenshot taken by a hundred failures against
+ * a broken environment is one file in the artifacts directory (artifacts, or -Dartifacts.dir). It is written in the
+ * background by {@link ArtifactCollector} the first time it is saved, and kept across runs. Allure attachments
+ * reference the stored file: the results directory gets a hard link to it (a copy on file systems without links)
+ * named after the same hash, once per run however many tests attach it.
+ * <p>
+ * Screenshots are scaled down to -Dscreenshot.max.width pixels (0, the default, keeps their size) and stored as PNG,
+ * or as JPEG with -Dscreenshot.format=jpg. They are only converted when first stored, under the hash of the original
+ * and the conversion, so a screenshot stored with other settings by an earlier run is not reused.
+ */
+public final class ArtifactStore {
+
+    private static final String HASH = "SHA-256";
+    private static final int NAME_BYTES = 16;
+    private static final float JPEG_QUALITY = 0.8f;
+
+    private static final ArtifactStore store = new ArtifactStore(
+            Paths.get(System.getProperty("artifacts.dir", "artifacts")),
+            Paths.get(PropertiesUtils.loadAllureProperties()
+                    .getProperty("allure.results.directory", "allure-results")));
+
+    private final Path directory;
+    private final Path results;
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+    private final Set<String> saved = ConcurrentHashMap.newKeySet();
+    private final Set<String> linked = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param directory Directory of the stored artifacts
+     * @param results   Allure results directory
+     */
+    public ArtifactStore(Path directory, Path results) {
+        this.directory = directory;
+        this.results = results;
+    }
+
+    /**
+     * @return The store used by the listeners
+     */
+    public static ArtifactStore get() {
+        return store;
+    }
+
+    /**
+     * @return The Allure results directory attachments are written to
+     */
+    Path getResults() {
+        return results;
+    }
+
+    /**
+     * Stores a blob unless it is already stored.
+     *
+     * @param blob Content to store
+     * @return Path of the stored file, written in the background
+     */
+    public Path save(Blob blob) {
+        if (saved.add(blob.name)) {
+            ArtifactCollector.submit(() -> write(blob));
+        }
+        return directory.resolve(blob.name);
+    }
+
+    /**
+     * Attaches a blob to the current Allure test, storing it if needed. Call on the test's thread.
+     *
+     * @param title Name of the attachment in the report
+     * @param blob  Content to attach
+     */
+    public void attach(String title, Blob blob) {
+        AllureLifecycle lifecycle = Allure.getLifecycle();
+        String source = blob.hash + "-attachment" + blob.extension;
+        lifecycle.getCurrentTestCase().ifPresent(uuid -> lifecycle.updateTestCase(uuid, test -> test.getAttachments()
+                .add(new Attachment().setName(title).setType(blob.type).setSource(source))));
+        saved.add(blob.name);
+        if (linked.add(source)) {
+            ArtifactCollector.submit(() -> link(write(blob), results.resolve(source)));
+        }
+    }
+
+    /**
+     * Writes the blob if its file does not exist yet, once even when several threads store it.
+     */
+    private Path write(Blob blob) {
+        Path file = directory.resolve(blob.name);
+        synchronized (locks.computeIfAbsent(blob.name, name -> new Object())) {
+            if (Files.exists(file)) {
+                return file;
+            }
+            try {
+                Files.createDirectories(directory);
+                Path temp = directory.resolve(blob.name + ".tmp");
+                Files.write(temp, blob.content.get());
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to store artifact " + file, e);
+            }
+        }
+        return file;
+    }
+
+    private static void link(Path file, Path target) {
+        try {
+            Files.createDirectories(target.getParent());
+            try {
+                Files.createLink(target, file);
+            } catch (FileAlreadyExistsException e) {
+                // Same name, same content
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to attach artifact " + file, e);
+        }
+    }
+
+    /**
+     * @param content Bytes to hash
+     * @return Hex of the first bytes of their SHA-256
+     */
+    static String hash(byte[] content) {
+        return hash(content, "");
+    }
+
+    /**
+     * @param content    Bytes to hash
+     * @param conversion How the content is converted before it is stored, empty if it is stored as is
+     * @return Hex of the first bytes of the SHA-256 of both
+     */
+    static String hash(byte[] content, String conversion) {
+        byte[] digest;
+        try {
+            MessageDigest sha = MessageDigest.getInstance(HASH);
+            sha.update(content);
+            digest = sha.digest(conversion.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(HASH + " is not available", e);
+        }
+        StringBuilder hex = new StringBuilder(NAME_BYTES * 2);
+        for (int i = 0; i < NAME_BYTES; i++) {
+            hex.append(Character.forDigit((digest[i] >> 4) & 0xf, 16))
+                    .append(Character.forDigit(digest[i] & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Content named after its hash. Converting the content, e.g. scaling a screenshot, is deferred until it is written,
+     * and the name is the hash of the original and the conversion, so equal originals are only converted once per
+     * conversion.
+     */
+    public static final class Blob {
+
+        private final String hash;
+        private final String name;
+        private final String type;
+        private final String extension;
+        private final Supplier<byte[]> content;
+
+        private Blob(String hash, String type, String extension, Supplier<byte[]> content) {
+            this.hash = hash;
+            this.name = hash + extension;
+            this.type = type;
+            this.extension = extension;
+            this.content = content;
+        }
+
+        /**
+         * @param content   Bytes to store
+         * @param type      MIME type, e.g. "text/plain"
+         * @param extension File extension with its dot, e.g. ".txt"
+         * @return The blob
+         */
+        public static Blob of(byte[] content, String type, String extension) {
+            return new Blob(hash(content), type, extension, () -> content);
+        }
+
+        /**
+         * @param png Screenshot as taken by the driver
+         * @return The screenshot as configured by -Dscreenshot.max.width and -Dscreenshot.format
+         */
+        public static Blob screenshot(byte[] png) {
+            return screenshot(png, Integer.getInteger("screenshot.max.width", 0),
+                    System.getProperty("screenshot.format", "png"));
+        }
+
+        /**
+         * @param png      Screenshot as taken by the driver
+         * @param maxWidth Width to scale wider screenshots down to, 0 to keep their size
+         * @param format   "png" or "jpg"
+         * @return The screenshot
+         */
+        public static Blob screenshot(byte[] png, int maxWidth, String format) {
+            boolean jpeg = format.equalsIgnoreCase("jpg") || format.equalsIgnoreCase("jpeg");
+            if (!jpeg && maxWidth <= 0) {
+                return new Blob(hash(png), "image/png", ".png", () -> png);
+            }
+            String conversion = "width " + Math.max(maxWidth, 0) + (jpeg ? ", jpeg " + JPEG_QUALITY : ", png");
+            return new Blob(hash(png, conversion), jpeg ? "image/jpeg" : "image/png", jpeg ? ".jpg" : ".png",
+                    () -> convert(png, maxWidth, jpeg));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * @return The converted image, the original when it can not be read; viewers go by the content, not the name
+         */
+        private static byte[] convert(byte[] png, int maxWidth, boolean jpeg) {
+            try {
+                BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+                if (image == null) {
+                    return png;
+                }
+                int width = maxWidth > 0 ? Math.min(maxWidth, image.getWidth()) : image.getWidth();
+                int height = (int) Math.max(1, Math.round((double) image.getHeight() * width / image.getWidth()));
+                if (width == image.getWidth() && !jpeg) {
+                    return png;
+                }
+                BufferedImage scaled = new BufferedImage(width, height,
+                        jpeg ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+                Graphics2D graphics = scaled.createGraphics();
+                try {
+                    graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                            RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                    graphics.drawImage(image, 0, 0, width, height, null);
+                } finally {
+                    graphics.dispose();
+                }
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                if (!jpeg) {
+                    ImageIO.write(scaled, "png", out);
+                    return out.toByteArray();
+                }
+                ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+                try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+                    ImageWriteParam param = writer.getDefaultWriteParam();
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    param.setCompressionQuality(JPEG_QUALITY);
+                    writer.setOutput(stream);
+                    writer.write(null, new IIOImage(scaled, null, null), param);
+                } finally {
+                    writer.dispose();
+                }
+                return out.toByteArray();
+            } catch (IOException e) {
+                return png;
+            }
+        }
+    }
+}
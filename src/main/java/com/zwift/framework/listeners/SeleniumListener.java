@@ -1,17 +1,11 @@
 package com.zwift.framework.listeners;
 
-import com.zwift.framework.WebDriverSetup;
-import org.apache.commons.io.FileUtils;
-import org.openqa.selenium.OutputType;
-import org.openqa.selenium.TakesScreenshot;
-import org.openqa.selenium.WebDriver;
-import org.openqa.selenium.logging.LogEntries;
+import com.zwift.framework.logging.Log;
 import org.openqa.selenium.logging.LogEntry;
-import org.openqa.selenium.logging.LogType;
 import org.testng.*;
 
-import java.io.File;
-import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Date;
 
 /**
@@ -19,6 +13,8 @@ import java.util.Date;
  */
 public class SeleniumListener extends TestListenerAdapter implements ISuiteListener {
 
+    private static final Log log = Log.of(SeleniumListener.class);
+
 
     @Override
     public void onTestFailure(ITestResult tr) {
@@ -26,45 +22,31 @@ public class SeleniumListener extends TestListenerAdapter implements ISuiteListe
         super.onTestFailure(tr);
 
         try {
-            if (tr.getInstance() instanceof WebDriverSetup) {
-
-                WebDriverSetup setup = (WebDriverSetup) tr.getInstance();
-
-                try {
-
-                    WebDriver driver = setup.getDriver();
-
-                    makeScreenshotOnFailure(driver);
-
-                    LogEntries entries = driver.manage().logs().get(LogType.BROWSER);
+            if (AllureListener.getDriver(tr) != null) {
 
-                    System.out.println("======== CHROME LOGS ========");
-                    for (LogEntry entry : entries) {
-                        Reporter.log(new Date(entry.getTimestamp()) + " " + entry.getLevel() + " " + entry.getMessage(), true);
-                    }
-                    System.out.println("=============================");
+                ArtifactCollector.FailureCapture capture = ArtifactCollector.capture(tr);
 
-                    File scrFile = ((TakesScreenshot) driver).getScreenshotAs(OutputType.FILE);
-                    String destDir = ("screenshots");
-                    new File(destDir).mkdirs();
-                    String destFile = tr.getName() + "_" + tr.getEndMillis() + ".png";
+                log.info("======== CHROME LOGS ========");
+                for (LogEntry entry : capture.getBrowserLogs()) {
+                    log.info("{} {} {}", new Date(entry.getTimestamp()), entry.getLevel(), entry.getMessage());
+                }
+                log.info("=============================");
 
-                    try {
-                        FileUtils.copyFile(scrFile, new File(destDir + "/" + destFile));
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
+                if (capture.hasScreenshot()) {
+                    // Named after its content, so repeated failures reuse the same file
+                    Path file = ArtifactStore.get().save(capture.getScreenshotBlob());
+                    String source = file.isAbsolute() ? file.toUri().toString()
+                            : "./" + file.toString().replace('\\', '/');
 
+                    log.info("Saved a screenshot for: {} to {}", tr.getName(), file);
+                    // The image tag is only for the TestNG report, not the console
                     Reporter.setEscapeHtml(false);
-                    Reporter.log("Saved a screenshot for: " + tr.getName() + "\n<img class=\"responsive-img materialboxed\" src=./screenshots/" + destFile + " width=\"1280\" height=\"720\" >", true);
-
-                } catch (Exception e) {
-                    Reporter.log("Could not take Screenshot (non WebDriver class...?)", true);
+                    Reporter.log("<img class=\"responsive-img materialboxed\" src=" + source + " width=\"1280\" height=\"720\" >");
                 }
             }
 
         } catch (Exception e) {
-            Reporter.log("Could not post Sauce status: " + e.getMessage(), true);
+            log.warn("Could not save failure artifacts: {}", e.getMessage());
         }
 
     }
@@ -73,11 +55,6 @@ public class SeleniumListener extends TestListenerAdapter implements ISuiteListe
     public void onTestSuccess(ITestResult tr) {
     }
 
-    private byte[] makeScreenshotOnFailure(WebDriver driver) {
-
-        return ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
-    }
-
     @Override
     public void onStart(ISuite suite) {
 
@@ -85,6 +62,6 @@ public class SeleniumListener extends TestListenerAdapter implements ISuiteListe
 
     @Override
     public void onFinish(ISuite suite) {
-
+        ArtifactCollector.drain(Duration.ofMinutes(1));
     }
 }
\ No newline at end of file
@@ -0,0 +1,324 @@
+package com.zwift.framework.logging;
+
+import com.zwift.framework.utils.Reports;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
+import org.apache.logging.log4j.core.Appender;
+import org.apache.logging.log4j.core.config.LoggerConfig;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.testng.ITestResult;
+import org.testng.Reporter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Framework logging, written by Log4j2 async loggers instead of on the test thread.
+ * <p>
+ * A call only checks the level and hands the pattern and its parameters to the logger's ring buffer (see log4j2.xml);
+ * formatting and writing to the console, logs/beacon-test-client.log and the TestNG {@link Reporter} happen on the
+ * logger's background thread. Patterns use {} placeholders and are formatted without allocating. The thread and the
+ * test the call was made for, the one {@link Reporter} would log to, are put in the thread context as "client"
+ * (shown by %X{client}) and "test"; {@link ReporterAppender} adds each message to that test's Reporter output.
+ * <p>
+ * Each test's messages are also streamed to its own file, see {@link LogSpool}, capped at -Dtest.log.max.kb (1024)
+ * and compressed with -Dtest.log.gzip=true; Reporter keeps the first 1000 lines of a test. Reporter output and the
+ * file are complete once {@link #await(ITestResult, Duration)} returns. Loggers without the appender, e.g.
+ * outside com.zwift, give their messages to Reporter on the calling thread as before.
+ */
+public final class Log {
+
+    static final String TEST_KEY = "test";
+    private static final String CLIENT_KEY = "client";
+    private static final String OUTPUT_ATTRIBUTE = "logOutput";
+    private static final String LOG_DIRECTORY = "test-logs";
+    private static final long MAX_LOG_CHARS = Long.getLong("test.log.max.kb", 1024) * 1024;
+    private static final boolean GZIP = Boolean.getBoolean("test.log.gzip");
+    private static final int MAX_REPORTER_LINES = 1000;
+
+    private static final AtomicLong ids = new AtomicLong();
+    private static final Map<String, TestOutput> outputs = new ConcurrentHashMap<>();
+    private static final ThreadLocal<TestOutput> bound = new ThreadLocal<>();
+
+    private final Logger logger;
+
+    /**
+     * Whether the logger's appenders include a {@link ReporterAppender}, checked once
+     */
+    private final boolean appended;
+
+    private Log(Logger logger) {
+        this.logger = logger;
+        this.appended = appendsToReporter(logger);
+    }
+
+    /**
+     * @param type Class logging, shown in the log lines
+     * @return A logger for the class
+     */
+    public static Log of(Class<?> type) {
+        return new Log(LogManager.getLogger(type));
+    }
+
+    public void info(String message) {
+        if (logger.isInfoEnabled()) {
+            if (!bind(appended)) {
+                Reporter.log(message);
+            }
+            logger.info(message);
+        }
+    }
+
+    public void info(String pattern, Object p0) {
+        if (logger.isInfoEnabled()) {
+            if (!bind(appended)) {
+                Reporter.log(ParameterizedMessage.format(pattern, new Object[]{p0}));
+            }
+            logger.info(pattern, p0);
+        }
+    }
+
+    public void info(String pattern, Object p0, Object p1) {
+        if (logger.isInfoEnabled()) {
+            if (!bind(appended)) {
+                Reporter.log(ParameterizedMessage.format(pattern, new Object[]{p0, p1}));
+            }
+            logger.info(pattern, p0, p1);
+        }
+    }
+
+    public void info(String pattern, Object p0, Object p1, Object p2) {
+        if (logger.isInfoEnabled()) {
+            if (!bind(appended)) {
+                Reporter.log(ParameterizedMessage.format(pattern, new Object[]{p0, p1, p2}));
+            }
+            logger.info(pattern, p0, p1, p2);
+        }
+    }
+
+    public void warn(String message) {
+        if (logger.isWarnEnabled()) {
+            if (!bind(appended)) {
+                Reporter.log(message);
+            }
+            logger.warn(message);
+        }
+    }
+
+    public void warn(String pattern, Object p0) {
+        if (logger.isWarnEnabled()) {
+            if (!bind(appended)) {
+                Reporter.log(ParameterizedMessage.format(pattern, new Object[]{p0}));
+            }
+            logger.warn(pattern, p0);
+        }
+    }
+
+    public void warn(String pattern, Object p0, Object p1) {
+        if (logger.isWarnEnabled()) {
+            if (!bind(appended)) {
+                Reporter.log(ParameterizedMessage.format(pattern, new Object[]{p0, p1}));
+            }
+            logger.warn(pattern, p0, p1);
+        }
+    }
+
+    public void warn(String pattern, Object p0, Object p1, Object p2) {
+        if (logger.isWarnEnabled()) {
+            if (!bind(appended)) {
+                Reporter.log(ParameterizedMessage.format(pattern, new Object[]{p0, p1, p2}));
+            }
+            logger.warn(pattern, p0, p1, p2);
+        }
+    }
+
+    /**
+     * Waits until every message logged for a test reached its Reporter output, e.g. before attaching it to the report.
+     *
+     * @param result  Result of a test or configuration method
+     * @param timeout How long to wait at most
+     */
+    public static void await(ITestResult result, Duration timeout) {
+        Object attribute = result.getAttribute(OUTPUT_ATTRIBUTE);
+        if (!(attribute instanceof TestOutput)) {
+            return;
+        }
+        TestOutput output = (TestOutput) attribute;
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!output.isComplete() && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    /**
+     * Forgets the tests whose output is complete and deletes their log files, at the end of a suite once nothing logs
+     * for its tests anymore and the logs are attached. Tests still running, e.g. one that ran the suite, are kept.
+     */
+    public static void release() {
+        outputs.values().removeIf(output -> {
+            if (!output.isComplete() || output.result.getStatus() == ITestResult.STARTED) {
+                return false;
+            }
+            // Logs of tests that were never attached, e.g. skipped ones
+            LogSpool spool = output.spool;
+            if (spool != null) {
+                try {
+                    Files.deleteIfExists(spool.close());
+                } catch (IOException e) {
+                    LogManager.getLogger(Log.class).warn("Could not delete the test log: {}", e.toString());
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Closes the log file of a test, once {@link #await(ITestResult, Duration)} returned. Messages logged for the test
+     * afterwards only go to Reporter.
+     *
+     * @param result Result of a test or configuration method
+     * @return The test's log file, null if nothing was logged for it
+     */
+    public static Path closeLog(ITestResult result) {
+        Object attribute = result.getAttribute(OUTPUT_ATTRIBUTE);
+        LogSpool spool = attribute instanceof TestOutput ? ((TestOutput) attribute).spool : null;
+        if (spool == null) {
+            return null;
+        }
+        try {
+            return spool.close();
+        } catch (IOException e) {
+            LogManager.getLogger(Log.class).warn("Could not write the test log: {}", e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Called by {@link ReporterAppender} on the logger's thread.
+     *
+     * @param test    Thread context value of the test the message was logged for, null outside tests
+     * @param message The formatted message
+     */
+    static void deliver(String test, String message) {
+        TestOutput output = test == null ? null : outputs.get(test);
+        if (output == null) {
+            // Suite level messages are in the console and the log file, Reporter only keeps output per test
+            return;
+        }
+        try {
+            // Configuration methods only have Reporter output
+            if (output.spool == null && output.result.getMethod().isTest()) {
+                output.spool = new LogSpool(Reports.directory().resolve(LOG_DIRECTORY).resolve("test-" + output.id
+                        + (GZIP ? ".log.gz" : ".log")), MAX_LOG_CHARS, GZIP);
+            }
+            if (output.spool != null) {
+                output.spool.append(message);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // The message still reaches Reporter
+        }
+        Reporter.setCurrentTestResult(output.result);
+        try {
+            if (output.reported < MAX_REPORTER_LINES) {
+                Reporter.log(message);
+            } else if (output.reported == MAX_REPORTER_LINES) {
+                Reporter.log("... more in the attached test log");
+            }
+            output.reported++;
+        } finally {
+            Reporter.setCurrentTestResult(null);
+            output.delivered.increment();
+        }
+    }
+
+    /**
+     * Points the thread context at the test {@link Reporter} logs to on this thread, if it changed since the last call.
+     *
+     * @param appended true if the logger writes to a {@link ReporterAppender}
+     * @return true if {@link ReporterAppender} will add the message to Reporter, false if the caller has to
+     */
+    private static boolean bind(boolean appended) {
+        ITestResult result = Reporter.getCurrentTestResult();
+        TestOutput output = bound.get();
+        if (output == null || output.result != result) {
+            output = result == null ? TestOutput.NONE : TestOutput.of(result);
+            bound.set(output);
+            if (output.result == null) {
+                ThreadContext.remove(TEST_KEY);
+                ThreadContext.put(CLIENT_KEY, Thread.currentThread().getName());
+            } else {
+                ThreadContext.put(TEST_KEY, output.id);
+                ThreadContext.put(CLIENT_KEY, Thread.currentThread().getName() + " "
+                        + result.getTestClass().getRealClass().getSimpleName() + "." + result.getName());
+            }
+        }
+        if (!appended) {
+            return false;
+        }
+        if (output.result != null) {
+            output.logged.increment();
+        }
+        return true;
+    }
+
+    private static boolean appendsToReporter(Logger logger) {
+        if (!(logger instanceof org.apache.logging.log4j.core.Logger)) {
+            return false;
+        }
+        for (LoggerConfig config = ((org.apache.logging.log4j.core.Logger) logger).get(); config != null;
+             config = config.isAdditive() ? config.getParent() : null) {
+            for (Appender appender : config.getAppenders().values()) {
+                if (appender instanceof ReporterAppender) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Messages logged for one test and how many of them reached its Reporter output
+     */
+    private static final class TestOutput {
+
+        static final TestOutput NONE = new TestOutput(null, null);
+
+        final String id;
+        final ITestResult result;
+        final LongAdder logged = new LongAdder();
+        final LongAdder delivered = new LongAdder();
+
+        // Written by the logger's thread only
+        volatile LogSpool spool;
+        long reported;
+
+        private TestOutput(String id, ITestResult result) {
+            this.id = id;
+            this.result = result;
+        }
+
+        static synchronized TestOutput of(ITestResult result) {
+            Object existing = result.getAttribute(OUTPUT_ATTRIBUTE);
+            if (existing instanceof TestOutput) {
+                return (TestOutput) existing;
+            }
+            TestOutput output = new TestOutput(Long.toString(ids.incrementAndGet()), result);
+            outputs.put(output.id, output);
+            result.setAttribute(OUTPUT_ATTRIBUTE, output);
+            return output;
+        }
+
+        boolean isComplete() {
+            return delivered.sum() >= logged.sum();
+        }
+    }
+}
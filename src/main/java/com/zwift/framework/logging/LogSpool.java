@@ -0,0 +1,104 @@
+package com.zwift.framework.logging;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Log of one test, written to a file line by line as it is produced.
+ * <p>
+ * Memory use does not depend on the length of the log: the first half of the size cap is written straight to the file,
+ * after that only the most recent lines filling the other half are kept. When the log is closed those are appended
+ * after a line counting what was left out, so a very long log keeps its head and its tail. Sizes count characters
+ * before compression.
+ */
+final class LogSpool {
+
+    private final Path file;
+    private final Writer writer;
+    private final long headLimit;
+    private final long tailLimit;
+
+    private long headSize;
+    private final Deque<String> tail = new ArrayDeque<>();
+    private long tailSize;
+    private long omittedLines;
+    private long omittedSize;
+    private boolean closed;
+
+    /**
+     * @param file     File to write, replaced if it exists
+     * @param maxChars Size cap of the log
+     * @param gzip     true to compress the file
+     */
+    LogSpool(Path file, long maxChars, boolean gzip) {
+        this.file = file;
+        this.headLimit = maxChars / 2;
+        this.tailLimit = maxChars - headLimit;
+        try {
+            Files.createDirectories(file.getParent());
+            OutputStream out = Files.newOutputStream(file);
+            this.writer = new BufferedWriter(new OutputStreamWriter(gzip ? new GZIPOutputStream(out) : out,
+                    StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create test log " + file, e);
+        }
+    }
+
+    /**
+     * @param line Message to add, ignored once the log is closed
+     */
+    synchronized void append(String line) throws IOException {
+        if (closed) {
+            return;
+        }
+        long size = line.length() + 1;
+        if (tail.isEmpty() && headSize + size <= headLimit) {
+            writer.write(line);
+            writer.write('\n');
+            headSize += size;
+            return;
+        }
+        tail.addLast(line);
+        tailSize += size;
+        while (tailSize > tailLimit && !tail.isEmpty()) {
+            String dropped = tail.removeFirst();
+            tailSize -= dropped.length() + 1;
+            omittedLines++;
+            omittedSize += dropped.length() + 1;
+        }
+    }
+
+    /**
+     * Writes the tail and closes the file.
+     *
+     * @return The file
+     */
+    synchronized Path close() throws IOException {
+        if (!closed) {
+            closed = true;
+            try {
+                if (omittedLines > 0) {
+                    writer.write("... " + omittedLines + " lines (" + omittedSize + " characters) omitted ...\n");
+                }
+                for (String line : tail) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+                tail.clear();
+            } finally {
+                writer.close();
+            }
+        }
+        return file;
+    }
+}
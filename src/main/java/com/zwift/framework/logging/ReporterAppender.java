@@ -0,0 +1,35 @@
+package com.zwift.framework.logging;
+
+import org.apache.logging.log4j.core.Appender;
+import org.apache.logging.log4j.core.Core;
+import org.apache.logging.log4j.core.Filter;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginElement;
+import org.apache.logging.log4j.core.config.plugins.PluginFactory;
+import org.testng.Reporter;
+
+/**
+ * Log4j2 appender adding the messages of {@link Log} to the TestNG {@link Reporter} output of the test they were
+ * logged for. Declared in log4j2.xml as &lt;TestNGReporter name="..."/&gt;; behind an async logger it runs on the
+ * logger's thread, the only one writing to Reporter.
+ */
+@Plugin(name = "TestNGReporter", category = Core.CATEGORY_NAME, elementType = Appender.ELEMENT_TYPE)
+public final class ReporterAppender extends AbstractAppender {
+
+    private ReporterAppender(String name, Filter filter) {
+        super(name, filter, null, true);
+    }
+
+    @PluginFactory
+    public static ReporterAppender create(@PluginAttribute("name") String name, @PluginElement("Filter") Filter filter) {
+        return new ReporterAppender(name == null ? "TestNGReporter" : name, filter);
+    }
+
+    @Override
+    public void append(LogEvent event) {
+        Log.deliver(event.getContextData().getValue(Log.TEST_KEY), event.getMessage().getFormattedMessage());
+    }
+}
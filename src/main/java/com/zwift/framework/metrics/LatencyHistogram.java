@@ -0,0 +1,135 @@
+package com.zwift.framework.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Log-linear latency histogram with microsecond resolution and roughly 3% relative error.
+ * <p>
+ * Values below 32 us get one bucket each; above that every power of two is split into 16 buckets. Recording is an
+ * index computation and an array increment, with no allocation and no locking, so an instance must only be written
+ * by one thread. Instances from different threads are combined with {@link #merge}.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+    private static final int MAX_SHIFT = 40;
+    static final int BUCKETS = HALF * (MAX_SHIFT + 2);
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    /**
+     * @param nanos Duration to record
+     */
+    public void record(long nanos) {
+        long micros = Math.max(nanos / 1000, 0);
+        counts[index(micros)]++;
+        count++;
+        sum += micros;
+        min = Math.min(min, micros);
+        max = Math.max(max, micros);
+    }
+
+    /**
+     * Adds every value recorded by another histogram to this one.
+     */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return Sum of every recorded value in microseconds
+     */
+    public long getTotalMicros() {
+        return sum;
+    }
+
+    public long getMaxMicros() {
+        return count == 0 ? 0 : max;
+    }
+
+    public long getMinMicros() {
+        return count == 0 ? 0 : min;
+    }
+
+    public double getMeanMicros() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * @param percentile Between 0 and 100
+     * @return The value at the given percentile in microseconds, the middle of the bucket holding it
+     */
+    public long getPercentileMicros(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max((long) Math.ceil(percentile / 100 * count), 1);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                long low = lowestValue(i);
+                long high = lowestValue(i + 1) - 1;
+                return Math.min(Math.max(low + (high - low) / 2, min), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return count, mean, p50, p95, p99, max and total in milliseconds, ready to be serialized
+     */
+    public Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", count);
+        summary.put("meanMillis", millis(getMeanMicros()));
+        summary.put("p50Millis", millis(getPercentileMicros(50)));
+        summary.put("p95Millis", millis(getPercentileMicros(95)));
+        summary.put("p99Millis", millis(getPercentileMicros(99)));
+        summary.put("maxMillis", millis(getMaxMicros()));
+        summary.put("totalMillis", millis(sum));
+        return summary;
+    }
+
+    private static double millis(double micros) {
+        return Math.round(micros / 10) / 100.0;
+    }
+
+    /**
+     * @return Bucket holding a value, shared with {@link WaitStats} which keeps the same buckets in atomic counters
+     */
+    static int index(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int shift = Math.min(63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS + 1, MAX_SHIFT);
+        long subBucket = Math.min(micros >>> shift, SUB_BUCKETS - 1);
+        return shift * HALF + (int) subBucket;
+    }
+
+    static long lowestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / HALF - 1;
+        long subBucket = index % HALF + HALF;
+        return subBucket << shift;
+    }
+}
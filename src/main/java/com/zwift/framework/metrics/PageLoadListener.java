@@ -0,0 +1,29 @@
+package com.zwift.framework.metrics;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.events.AbstractWebDriverEventListener;
+
+/**
+ * Records {@link PageMetrics} for every page transition: explicit navigations, and clicks (native or through
+ * JavaScript, as {@code Helper.clickJS} does) that lead to a new URL.
+ */
+public class PageLoadListener extends AbstractWebDriverEventListener {
+
+    @Override
+    public void afterNavigateTo(String url, WebDriver driver) {
+        PageMetrics.record(driver, true);
+    }
+
+    @Override
+    public void afterClickOn(WebElement element, WebDriver driver) {
+        PageMetrics.record(driver, false);
+    }
+
+    @Override
+    public void afterScript(String script, WebDriver driver) {
+        if (script.contains(".click()")) {
+            PageMetrics.record(driver, false);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.zwift.framework.metrics;
+
+import com.zwift.framework.driver.Cdp;
+import com.zwift.framework.logging.Log;
+import com.zwift.framework.utils.Reports;
+import com.zwift.framework.utils.Scripts;
+import io.qameta.allure.Allure;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Page load performance of every page a test visits.
+ * <p>
+ * {@link PageLoadListener} calls {@link #record} after each navigation and after clicks that change the URL. Each
+ * record holds TTFB, DOMContentLoaded, load, FCP, LCP, long task time and resource counts and sizes, read from the
+ * browser's Navigation, Paint and Resource Timing APIs. At the end of a test the records are attached to its Allure
+ * result and appended to build/reports/zwift/page-metrics.jsonl so page performance can be compared across builds.
+ * <p>
+ * Long tasks are only measured in sessions prepared with {@link #install}, which observes them from the start of every
+ * document.
+ */
+public final class PageMetrics {
+
+    private static final Log log = Log.of(PageMetrics.class);
+
+    private static final String REPORT_FILE = "page-metrics.jsonl";
+
+    private static final ThreadLocal<TestPages> current = new ThreadLocal<>();
+
+    private PageMetrics() {
+    }
+
+    /**
+     * Observes long tasks from the start of every document the session loads from now on. Sessions that do not
+     * support DevTools report no long task time.
+     *
+     * @param driver A new session
+     */
+    public static void install(WebDriver driver) {
+        if (!Cdp.isSupported(driver)) {
+            return;
+        }
+        try {
+            Cdp.execute(driver, "Page.addScriptToEvaluateOnNewDocument",
+                    Collections.singletonMap("source", Scripts.load("long-tasks.js")));
+        } catch (WebDriverException e) {
+            log.warn("Could not observe long tasks: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Starts collecting for the test about to run on this thread.
+     *
+     * @param testName Name the records are reported under
+     */
+    public static void begin(String testName) {
+        current.set(new TestPages(testName));
+    }
+
+    /**
+     * Measures the current page if it has not been measured yet. Does nothing outside of a test.
+     *
+     * @param driver Driver showing the page
+     * @param force  Measure even if the page was already measured, e.g. after an explicit navigation
+     * @return The measurement, or null if nothing was recorded
+     */
+    public static Map<String, Object> record(WebDriver driver, boolean force) {
+        TestPages pages = current.get();
+        if (pages == null) {
+            return null;
+        }
+        Map<String, Object> metrics = run(driver, force ? "force" : "transition");
+        if (metrics != null) {
+            metrics.put("test", pages.testName);
+            metrics.put("recorded", Instant.now().toString());
+            pages.records.add(metrics);
+        }
+        return metrics;
+    }
+
+    /**
+     * Measures the page as it is now, counting everything since the page was reached. Nothing is recorded, and
+     * later transitions are detected as if this call never happened.
+     *
+     * @param driver Driver showing the page
+     * @return The measurement, or null if the driver cannot run scripts or is not showing a web page
+     */
+    public static Map<String, Object> measure(WebDriver driver) {
+        return run(driver, "current");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> run(WebDriver driver, String mode) {
+        if (!(driver instanceof JavascriptExecutor)) {
+            return null;
+        }
+        try {
+            Object result = ((JavascriptExecutor) driver).executeAsyncScript(Scripts.load("page-metrics.js"), mode);
+            if (result instanceof Map) {
+                return new LinkedHashMap<>((Map<String, Object>) result);
+            }
+        } catch (WebDriverException e) {
+            log.warn("Could not collect page metrics: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * @return Records of the current test so far
+     */
+    public static List<Map<String, Object>> getRecords() {
+        TestPages pages = current.get();
+        return pages == null ? Collections.emptyList() : Collections.unmodifiableList(pages.records);
+    }
+
+    /**
+     * Ends collection for the current test, attaching its records to the Allure result and the run report.
+     */
+    public static void attach() {
+        TestPages pages = current.get();
+        current.remove();
+        if (pages == null || pages.records.isEmpty()) {
+            return;
+        }
+        Allure.addAttachment("Page load metrics", "application/json", Reports.toJson(pages.records), ".json");
+        StringBuilder lines = new StringBuilder();
+        for (Map<String, Object> record : pages.records) {
+            lines.append(Reports.toJson(record).replaceAll("\\s*\\n\\s*", " ")).append('\n');
+        }
+        append(lines.toString());
+    }
+
+    private static synchronized void append(String lines) {
+        try {
+            Files.write(Reports.directory().resolve(REPORT_FILE), lines.getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class TestPages {
+
+        private final String testName;
+        private final List<Map<String, Object>> records = new ArrayList<>();
+
+        private TestPages(String testName) {
+            this.testName = testName;
+        }
+    }
+}
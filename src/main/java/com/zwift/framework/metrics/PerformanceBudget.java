@@ -0,0 +1,128 @@
+package com.zwift.framework.metrics;
+
+import com.zwift.framework.logging.Log;
+import com.zwift.framework.utils.Config;
+import io.qameta.allure.Allure;
+import org.openqa.selenium.WebDriver;
+import org.testng.Assert;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+
+/**
+ * Performance budget of one page, declared in budgets.properties and checked against {@link PageMetrics#measure}.
+ * <p>
+ * Keys are {@code <PAGE>.MAX_LCP_MS}, {@code <PAGE>.MAX_TRANSFER_BYTES}, {@code <PAGE>.MAX_REQUESTS} and
+ * {@code <PAGE>.MAX_LONG_TASK_MS}; a missing key is not checked. {@code MODE} (or {@code <PAGE>.MODE}) is either
+ * {@code enforce}, failing the test when a value is over budget, or {@code warn}, only reporting it.
+ * -Dbudget.mode overrides the file, and -Dbudgets points to another file.
+ */
+public final class PerformanceBudget {
+
+    private static final Log log = Log.of(PerformanceBudget.class);
+
+    public enum Mode {ENFORCE, WARN}
+
+    private static final String DEFAULT_FILE = "budgets.properties";
+
+    private static final String[][] METRICS = {
+            {"MAX_LCP_MS", "LCP (ms)"},
+            {"MAX_TRANSFER_BYTES", "Transfer (bytes)"},
+            {"MAX_REQUESTS", "Requests"},
+            {"MAX_LONG_TASK_MS", "Long tasks (ms)"}
+    };
+
+    private final String page;
+    private final Mode mode;
+    private final Long[] limits;
+
+    private PerformanceBudget(String page, Mode mode, Long[] limits) {
+        this.page = page;
+        this.mode = mode;
+        this.limits = limits;
+    }
+
+    /**
+     * @param page Page name used as key prefix, e.g. HOME
+     * @return The page's budget, without limits when the budgets file does not exist
+     */
+    public static PerformanceBudget forPage(String page) {
+        String file = System.getProperty("budgets", DEFAULT_FILE);
+        Long[] limits = new Long[METRICS.length];
+        String mode = null;
+        if (Files.isRegularFile(Paths.get(file))) {
+            Config config = new Config(file);
+            for (int i = 0; i < METRICS.length; i++) {
+                String value = config.ReadProperty(page + "." + METRICS[i][0]);
+                limits[i] = value == null || value.trim().isEmpty() ? null : Long.valueOf(value.trim());
+            }
+            mode = config.ReadProperty(page + ".MODE");
+            if (mode == null) {
+                mode = config.ReadProperty("MODE");
+            }
+        }
+        mode = System.getProperty("budget.mode", mode == null ? Mode.ENFORCE.name() : mode);
+        return new PerformanceBudget(page, Mode.valueOf(mode.trim().toUpperCase()), limits);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Measures the page shown by the driver and compares it with the budget. The measured versus budgeted table is
+     * attached to the Allure step; values over budget fail the test, or are only logged in warn mode.
+     *
+     * @param driver Driver showing the page
+     */
+    public void verify(WebDriver driver) {
+        Map<String, Object> metrics = PageMetrics.measure(driver);
+        if (metrics == null) {
+            log.warn("No page metrics available for {}, budget not checked", page);
+            return;
+        }
+        boolean soft = "soft".equals(metrics.get("navigation"));
+        // LCP is only reported by the browser for a full page load
+        Long[] measured = {
+                soft ? null : number(metrics.get("lcpMillis")),
+                number(metrics.get("documentTransferBytes")) + number(metrics.get("resourceTransferBytes")),
+                number(metrics.get("resourceCount")) + (soft ? 0 : 1),
+                metrics.get("longTaskMillis") == null ? null : number(metrics.get("longTaskMillis"))
+        };
+
+        StringBuilder table = new StringBuilder(String.format("Performance budget for %s (%s) %s%n",
+                page, mode.name().toLowerCase(), metrics.get("url")));
+        table.append(String.format("%-18s %14s %14s  %s%n", "Metric", "Measured", "Budget", "Status"));
+        int over = 0;
+        for (int i = 0; i < METRICS.length; i++) {
+            String status;
+            if (limits[i] == null) {
+                status = "not budgeted";
+            } else if (measured[i] == null) {
+                status = "not measured";
+            } else if (measured[i] > limits[i]) {
+                status = "OVER by " + (measured[i] - limits[i]);
+                over++;
+            } else {
+                status = "ok";
+            }
+            table.append(String.format("%-18s %14s %14s  %s%n", METRICS[i][1], measured[i] == null ? "-" : measured[i],
+                    limits[i] == null ? "-" : limits[i], status));
+        }
+
+        Allure.addAttachment("Performance budget " + page, "text/plain", table.toString(), ".txt");
+        if (over == 0) {
+            return;
+        }
+        if (mode == Mode.WARN) {
+            log.warn("{} metric(s) over budget\n{}", over, table);
+        } else {
+            Assert.fail(over + " metric(s) over budget\n" + table);
+        }
+    }
+
+    private static long number(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+}
@@ -0,0 +1,49 @@
+package com.zwift.framework.metrics;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Times page-object steps, Helper waits and clicks, and browser start and quit.
+ * <p>
+ * Woven at load time by the aspectjweaver agent (see META-INF/aop.xml), the same way Allure weaves its steps.
+ * Timings are recorded in {@link Timings}, failed calls included.
+ */
+@Aspect
+public class TimingAspect {
+
+    private static final Map<JoinPoint.StaticPart, String> names = new ConcurrentHashMap<>();
+
+    @Around(value = "execution(@io.qameta.allure.Step * com.zwift.elements..*(..))", argNames = "joinPoint")
+    public Object timeStep(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time("step", joinPoint);
+    }
+
+    @Around(value = "execution(public * com.zwift.framework.helpers.Helper.wait*(..))"
+            + " || execution(public * com.zwift.framework.helpers.Helper.click*(..))", argNames = "joinPoint")
+    public Object timeHelper(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time("helper", joinPoint);
+    }
+
+    @Around(value = "execution(* com.zwift.framework.WebDriverSetup.chrome(..))"
+            + " || execution(* com.zwift.framework.driver.DriverPool.destroy(..))", argNames = "joinPoint")
+    public Object timeDriver(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time("driver", joinPoint);
+    }
+
+    private static Object time(String category, ProceedingJoinPoint joinPoint) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            Timings.record(names.computeIfAbsent(joinPoint.getStaticPart(), part -> category + " "
+                    + part.getSignature().getDeclaringType().getSimpleName() + "." + part.getSignature().getName()), elapsed);
+        }
+    }
+}
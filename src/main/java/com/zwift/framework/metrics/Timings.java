@@ -0,0 +1,92 @@
+package com.zwift.framework.metrics;
+
+import com.zwift.framework.logging.Log;
+import com.zwift.framework.utils.Reports;
+import io.qameta.allure.Allure;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Suite wide registry of named latency histograms, fed by {@link TimingAspect}.
+ * <p>
+ * Every thread records into its own set of histograms, so recording never contends. The per-thread histograms are
+ * merged when the suite ends and reported as p50/p95/p99 per name.
+ */
+public final class Timings {
+
+    private static final Log log = Log.of(Timings.class);
+
+    private static final String REPORT_FILE = "step-timings.json";
+
+    private static final Queue<Map<String, LatencyHistogram>> threads = new ConcurrentLinkedQueue<>();
+    private static final ThreadLocal<Map<String, LatencyHistogram>> local = ThreadLocal.withInitial(() -> {
+        Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+        threads.add(histograms);
+        return histograms;
+    });
+
+    private Timings() {
+    }
+
+    /**
+     * @param name  What was timed, e.g. "step Events.getEventListing"
+     * @param nanos How long it took
+     */
+    public static void record(String name, long nanos) {
+        local.get().computeIfAbsent(name, n -> new LatencyHistogram()).record(nanos);
+    }
+
+    /**
+     * Merges the histograms of every thread. Meant to run once the workers are idle, e.g. at the end of the suite.
+     *
+     * @return One histogram per name
+     */
+    public static Map<String, LatencyHistogram> merge() {
+        Map<String, LatencyHistogram> merged = new ConcurrentHashMap<>();
+        for (Map<String, LatencyHistogram> histograms : threads) {
+            histograms.forEach((name, histogram) -> merged.computeIfAbsent(name, n -> new LatencyHistogram()).merge(histogram));
+        }
+        return merged;
+    }
+
+    /**
+     * Writes the merged timings to build/reports/zwift/step-timings.json and attaches them to the Allure report.
+     * Names are ordered by total time so the actions that dominate the suite come first.
+     */
+    public static void report() {
+        List<Map.Entry<String, LatencyHistogram>> entries = new ArrayList<>(merge().entrySet());
+        if (entries.isEmpty()) {
+            return;
+        }
+        entries.sort((a, b) -> Long.compare(b.getValue().getTotalMicros(), a.getValue().getTotalMicros()));
+
+        List<Map<String, Object>> timings = new ArrayList<>();
+        StringBuilder table = new StringBuilder(String.format("%-60s %8s %10s %10s %10s %12s%n",
+                "Name", "Count", "p50 ms", "p95 ms", "p99 ms", "Total ms"));
+        for (Map.Entry<String, LatencyHistogram> entry : entries) {
+            Map<String, Object> timing = new LinkedHashMap<>();
+            timing.put("name", entry.getKey());
+            timing.putAll(entry.getValue().summary());
+            timings.add(timing);
+            table.append(String.format("%-60s %8d %10s %10s %10s %12s%n", entry.getKey(), timing.get("count"),
+                    timing.get("p50Millis"), timing.get("p95Millis"), timing.get("p99Millis"), timing.get("totalMillis")));
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("generated", Instant.now().toString());
+        report.put("timings", timings);
+        Path file = Reports.writeJson(REPORT_FILE, report);
+
+        Allure.addAttachment("Step timings", "application/json", Reports.toJson(report), ".json");
+        Allure.addAttachment("Step timings table", "text/plain", table.toString(), ".txt");
+        log.info("Step timings written to {}\n{}", file.toAbsolutePath(), table);
+    }
+}
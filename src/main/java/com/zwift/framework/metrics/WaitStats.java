@@ -0,0 +1,334 @@
+package com.zwift.framework.metrics;
+
+import com.zwift.framework.logging.Log;
+import com.zwift.framework.utils.Reports;
+import io.qameta.allure.Allure;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.json.JsonException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How long each locator takes to become ready, kept across runs and used to size the waits on it.
+ * <p>
+ * Every successful wait on a locator records its duration into a histogram with the buckets of
+ * {@link LatencyHistogram} held in atomic counters, so waits on any thread record without locking. A wait that timed
+ * out only says the element took longer than the timeout, so it is counted for the report but kept out of the
+ * histogram: a locator that keeps failing never raises its own timeout. Its next waits fall back to the caller's
+ * timeout instead (or the learned one if longer), until a wait succeeds within the learned timeout again, so a
+ * locator that became slower keeps passing while its slower durations are learned. Once a locator has
+ * {@value #MIN_SAMPLES} samples, its waits poll every p50/4 and time out after p99x3, kept between
+ * -Dwait.timeout.min.ms (2 s) and -Dwait.timeout.max.ms (30 s) and polling between 10 ms and 1 s. Locators with
+ * fewer samples, and every wait when run with -Dwait.adaptive=false, use the defaults given by the caller.
+ * <p>
+ * The histograms, and which locators fall back, are read from wait-stats.json in the root directory (or -Dwait.stats) on first use and written back
+ * by {@link #report()} at the end of the suite, halved once a locator has more than {@value #MAX_SAMPLES} samples so
+ * recent runs keep their weight. The report also lists the time spent waiting per locator in
+ * build/reports/zwift/wait-times.json.
+ */
+public final class WaitStats {
+
+    private static final Log log = Log.of(WaitStats.class);
+
+    private static final int MIN_SAMPLES = 10;
+    private static final int MAX_SAMPLES = 1000;
+    private static final Duration MIN_POLL = Duration.ofMillis(10);
+    private static final Duration MAX_POLL = Duration.ofSeconds(1);
+    private static final String STATS_FILE = "wait-stats.json";
+    private static final String REPORT_FILE = "wait-times.json";
+    private static final Json JSON = new Json();
+
+    private static final Map<String, Latencies> locators = load();
+
+    private WaitStats() {
+    }
+
+    /**
+     * @param locator        What is waited for, e.g. "VISIBLE By.cssSelector: .apply-button"
+     * @param defaultTimeout Timeout used until the locator has enough samples
+     * @param defaultPoll    Polling interval used until the locator has enough samples
+     * @return Timeout and polling interval for the next wait on the locator
+     */
+    public static Budget budget(String locator, Duration defaultTimeout, Duration defaultPoll) {
+        Latencies latencies = locators.get(locator);
+        if (latencies == null || latencies.count() < MIN_SAMPLES
+                || !Boolean.parseBoolean(System.getProperty("wait.adaptive", "true"))) {
+            return new Budget(defaultTimeout, defaultPoll, false);
+        }
+        Duration timeout = learnedTimeout(latencies);
+        if (latencies.fallback) {
+            return new Budget(timeout.compareTo(defaultTimeout) > 0 ? timeout : defaultTimeout, defaultPoll, false);
+        }
+        Duration poll = clamp(Duration.ofNanos(latencies.percentileMicros(50) * 250), MIN_POLL, MAX_POLL);
+        return new Budget(timeout, poll, true);
+    }
+
+    /**
+     * @param locator  What was waited for
+     * @param nanos    How long the wait took, or the timeout when it gave up
+     * @param timedOut true if the element never became ready, the duration is then not learned from but the next
+     *                 waits fall back to the caller's timeout
+     */
+    public static void record(String locator, long nanos, boolean timedOut) {
+        Latencies latencies = locators.computeIfAbsent(locator, key -> new Latencies());
+        latencies.record(nanos, timedOut);
+        if (timedOut) {
+            latencies.fallback = true;
+        } else if (latencies.fallback && nanos <= learnedTimeout(latencies).toNanos()) {
+            latencies.fallback = false;
+        }
+    }
+
+    /**
+     * Drops the history of a locator, e.g. once the page it waits on changed, so its waits learn again from the
+     * defaults.
+     *
+     * @param locator What was waited for
+     */
+    public static void forget(String locator) {
+        locators.remove(locator);
+    }
+
+    /**
+     * Saves the histograms for the next run, and writes and attaches the time spent waiting per locator, most time
+     * first.
+     */
+    public static void report() {
+        if (locators.isEmpty()) {
+            return;
+        }
+        save();
+        List<Map.Entry<String, Latencies>> entries = new ArrayList<>(locators.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().runMicros.sum(), a.getValue().runMicros.sum()));
+        List<Map<String, Object>> waits = new ArrayList<>();
+        for (Map.Entry<String, Latencies> entry : entries) {
+            Latencies latencies = entry.getValue();
+            if (latencies.runWaits.sum() == 0) {
+                continue;
+            }
+            Budget budget = budget(entry.getKey(), Duration.ZERO, Duration.ZERO);
+            Map<String, Object> wait = new LinkedHashMap<>();
+            wait.put("locator", entry.getKey());
+            wait.put("waits", latencies.runWaits.sum());
+            wait.put("timeouts", latencies.runTimeouts.sum());
+            wait.put("totalMillis", latencies.runMicros.sum() / 1000);
+            wait.put("samples", latencies.count());
+            wait.put("p50Millis", latencies.percentileMicros(50) / 1000.0);
+            wait.put("p99Millis", latencies.percentileMicros(99) / 1000.0);
+            wait.put("fallback", latencies.fallback);
+            wait.put("timeoutMillis", budget.isAdaptive() ? budget.getTimeout().toMillis() : null);
+            wait.put("pollMillis", budget.isAdaptive() ? budget.getPoll().toMillis() : null);
+            waits.add(wait);
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("generated", Instant.now().toString());
+        report.put("waits", waits);
+        Path file = Reports.writeJson(REPORT_FILE, report);
+        Allure.addAttachment("Wait stats", "application/json", Reports.toJson(report), ".json");
+        log.info("Wait stats written to {}", file.toAbsolutePath());
+    }
+
+    private static Path file() {
+        return Paths.get(System.getProperty("wait.stats", STATS_FILE));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Latencies> load() {
+        Map<String, Latencies> loaded = new ConcurrentHashMap<>();
+        Path file = file();
+        if (!Files.isRegularFile(file)) {
+            return loaded;
+        }
+        try {
+            Map<String, Object> json = JSON.toType(new String(Files.readAllBytes(file), StandardCharsets.UTF_8),
+                    Map.class);
+            Object saved = json.get("locators");
+            if (saved instanceof Map) {
+                ((Map<String, Object>) saved).forEach((locator, buckets) -> {
+                    if (buckets instanceof Map) {
+                        loaded.put(locator, Latencies.of((Map<String, Object>) buckets));
+                    }
+                });
+            }
+            Object fallback = json.get("fallback");
+            if (fallback instanceof List) {
+                for (Object locator : (List<Object>) fallback) {
+                    Latencies latencies = loaded.get(String.valueOf(locator));
+                    if (latencies != null) {
+                        latencies.fallback = true;
+                    }
+                }
+            }
+        } catch (IOException | JsonException | ClassCastException e) {
+            log.warn("Ignoring unreadable wait stats {}: {}", file, e.getMessage());
+        }
+        return loaded;
+    }
+
+    private static void save() {
+        Map<String, Object> saved = new TreeMap<>();
+        List<String> fallback = new ArrayList<>();
+        locators.forEach((locator, latencies) -> {
+            saved.put(locator, latencies.toBuckets());
+            if (latencies.fallback) {
+                fallback.add(locator);
+            }
+        });
+        Collections.sort(fallback);
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("locators", saved);
+        json.put("fallback", fallback);
+        Path file = file().toAbsolutePath();
+        try {
+            Path temp = Files.createTempFile(file.getParent(), "wait-stats", ".tmp");
+            Files.write(temp, JSON.toJson(json).getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to save wait stats " + file, e);
+        }
+    }
+
+    /**
+     * @return p99x3 of the locator, kept between -Dwait.timeout.min.ms and -Dwait.timeout.max.ms
+     */
+    private static Duration learnedTimeout(Latencies latencies) {
+        Duration minTimeout = Duration.ofMillis(Long.getLong("wait.timeout.min.ms", 2000));
+        Duration maxTimeout = Duration.ofMillis(Long.getLong("wait.timeout.max.ms", 30_000));
+        return clamp(Duration.ofNanos(latencies.percentileMicros(99) * 3000), minTimeout, maxTimeout);
+    }
+
+    private static Duration clamp(Duration value, Duration min, Duration max) {
+        return value.compareTo(min) < 0 ? min : value.compareTo(max) > 0 ? max : value;
+    }
+
+    /**
+     * Timeout and polling interval of one wait
+     */
+    public static final class Budget {
+
+        private final Duration timeout;
+        private final Duration poll;
+        private final boolean adaptive;
+
+        private Budget(Duration timeout, Duration poll, boolean adaptive) {
+            this.timeout = timeout;
+            this.poll = poll;
+            this.adaptive = adaptive;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public Duration getPoll() {
+            return poll;
+        }
+
+        /**
+         * @return true if derived from the locator's history, false for the caller's defaults or a fallback after a
+         * timeout
+         */
+        public boolean isAdaptive() {
+            return adaptive;
+        }
+    }
+
+    /**
+     * Past and current durations of one locator
+     */
+    private static final class Latencies {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(LatencyHistogram.BUCKETS);
+        private final LongAdder runWaits = new LongAdder();
+        private final LongAdder runTimeouts = new LongAdder();
+        private final LongAdder runMicros = new LongAdder();
+        /**
+         * Set by a timeout, cleared once a wait succeeds within the learned timeout
+         */
+        private volatile boolean fallback;
+
+        static Latencies of(Map<String, Object> saved) {
+            Latencies latencies = new Latencies();
+            saved.forEach((index, count) -> {
+                int bucket = Integer.parseInt(index);
+                if (bucket >= 0 && bucket < LatencyHistogram.BUCKETS && count instanceof Number) {
+                    latencies.buckets.set(bucket, ((Number) count).longValue());
+                }
+            });
+            return latencies;
+        }
+
+        void record(long nanos, boolean timedOut) {
+            long micros = Math.max(nanos / 1000, 0);
+            runWaits.increment();
+            runMicros.add(micros);
+            if (timedOut) {
+                runTimeouts.increment();
+            } else {
+                buckets.incrementAndGet(LatencyHistogram.index(micros));
+            }
+        }
+
+        long count() {
+            long count = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                count += buckets.get(i);
+            }
+            return count;
+        }
+
+        /**
+         * @return The middle of the bucket holding the percentile, 0 without samples
+         */
+        long percentileMicros(double percentile) {
+            long[] counts = new long[buckets.length()];
+            long count = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                count += counts[i];
+            }
+            long rank = Math.max((long) Math.ceil(percentile / 100 * count), 1);
+            long seen = 0;
+            for (int i = 0; i < counts.length && count > 0; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    long low = LatencyHistogram.lowestValue(i);
+                    return low + (LatencyHistogram.lowestValue(i + 1) - 1 - low) / 2;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * @return Non-empty buckets by index, halved when there are too many samples so old runs fade out
+         */
+        Map<String, Object> toBuckets() {
+            boolean halve = count() > MAX_SAMPLES;
+            Map<String, Object> saved = new TreeMap<>();
+            for (int i = 0; i < buckets.length(); i++) {
+                long count = halve ? (buckets.get(i) + 1) / 2 : buckets.get(i);
+                if (count > 0) {
+                    saved.put(String.valueOf(i), count);
+                }
+            }
+            return saved;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.zwift.framework.replay;
+
+import com.zwift.framework.logging.Log;
+import com.zwift.framework.utils.Scripts;
+import org.apache.commons.io.IOUtils;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the responses of every URL the browser requests into a {@link ReplayArchive}.
+ * <p>
+ * {@link #capture} reads the document and Resource Timing URLs from the page, and each URL not recorded yet is
+ * fetched again from Java with the browser's user agent on a background executor. Redirects are recorded as such
+ * and their targets fetched too. Requests that are not simple GETs (form posts, beacons) are not recorded.
+ */
+public final class Recorder {
+
+    private static final Log log = Log.of(Recorder.class);
+
+    private static final String[] HEADERS = {"Content-Type", "Location", "Access-Control-Allow-Origin",
+            "Content-Language"};
+    private static final int TIMEOUT_MILLIS = 15_000;
+
+    private static volatile Recorder current;
+
+    private final ReplayArchive archive;
+    private final Set<String> requested = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(4, 4, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(256), runnable -> {
+        Thread thread = new Thread(runnable, "replay-recorder");
+        thread.setDaemon(true);
+        return thread;
+    }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+    private Recorder(ReplayArchive archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Starts recording for the suite.
+     *
+     * @param archive Archive receiving the responses, existing entries are kept and not fetched again
+     */
+    public static synchronized void start(ReplayArchive archive) {
+        current = new Recorder(archive);
+        log.info("Recording responses into {}", archive.getDirectory());
+    }
+
+    public static boolean isRecording() {
+        return current != null;
+    }
+
+    /**
+     * Records the URLs the page requested since the last capture. Does nothing unless recording.
+     *
+     * @param driver Driver showing the page
+     */
+    @SuppressWarnings("unchecked")
+    public static void capture(WebDriver driver) {
+        Recorder recorder = current;
+        if (recorder == null || !(driver instanceof JavascriptExecutor)) {
+            return;
+        }
+        try {
+            Map<String, Object> page = (Map<String, Object>) ((JavascriptExecutor) driver).executeScript(
+                    Scripts.load("resource-urls.js"));
+            String userAgent = (String) page.get("userAgent");
+            for (Object url : (List<Object>) page.get("urls")) {
+                recorder.submit((String) url, userAgent);
+            }
+        } catch (WebDriverException e) {
+            log.warn("Could not list the page's requests for recording: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Records one URL, e.g. the one a test navigates to before any redirect. Does nothing unless recording.
+     *
+     * @param url       Absolute URL
+     * @param userAgent User agent to fetch with, or null
+     */
+    public static void capture(String url, String userAgent) {
+        Recorder recorder = current;
+        if (recorder != null) {
+            recorder.submit(url, userAgent);
+        }
+    }
+
+    /**
+     * Waits for pending fetches and writes the archive index.
+     */
+    public static synchronized void finish() {
+        Recorder recorder = current;
+        current = null;
+        if (recorder == null) {
+            return;
+        }
+        recorder.executor.shutdown();
+        try {
+            if (!recorder.executor.awaitTermination(2, TimeUnit.MINUTES)) {
+                log.warn("Recording did not finish in time, some responses are missing");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        recorder.archive.save();
+        log.info("Recorded {} responses into {}", recorder.archive.size(), recorder.archive.getDirectory());
+    }
+
+    private void submit(String url, String userAgent) {
+        if (!archive.contains(url) && requested.add(url)) {
+            executor.execute(() -> fetch(url, userAgent));
+        }
+    }
+
+    private void fetch(String url, String userAgent) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setInstanceFollowRedirects(false);
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            connection.setRequestProperty("Accept", "*/*");
+            if (userAgent != null) {
+                connection.setRequestProperty("User-Agent", userAgent);
+            }
+            int status = connection.getResponseCode();
+            Map<String, String> headers = new LinkedHashMap<>();
+            for (String header : HEADERS) {
+                String value = connection.getHeaderField(header);
+                if (value != null) {
+                    headers.put(header, value);
+                }
+            }
+            byte[] body;
+            try (InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream()) {
+                body = in == null ? new byte[0] : IOUtils.toByteArray(in);
+            }
+            archive.put(url, status, headers, body);
+            if (status >= 300 && status < 400 && headers.containsKey("Location")) {
+                // Followed on this thread, the executor may already be shutting down
+                String target = new URL(new URL(url), headers.get("Location")).toString();
+                if (!archive.contains(target) && requested.add(target)) {
+                    fetch(target, userAgent);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not record {}: {}", url, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.zwift.framework.replay;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.events.AbstractWebDriverEventListener;
+
+/**
+ * Hands the requests of every page a session visits to the {@link Recorder}, after navigations and clicks.
+ */
+public class RecordingListener extends AbstractWebDriverEventListener {
+
+    @Override
+    public void beforeNavigateTo(String url, WebDriver driver) {
+        Recorder.capture(url, null);
+    }
+
+    @Override
+    public void afterNavigateTo(String url, WebDriver driver) {
+        Recorder.capture(driver);
+    }
+
+    @Override
+    public void afterClickOn(WebElement element, WebDriver driver) {
+        Recorder.capture(driver);
+    }
+
+    @Override
+    public void afterScript(String script, WebDriver driver) {
+        if (script.contains(".click()")) {
+            Recorder.capture(driver);
+        }
+    }
+}
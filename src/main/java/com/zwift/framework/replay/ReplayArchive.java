@@ -0,0 +1,222 @@
+package com.zwift.framework.replay;
+
+import com.zwift.framework.utils.Reports;
+import org.openqa.selenium.json.Json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * On-disk archive of recorded HTTP responses.
+ * <p>
+ * index.json maps each URL to its status, headers and body, bodies are stored once per content under
+ * bodies/&lt;sha-256&gt;. When replaying, bodies are memory-mapped on first use and the same read-only mapping is
+ * shared by every connection, so a body is read from disk once and never held on the heap as a whole. Writing it to
+ * a connection still goes through the JDK server's response stream, in chunks of a few kilobytes.
+ */
+public final class ReplayArchive {
+
+    private static final String INDEX = "index.json";
+    private static final String BODIES = "bodies";
+
+    private final Path directory;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Entry> byPath = new ConcurrentHashMap<>();
+    private final Map<String, MappedByteBuffer> mapped = new ConcurrentHashMap<>();
+    private final Map<String, String> properties = new ConcurrentHashMap<>();
+
+    private ReplayArchive(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens an archive, reading its index when it exists.
+     *
+     * @param directory Directory of the archive, created when recording
+     * @return The archive
+     */
+    @SuppressWarnings("unchecked")
+    public static ReplayArchive open(Path directory) {
+        ReplayArchive archive = new ReplayArchive(directory);
+        Path index = directory.resolve(INDEX);
+        if (Files.isRegularFile(index)) {
+            try {
+                Map<String, Object> json = new Json().toType(new String(Files.readAllBytes(index), StandardCharsets.UTF_8), Map.class);
+                ((Map<String, String>) json.getOrDefault("properties", Collections.emptyMap())).forEach(archive.properties::put);
+                ((Map<String, Map<String, Object>>) json.getOrDefault("entries", Collections.emptyMap()))
+                        .forEach((url, entry) -> archive.add(url, Entry.of(entry)));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read replay archive " + index, e);
+            }
+        }
+        return archive;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @param key Name of a property saved with the archive, e.g. the URL it was recorded from
+     * @return The value, or null
+     */
+    public String getProperty(String key) {
+        return properties.get(key);
+    }
+
+    public void setProperty(String key, String value) {
+        properties.put(key, value);
+    }
+
+    public boolean contains(String url) {
+        return entries.containsKey(url);
+    }
+
+    /**
+     * Finds the response for a URL. When the exact URL was not recorded, a response for the same path with another
+     * query string is used, so cache busting parameters do not cause misses.
+     *
+     * @param url Absolute URL of the request
+     * @return The recorded response, or null
+     */
+    public Entry lookup(String url) {
+        Entry entry = entries.get(url);
+        return entry != null ? entry : byPath.get(withoutQuery(url));
+    }
+
+    /**
+     * @param entry A recorded response
+     * @return Read-only view of its body, positioned at the start
+     */
+    public ByteBuffer body(Entry entry) {
+        return mapped.computeIfAbsent(entry.body, this::map).duplicate();
+    }
+
+    /**
+     * Stores a response, the body is written once per distinct content.
+     *
+     * @param url     Absolute URL of the request
+     * @param status  HTTP status
+     * @param headers Response headers to replay
+     * @param body    Response body
+     */
+    public void put(String url, int status, Map<String, String> headers, byte[] body) {
+        String hash = sha256(body);
+        Path file = directory.resolve(BODIES).resolve(hash);
+        try {
+            if (!Files.exists(file)) {
+                Files.createDirectories(file.getParent());
+                Path temp = Files.createTempFile(file.getParent(), hash, ".tmp");
+                Files.write(temp, body);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to store response body of " + url, e);
+        }
+        add(url, new Entry(status, headers, hash));
+    }
+
+    /**
+     * Writes the index, replacing the previous one.
+     */
+    public synchronized void save() {
+        Map<String, Object> entryJson = new TreeMap<>();
+        entries.forEach((url, entry) -> entryJson.put(url, entry.toJson()));
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("properties", new TreeMap<>(properties));
+        json.put("entries", entryJson);
+        try {
+            Files.createDirectories(directory);
+            Files.write(directory.resolve(INDEX), Reports.toJson(json).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write replay archive " + directory, e);
+        }
+    }
+
+    private void add(String url, Entry entry) {
+        entries.put(url, entry);
+        byPath.putIfAbsent(withoutQuery(url), entry);
+    }
+
+    private MappedByteBuffer map(String hash) {
+        try (FileChannel channel = FileChannel.open(directory.resolve(BODIES).resolve(hash), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to map response body " + hash, e);
+        }
+    }
+
+    private static String withoutQuery(String url) {
+        int query = url.indexOf('?');
+        return query < 0 ? url : url.substring(0, query);
+    }
+
+    private static String sha256(byte[] body) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(body)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * One recorded response
+     */
+    public static final class Entry {
+
+        private final int status;
+        private final Map<String, String> headers;
+        private final String body;
+
+        private Entry(int status, Map<String, String> headers, String body) {
+            this.status = status;
+            this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+            this.body = body;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Entry of(Map<String, Object> json) {
+            return new Entry(((Number) json.get("status")).intValue(),
+                    (Map<String, String>) json.getOrDefault("headers", Collections.emptyMap()), (String) json.get("body"));
+        }
+
+        private Map<String, Object> toJson() {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("status", status);
+            json.put("headers", headers);
+            json.put("body", body);
+            return json;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public Map<String, String> getHeaders() {
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.zwift.framework.replay;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import com.zwift.framework.logging.Log;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local HTTP and HTTPS server answering every request from a {@link ReplayArchive}.
+ * <p>
+ * Browsers are pointed at it with Chrome's host resolver rules (see {@link #hostResolverRules()}), so pages keep
+ * their real URLs and origins while nothing leaves the machine. HTTPS uses a self-signed certificate generated with
+ * keytool on start, the browser has to ignore certificate errors. Each connection is handled on its own thread, so
+ * any number of parallel browsers can share one server.
+ */
+public final class ReplayServer {
+
+    private static final Log log = Log.of(ReplayServer.class);
+
+    private static final String KEYSTORE_PASSWORD = "replay";
+
+    private final ReplayArchive archive;
+    private final HttpServer http;
+    private final HttpsServer https;
+    private final ExecutorService executor;
+
+    private final LongAdder hits = new LongAdder();
+    private final Set<String> misses = ConcurrentHashMap.newKeySet();
+
+    private ReplayServer(ReplayArchive archive, HttpServer http, HttpsServer https, ExecutorService executor) {
+        this.archive = archive;
+        this.http = http;
+        this.https = https;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts serving an archive on free loopback ports.
+     *
+     * @param archive Recorded responses
+     * @return The running server
+     */
+    public static ReplayServer start(ReplayArchive archive) {
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "replay-server-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            InetSocketAddress loopback = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+            HttpServer http = HttpServer.create(loopback, 256);
+            HttpsServer https = HttpsServer.create(loopback, 256);
+            https.setHttpsConfigurator(new HttpsConfigurator(selfSigned()));
+
+            ReplayServer server = new ReplayServer(archive, http, https, executor);
+            http.createContext("/", exchange -> server.serve("http", exchange));
+            https.createContext("/", exchange -> server.serve("https", exchange));
+            http.setExecutor(executor);
+            https.setExecutor(executor);
+            http.start();
+            https.start();
+            log.info("Replaying {} responses from {} on ports {}", archive.size(), archive.getDirectory(),
+                    server.getHttpPort() + "/" + server.getHttpsPort());
+            return server;
+        } catch (IOException e) {
+            executor.shutdownNow();
+            throw new UncheckedIOException("Unable to start the replay server", e);
+        }
+    }
+
+    public int getHttpPort() {
+        return http.getAddress().getPort();
+    }
+
+    public int getHttpsPort() {
+        return https.getAddress().getPort();
+    }
+
+    /**
+     * @return Value for Chrome's --host-resolver-rules sending every host to this server
+     */
+    public String hostResolverRules() {
+        return "MAP *:80 127.0.0.1:" + getHttpPort() + ",MAP *:443 127.0.0.1:" + getHttpsPort() + ",EXCLUDE localhost";
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return URLs requested but not found in the archive
+     */
+    public Set<String> getMisses() {
+        return misses;
+    }
+
+    /**
+     * Stops accepting connections and logs the URLs that were not in the archive.
+     */
+    public void stop() {
+        http.stop(0);
+        https.stop(0);
+        executor.shutdownNow();
+        log.info("Replay server served {} responses, {} not recorded", getHits(), misses.size());
+        for (String miss : misses) {
+            log.info("  not recorded: {}", miss);
+        }
+    }
+
+    private void serve(String scheme, HttpExchange exchange) throws IOException {
+        try {
+            String host = exchange.getRequestHeaders().getFirst("Host");
+            if (host != null && host.indexOf(':') > 0) {
+                host = host.substring(0, host.indexOf(':'));
+            }
+            String url = scheme + "://" + host + exchange.getRequestURI();
+            ReplayArchive.Entry entry = archive.lookup(url);
+            if (entry == null) {
+                misses.add(exchange.getRequestMethod() + " " + url);
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            hits.increment();
+            for (Map.Entry<String, String> header : entry.getHeaders().entrySet()) {
+                exchange.getResponseHeaders().set(header.getKey(), header.getValue());
+            }
+            ByteBuffer body = archive.body(entry);
+            if ("HEAD".equals(exchange.getRequestMethod()) || !body.hasRemaining()) {
+                exchange.sendResponseHeaders(entry.getStatus(), -1);
+                return;
+            }
+            exchange.sendResponseHeaders(entry.getStatus(), body.remaining());
+            // HttpServer only offers a stream, which copies the mapping through a small buffer (and encrypts it for
+            // HTTPS), so there is no transferTo to the socket
+            WritableByteChannel out = Channels.newChannel(exchange.getResponseBody());
+            while (body.hasRemaining()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Generates a throwaway key pair with the JDK's keytool, which avoids depending on internal certificate APIs.
+     */
+    private static SSLContext selfSigned() throws IOException {
+        Path directory = Files.createTempDirectory("replay-tls");
+        Path keystore = directory.resolve("replay.jks");
+        String keytool = System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool";
+        Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "replay", "-keyalg", "RSA",
+                "-keysize", "2048", "-validity", "30", "-dname", "CN=localhost", "-storetype", "JKS",
+                "-keystore", keystore.toString(), "-storepass", KEYSTORE_PASSWORD, "-keypass", KEYSTORE_PASSWORD,
+                "-noprompt").redirectErrorStream(true).start();
+        try {
+            if (!process.waitFor(60, TimeUnit.SECONDS) || process.exitValue() != 0) {
+                throw new IOException("keytool could not create a certificate for the replay server");
+            }
+            KeyStore store = KeyStore.getInstance("JKS");
+            try (InputStream in = Files.newInputStream(keystore)) {
+                store.load(in, KEYSTORE_PASSWORD.toCharArray());
+            }
+            KeyManagerFactory keys = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keys.init(store, KEYSTORE_PASSWORD.toCharArray());
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(keys.getKeyManagers(), null, null);
+            return context;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while creating the replay certificate", e);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Unable to load the replay certificate", e);
+        } finally {
+            process.destroy();
+            Files.deleteIfExists(keystore);
+            Files.deleteIfExists(directory);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.zwift.framework.sharding;
+
+import com.zwift.framework.logging.Log;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ISuiteResult;
+import org.testng.ITestContext;
+import org.testng.ITestResult;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds the results of each suite to the {@link HistoryStore} (test-history, or -Dhistory.store) when it finishes, in
+ * one pass over the TestNG results. Failures are "failed" for assertion errors and "broken" otherwise, as in Allure.
+ * <p>
+ * The first time a store is written, the runs in the Allure results (allure-results, or -Dschedule.history) from
+ * before the suite started are added first, so the history collected before the store existed is kept.
+ */
+public class HistoryRecorder implements ISuiteListener {
+
+    private static final Log log = Log.of(HistoryRecorder.class);
+
+    private final Path store;
+    private final Path results;
+
+    public HistoryRecorder() {
+        this(directory(), Paths.get(System.getProperty("schedule.history", "allure-results")));
+    }
+
+    /**
+     * @param store   Directory of the store
+     * @param results Allure results imported into an empty store
+     */
+    public HistoryRecorder(Path store, Path results) {
+        this.store = store;
+        this.results = results;
+    }
+
+    /**
+     * @return The store the suites write to
+     */
+    public static Path directory() {
+        return Paths.get(System.getProperty("history.store", "test-history"));
+    }
+
+    @Override
+    public void onStart(ISuite suite) {
+    }
+
+    @Override
+    public void onFinish(ISuite suite) {
+        Map<String, List<TestHistory.Run>> runs = new LinkedHashMap<>();
+        long suiteStart = Long.MAX_VALUE;
+        for (ISuiteResult result : suite.getResults().values()) {
+            ITestContext context = result.getTestContext();
+            suiteStart = Math.min(suiteStart, context.getStartDate().getTime());
+            add(runs, context.getPassedTests().getAllResults());
+            add(runs, context.getFailedButWithinSuccessPercentageTests().getAllResults());
+            add(runs, context.getFailedTests().getAllResults());
+            add(runs, context.getSkippedTests().getAllResults());
+        }
+        if (runs.isEmpty()) {
+            return;
+        }
+        long started = System.nanoTime();
+        HistoryStore history = HistoryStore.open(store);
+        if (history.isEmpty()) {
+            importResults(history, suiteStart);
+        }
+        history.append(runs);
+        log.info("Added {} tests to the test history in {} ms", runs.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    private void importResults(HistoryStore history, long before) {
+        Map<String, List<TestHistory.Run>> past = new HashMap<>();
+        TestHistory allure = TestHistory.load(results);
+        for (String test : allure.getTests()) {
+            for (TestHistory.Run run : allure.getRuns(test)) {
+                if (run.getStart() < before) {
+                    past.computeIfAbsent(test, key -> new ArrayList<>()).add(run);
+                }
+            }
+        }
+        if (!past.isEmpty()) {
+            history.append(past);
+        }
+    }
+
+    private static void add(Map<String, List<TestHistory.Run>> runs, Collection<ITestResult> results) {
+        for (ITestResult result : results) {
+            String test = result.getTestClass().getRealClass().getName() + "." + result.getMethod().getMethodName();
+            runs.computeIfAbsent(test, key -> new ArrayList<>()).add(new TestHistory.Run(status(result),
+                    result.getStartMillis(), Math.max(result.getEndMillis() - result.getStartMillis(), 0)));
+        }
+    }
+
+    private static String status(ITestResult result) {
+        switch (result.getStatus()) {
+            case ITestResult.SUCCESS:
+                return "passed";
+            case ITestResult.SKIP:
+                return "skipped";
+            default:
+                return result.getThrowable() instanceof AssertionError ? "failed" : "broken";
+        }
+    }
+}
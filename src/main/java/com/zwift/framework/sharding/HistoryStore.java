@@ -0,0 +1,403 @@
+package com.zwift.framework.sharding;
+
+import com.zwift.framework.logging.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Past runs of every test, appended run by run to a directory (test-history, or -Dhistory.store) instead of copying
+ * the Allure results of every run.
+ * <p>
+ * Each run adds one block with the results of all its tests to the current segment file; a new segment is started
+ * once it holds 4 MB. The index file keeps, per test, its last -Dhistory.index.runs (50) runs and counts of its runs,
+ * failures and status changes since it first ran, and is rewritten after each run, so adding a run and answering
+ * {@link #lastRuns} or {@link #flakiness} do not depend on how many runs are stored. Beyond
+ * {@value #MAX_SEGMENTS} segments the store is compacted into one segment holding the last -Dhistory.keep.runs
+ * (1000) runs. Without a readable index it is rebuilt from the segments. One process writes to a store at a time.
+ */
+public final class HistoryStore {
+
+    private static final Log log = Log.of(HistoryStore.class);
+
+    private static final int VERSION = 1;
+    private static final String INDEX_FILE = "index.bin";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".bin";
+    private static final long SEGMENT_BYTES = 4L << 20;
+    private static final int MAX_SEGMENTS = 8;
+    private static final List<String> STATUSES = Collections.unmodifiableList(
+            Arrays.asList("passed", "failed", "broken", "skipped"));
+
+    private final Path directory;
+    private final int indexRuns;
+    private final Map<String, TestRuns> tests = new HashMap<>();
+    private long lastRun;
+
+    private HistoryStore(Path directory, int indexRuns) {
+        this.directory = directory;
+        this.indexRuns = indexRuns;
+    }
+
+    /**
+     * Reads the index of a store. A missing directory gives an empty store, created on the first {@link #append}.
+     *
+     * @param directory Directory of the store, e.g. test-history
+     * @return The store
+     */
+    public static HistoryStore open(Path directory) {
+        HistoryStore store = new HistoryStore(directory, Integer.getInteger("history.index.runs", 50));
+        if (Files.isDirectory(directory) && !store.readIndex()) {
+            store.rebuild();
+        }
+        return store;
+    }
+
+    /**
+     * Adds the results of one run.
+     *
+     * @param results Runs of each test by test name (class name + "." + method name), in any order
+     */
+    public synchronized void append(Map<String, List<TestHistory.Run>> results) {
+        long run = lastRun + 1;
+        try {
+            Files.createDirectories(directory);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream block = new DataOutputStream(bytes);
+            block.writeLong(run);
+            block.writeInt(results.values().stream().mapToInt(List::size).sum());
+            for (Map.Entry<String, List<TestHistory.Run>> entry : results.entrySet()) {
+                List<TestHistory.Run> runs = new ArrayList<>(entry.getValue());
+                runs.sort(Comparator.comparingLong(TestHistory.Run::getStart));
+                for (TestHistory.Run result : runs) {
+                    block.writeUTF(entry.getKey());
+                    block.writeByte(status(result.getStatus()));
+                    block.writeLong(result.getStart());
+                    block.writeLong(result.getDurationMillis());
+                    tests.computeIfAbsent(entry.getKey(), test -> new TestRuns()).add(result, indexRuns);
+                }
+            }
+            List<Path> segments = segments();
+            Path segment = segments.isEmpty() || Files.size(segments.get(segments.size() - 1)) >= SEGMENT_BYTES
+                    ? segment(run) : segments.get(segments.size() - 1);
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(segment,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+                out.writeInt(bytes.size());
+                bytes.writeTo(out);
+            }
+            lastRun = run;
+            writeIndex();
+            if (segments().size() > MAX_SEGMENTS) {
+                compact(Integer.getInteger("history.keep.runs", 1000));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to add to test history " + directory, e);
+        }
+    }
+
+    /**
+     * Rewrites the segments into one holding the latest runs only. The counts in the index still include the dropped
+     * runs, until the index has to be rebuilt.
+     *
+     * @param keepRuns Number of runs to keep
+     */
+    public synchronized void compact(int keepRuns) {
+        List<Path> segments = segments();
+        if (segments.isEmpty()) {
+            return;
+        }
+        long firstKept = lastRun - keepRuns + 1;
+        Path temp = directory.resolve(SEGMENT_PREFIX + "compact.tmp");
+        Long first = null;
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                for (Path segment : segments) {
+                    for (byte[] block : blocks(segment)) {
+                        long run = new DataInputStream(new ByteArrayInputStream(block)).readLong();
+                        if (run >= firstKept) {
+                            first = first == null ? run : first;
+                            out.writeInt(block.length);
+                            out.write(block);
+                        }
+                    }
+                }
+            }
+            if (first == null) {
+                Files.delete(temp);
+                first = lastRun + 1;
+            } else {
+                Files.move(temp, segment(first), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            for (Path segment : segments) {
+                if (!segment.equals(segment(first))) {
+                    Files.delete(segment);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to compact test history " + directory, e);
+        }
+    }
+
+    /**
+     * @param test Class name + "." + method name
+     * @param runs How many runs at most, up to -Dhistory.index.runs
+     * @return Latest runs of the test, most recent first, empty if it never ran
+     */
+    public synchronized List<TestHistory.Run> lastRuns(String test, int runs) {
+        TestRuns testRuns = tests.get(test);
+        if (testRuns == null) {
+            return Collections.emptyList();
+        }
+        return testRuns.recent.stream().limit(runs).collect(Collectors.toList());
+    }
+
+    /**
+     * @param test Class name + "." + method name
+     * @return Share of its runs, skipped ones aside, whose outcome differs from the run before, 0 before two runs
+     */
+    public synchronized double flakiness(String test) {
+        TestRuns testRuns = tests.get(test);
+        return testRuns == null || testRuns.runs < 2 ? 0 : (double) testRuns.flips / (testRuns.runs - 1);
+    }
+
+    /**
+     * @param test Class name + "." + method name
+     * @return Share of its runs, skipped ones aside, that failed or broke, 0 if it never ran
+     */
+    public synchronized double failureRate(String test) {
+        TestRuns testRuns = tests.get(test);
+        return testRuns == null || testRuns.runs == 0 ? 0 : (double) testRuns.failures / testRuns.runs;
+    }
+
+    /**
+     * @return Names of every test with at least one run
+     */
+    public synchronized Set<String> getTests() {
+        return new TreeSet<>(tests.keySet());
+    }
+
+    public synchronized boolean isEmpty() {
+        return tests.isEmpty();
+    }
+
+    /**
+     * @return The runs kept in the index of every test
+     */
+    public synchronized TestHistory toHistory() {
+        Map<String, List<TestHistory.Run>> runs = new HashMap<>();
+        tests.forEach((test, testRuns) -> runs.put(test, new ArrayList<>(testRuns.recent)));
+        return TestHistory.of(runs);
+    }
+
+    private boolean readIndex() {
+        Path index = directory.resolve(INDEX_FILE);
+        if (!Files.isRegularFile(index)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(index)))) {
+            if (in.readInt() != VERSION) {
+                return false;
+            }
+            lastRun = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String test = in.readUTF();
+                TestRuns testRuns = new TestRuns();
+                testRuns.runs = in.readLong();
+                testRuns.failures = in.readLong();
+                testRuns.flips = in.readLong();
+                testRuns.lastOutcome = in.readByte();
+                int recent = in.readInt();
+                for (int j = 0; j < recent; j++) {
+                    TestHistory.Run run = readRun(in);
+                    if (testRuns.recent.size() < indexRuns) {
+                        testRuns.recent.addLast(run);
+                    }
+                }
+                tests.put(test, testRuns);
+            }
+            return true;
+        } catch (IOException | IndexOutOfBoundsException e) {
+            log.warn("Rebuilding unreadable test history index {}: {}", index, e);
+            tests.clear();
+            lastRun = 0;
+            return false;
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        Path temp = directory.resolve(INDEX_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(VERSION);
+            out.writeLong(lastRun);
+            out.writeInt(tests.size());
+            for (Map.Entry<String, TestRuns> entry : tests.entrySet()) {
+                TestRuns testRuns = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(testRuns.runs);
+                out.writeLong(testRuns.failures);
+                out.writeLong(testRuns.flips);
+                out.writeByte(testRuns.lastOutcome);
+                out.writeInt(testRuns.recent.size());
+                for (TestHistory.Run run : testRuns.recent) {
+                    out.writeByte(status(run.getStatus()));
+                    out.writeLong(run.getStart());
+                    out.writeLong(run.getDurationMillis());
+                }
+            }
+        }
+        Files.move(temp, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Replays every segment into a new index. A block that does not decode ends its segment, like a torn one.
+     */
+    private void rebuild() {
+        List<Path> segments = segments();
+        try {
+            for (Path segment : segments) {
+                for (byte[] block : blocks(segment)) {
+                    List<String> names = new ArrayList<>();
+                    List<TestHistory.Run> runs = new ArrayList<>();
+                    long run;
+                    try {
+                        DataInputStream in = new DataInputStream(new ByteArrayInputStream(block));
+                        run = in.readLong();
+                        int count = in.readInt();
+                        for (int i = 0; i < count; i++) {
+                            names.add(in.readUTF());
+                            runs.add(readRun(in));
+                        }
+                    } catch (IOException | IndexOutOfBoundsException e) {
+                        log.warn("Ignoring the rest of test history segment {}, unreadable block: {}", segment, e);
+                        break;
+                    }
+                    lastRun = Math.max(lastRun, run);
+                    for (int i = 0; i < names.size(); i++) {
+                        tests.computeIfAbsent(names.get(i), key -> new TestRuns()).add(runs.get(i), indexRuns);
+                    }
+                }
+            }
+            if (!segments.isEmpty()) {
+                writeIndex();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read test history " + directory, e);
+        }
+    }
+
+    /**
+     * @return The complete blocks of a segment; a block cut short, e.g. by a crash while appending, ends it. Blocks
+     * appended after a torn one cannot be told apart from its remains and are lost with it.
+     */
+    private static List<byte[]> blocks(Path segment) throws IOException {
+        List<byte[]> blocks = new ArrayList<>();
+        long left = Files.size(segment);
+        try (InputStream file = Files.newInputStream(segment);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            while (true) {
+                byte[] block;
+                try {
+                    int length = in.readInt();
+                    left -= Integer.BYTES;
+                    // The length of a torn block's remains can be anything, checked before allocating
+                    if (length < 0 || length > left) {
+                        log.warn("Ignoring the rest of test history segment {}, block of {} bytes with {} left",
+                                segment, length, left);
+                        return blocks;
+                    }
+                    block = new byte[length];
+                    in.readFully(block);
+                    left -= length;
+                } catch (EOFException e) {
+                    return blocks;
+                }
+                blocks.add(block);
+            }
+        }
+    }
+
+    private static TestHistory.Run readRun(DataInputStream in) throws IOException {
+        return new TestHistory.Run(STATUSES.get(in.readByte()), in.readLong(), in.readLong());
+    }
+
+    private static int status(String status) {
+        int index = STATUSES.indexOf(status);
+        // Unknown Allure statuses count as broken
+        return index < 0 ? STATUSES.indexOf("broken") : index;
+    }
+
+    private List<Path> segments() {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to list test history " + directory, e);
+        }
+    }
+
+    private Path segment(long firstRun) {
+        return directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, firstRun, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Counts and latest runs of one test
+     */
+    private static final class TestRuns {
+
+        final Deque<TestHistory.Run> recent = new ArrayDeque<>();
+        long runs;
+        long failures;
+        long flips;
+        // -1 before the first run, else 1 if the last run that was not skipped failed
+        byte lastOutcome = -1;
+
+        void add(TestHistory.Run run, int indexRuns) {
+            recent.addFirst(run);
+            if (recent.size() > indexRuns) {
+                recent.removeLast();
+            }
+            if ("skipped".equals(run.getStatus())) {
+                return;
+            }
+            byte outcome = (byte) (run.isFailure() ? 1 : 0);
+            runs++;
+            failures += outcome;
+            if (lastOutcome >= 0 && outcome != lastOutcome) {
+                flips++;
+            }
+            lastOutcome = outcome;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.zwift.framework.sharding;
+
+import com.zwift.framework.logging.Log;
+import com.zwift.framework.utils.Reports;
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.ISuite;
+import org.testng.ITestContext;
+import org.testng.ITestNGMethod;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs one shard of the suite when started with -Dshard=i/N, e.g. -Dshard=2/4 on the second of four machines.
+ * <p>
+ * The suite's test methods are split into N shards of about equal duration by {@link ShardPlan}, using the past
+ * durations in the Allure results (allure-results, or -Dshard.history). Tests without history are estimated at
+ * -Dshard.default.ms, or the median of the known tests when not set. Every shard must read the same history so they
+ * agree on the plan, so the {@link HistoryStore} is not used: it is local to each node and only holds the tests of the
+ * node's own shard. The plan is written to build/reports/zwift/shard-plan-&lt;suite&gt;.json.
+ * Without -Dshard every test runs.
+ */
+public class ShardInterceptor implements IMethodInterceptor {
+
+    private static final Log log = Log.of(ShardInterceptor.class);
+
+    private static final Pattern SHARD = Pattern.compile("\\s*(\\d+)\\s*/\\s*(\\d+)\\s*");
+    private static final String PLAN_ATTRIBUTE = "shardPlan";
+
+    private final String shard;
+    private final Path history;
+    private final long defaultMillis;
+
+    public ShardInterceptor() {
+        this(System.getProperty("shard"), Paths.get(System.getProperty("shard.history", "allure-results")),
+                Long.getLong("shard.default.ms", 0));
+    }
+
+    /**
+     * @param shard         i/N with 1 &lt;= i &lt;= N, or null to run every test
+     * @param history       Allure results holding the past durations
+     * @param defaultMillis Estimate for tests without history, or 0 to use the median of all known tests
+     */
+    public ShardInterceptor(String shard, Path history, long defaultMillis) {
+        this.shard = shard;
+        this.history = history;
+        this.defaultMillis = defaultMillis;
+    }
+
+    @Override
+    public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+        if (shard == null || shard.trim().isEmpty()) {
+            return methods;
+        }
+        Matcher matcher = SHARD.matcher(shard);
+        int index = matcher.matches() ? Integer.parseInt(matcher.group(1)) : 0;
+        int count = matcher.matches() ? Integer.parseInt(matcher.group(2)) : 0;
+        if (index < 1 || index > count) {
+            throw new IllegalArgumentException("-Dshard must be i/N with 1 <= i <= N, was " + shard);
+        }
+
+        ShardPlan plan = plan(context.getSuite(), count);
+        List<IMethodInstance> selected = new ArrayList<>();
+        for (IMethodInstance method : methods) {
+            if (plan.shardOf(name(method.getMethod())) == index - 1) {
+                selected.add(method);
+            }
+        }
+        log.info("Shard {} runs {} methods, about {} s for the suite", index + "/" + count,
+                selected.size() + " of " + methods.size() + " " + context.getName(), plan.getLoad(index - 1) / 1000);
+        return selected;
+    }
+
+    /**
+     * Plans the whole suite once, so tests are balanced across every &lt;test&gt; of the suite and not within each
+     */
+    private ShardPlan plan(ISuite suite, int count) {
+        synchronized (suite) {
+            Object existing = suite.getAttribute(PLAN_ATTRIBUTE);
+            if (existing instanceof ShardPlan && ((ShardPlan) existing).getShards() == count) {
+                return (ShardPlan) existing;
+            }
+            List<String> tests = new ArrayList<>();
+            for (ITestNGMethod method : suite.getAllMethods()) {
+                tests.add(name(method));
+            }
+            ShardPlan plan = ShardPlan.of(tests, TestDurations.load(history, defaultMillis), count);
+            suite.setAttribute(PLAN_ATTRIBUTE, plan);
+            Reports.writeJson("shard-plan-" + suite.getName().replaceAll("\\W+", "-").toLowerCase(Locale.ROOT)
+                    + ".json", plan.toReport());
+            return plan;
+        }
+    }
+
+    /**
+     * @return Class name + "." + method name, the fullName Allure reports the test under
+     */
+    static String name(ITestNGMethod method) {
+        return method.getRealClass().getName() + "." + method.getMethodName();
+    }
+}
@@ -0,0 +1,111 @@
+package com.zwift.framework.sharding;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+/**
+ * Split of a suite's tests into shards of about equal estimated duration.
+ * <p>
+ * Tests are placed longest first, each on the shard with the least estimated time so far (greedy bin-packing, longest
+ * processing time first). The plan only depends on the test names and the durations, so every JVM given the same
+ * history computes the same plan and together the shards run each test exactly once.
+ */
+public final class ShardPlan {
+
+    private final int shards;
+    private final Map<String, Integer> assignments;
+    private final long[] loads;
+
+    private ShardPlan(int shards, Map<String, Integer> assignments, long[] loads) {
+        this.shards = shards;
+        this.assignments = Collections.unmodifiableMap(assignments);
+        this.loads = loads;
+    }
+
+    /**
+     * @param tests     Names of the tests to split, class name + "." + method name; duplicates are ignored
+     * @param durations Estimated duration of each test
+     * @param shards    Number of shards, at least 1
+     * @return The plan
+     */
+    public static ShardPlan of(Iterable<String> tests, TestDurations durations, int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("Number of shards must be at least 1, was " + shards);
+        }
+        TreeSet<String> unique = new TreeSet<>();
+        tests.forEach(unique::add);
+        List<String> ordered = new ArrayList<>(unique);
+        // Longest first, ties by name so the plan never depends on the order tests were listed in
+        ordered.sort(Comparator.<String>comparingLong(durations::estimate).reversed().thenComparing(Comparator.naturalOrder()));
+
+        long[] loads = new long[shards];
+        PriorityQueue<Integer> lightest = new PriorityQueue<>(shards,
+                Comparator.<Integer>comparingLong(shard -> loads[shard]).thenComparingInt(shard -> shard));
+        for (int shard = 0; shard < shards; shard++) {
+            lightest.add(shard);
+        }
+        Map<String, Integer> assignments = new LinkedHashMap<>();
+        for (String test : ordered) {
+            int shard = lightest.poll();
+            assignments.put(test, shard);
+            loads[shard] += durations.estimate(test);
+            lightest.add(shard);
+        }
+        return new ShardPlan(shards, assignments, loads);
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * @param test Class name + "." + method name
+     * @return Zero based shard the test runs on, -1 if it was not part of the plan
+     */
+    public int shardOf(String test) {
+        return assignments.getOrDefault(test, -1);
+    }
+
+    /**
+     * @param shard Zero based shard
+     * @return Names of the tests on the shard, longest first
+     */
+    public List<String> getTests(int shard) {
+        List<String> tests = new ArrayList<>();
+        assignments.forEach((test, assigned) -> {
+            if (assigned == shard) {
+                tests.add(test);
+            }
+        });
+        return tests;
+    }
+
+    /**
+     * @param shard Zero based shard
+     * @return Estimated duration of the shard in milliseconds
+     */
+    public long getLoad(int shard) {
+        return loads[shard];
+    }
+
+    /**
+     * @return Shard number (1 based), estimated time and tests of every shard, for the run reports
+     */
+    public List<Map<String, Object>> toReport() {
+        List<Map<String, Object>> report = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("shard", (shard + 1) + "/" + shards);
+            entry.put("estimatedMillis", loads[shard]);
+            entry.put("tests", getTests(shard));
+            report.add(entry);
+        }
+        return report;
+    }
+}
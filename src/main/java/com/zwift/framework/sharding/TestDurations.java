@@ -0,0 +1,92 @@
+package com.zwift.framework.sharding;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Expected duration of every test, from its past runs in the Allure results (see {@link TestHistory}).
+ * <p>
+ * A test's estimate is the median of its passed and failed runs; tests that never ran get the default estimate.
+ */
+public final class TestDurations {
+
+    private static final long FALLBACK_MILLIS = 30_000;
+
+    private final Map<String, Long> medians;
+    private final long defaultMillis;
+
+    private TestDurations(Map<String, Long> medians, long defaultMillis) {
+        this.medians = Collections.unmodifiableMap(medians);
+        this.defaultMillis = defaultMillis;
+    }
+
+    /**
+     * @param medians       Median duration in milliseconds by test name (class name + "." + method name)
+     * @param defaultMillis Estimate for tests without history, or 0 to use the median of all known tests
+     * @return The durations
+     */
+    public static TestDurations of(Map<String, Long> medians, long defaultMillis) {
+        long fallback = defaultMillis > 0 ? defaultMillis : median(new ArrayList<>(medians.values()), FALLBACK_MILLIS);
+        return new TestDurations(new HashMap<>(medians), fallback);
+    }
+
+    /**
+     * Reads every Allure result below a directory. A missing directory gives no history.
+     *
+     * @param results       Allure results directory, e.g. allure-results
+     * @param defaultMillis Estimate for tests without history, or 0 to use the median of all known tests
+     * @return The durations
+     */
+    public static TestDurations load(Path results, long defaultMillis) {
+        return of(TestHistory.load(results), defaultMillis);
+    }
+
+    /**
+     * @param history       Past runs, only passed and failed runs count
+     * @param defaultMillis Estimate for tests without history, or 0 to use the median of all known tests
+     * @return The durations
+     */
+    public static TestDurations of(TestHistory history, long defaultMillis) {
+        Map<String, Long> medians = new HashMap<>();
+        for (String test : history.getTests()) {
+            List<Long> durations = new ArrayList<>();
+            for (TestHistory.Run run : history.getRuns(test)) {
+                if (run.isComplete()) {
+                    durations.add(run.getDurationMillis());
+                }
+            }
+            if (!durations.isEmpty()) {
+                medians.put(test, median(durations, 0));
+            }
+        }
+        return of(medians, defaultMillis);
+    }
+
+    /**
+     * @param test Class name + "." + method name
+     * @return Estimated duration in milliseconds
+     */
+    public long estimate(String test) {
+        return medians.getOrDefault(test, defaultMillis);
+    }
+
+    public boolean isKnown(String test) {
+        return medians.containsKey(test);
+    }
+
+    public long getDefaultMillis() {
+        return defaultMillis;
+    }
+
+    private static long median(List<Long> values, long empty) {
+        if (values.isEmpty()) {
+            return empty;
+        }
+        Collections.sort(values);
+        return values.get(values.size() / 2);
+    }
+}
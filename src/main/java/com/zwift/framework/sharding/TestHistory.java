@@ -0,0 +1,227 @@
+package com.zwift.framework.sharding;
+
+import com.zwift.framework.logging.Log;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.json.JsonException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Past runs of every test, read from Allure results.
+ * <p>
+ * Both the result files of the latest runs ({@code *-result.json}, including those kept in allure-results/history)
+ * and the history.json of a generated report are read. Report history only knows tests by history id, those entries
+ * are matched to a test name through the result files. A run found in several places is counted once. Each directory
+ * is read once per JVM. Runs kept by a {@link HistoryStore} can be read instead.
+ */
+public final class TestHistory {
+
+    private static final Log log = Log.of(TestHistory.class);
+
+    private static final Json JSON = new Json();
+    private static final Map<Path, TestHistory> loaded = new ConcurrentHashMap<>();
+    private static final Map<List<Path>, TestHistory> stored = new ConcurrentHashMap<>();
+
+    private final Map<String, List<Run>> runs;
+
+    private TestHistory(Map<String, List<Run>> runs) {
+        this.runs = Collections.unmodifiableMap(runs);
+    }
+
+    /**
+     * @param runs Runs of each test by test name (class name + "." + method name), in any order
+     * @return The history
+     */
+    public static TestHistory of(Map<String, List<Run>> runs) {
+        Map<String, List<Run>> sorted = new HashMap<>();
+        runs.forEach((test, testRuns) -> {
+            List<Run> copy = new ArrayList<>(testRuns);
+            copy.sort(Comparator.comparingLong(Run::getStart).reversed());
+            sorted.put(test, Collections.unmodifiableList(copy));
+        });
+        return new TestHistory(sorted);
+    }
+
+    /**
+     * Reads every Allure result below a directory, or returns the history read before. A missing directory gives no
+     * history.
+     *
+     * @param results Allure results directory, e.g. allure-results
+     * @return The history
+     */
+    public static TestHistory load(Path results) {
+        return loaded.computeIfAbsent(results.toAbsolutePath().normalize(), TestHistory::read);
+    }
+
+    /**
+     * Reads the runs of a {@link HistoryStore}, or the Allure results below a directory while the store is empty, or
+     * returns the history read before. The store already holds the runs found in the Allure results, see
+     * {@link HistoryRecorder}.
+     *
+     * @param results Allure results directory, e.g. allure-results
+     * @param store   History store directory, e.g. test-history
+     * @return The history
+     */
+    public static TestHistory load(Path results, Path store) {
+        return stored.computeIfAbsent(Arrays.asList(results.toAbsolutePath().normalize(),
+                store.toAbsolutePath().normalize()), key -> {
+            HistoryStore history = HistoryStore.open(key.get(1));
+            return history.isEmpty() ? load(key.get(0)) : history.toHistory();
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TestHistory read(Path results) {
+        // Keyed by start time, so a run copied to history/ or also listed in history.json is counted once
+        Map<String, Map<Long, Run>> runs = new HashMap<>();
+        Map<String, String> names = new HashMap<>();
+        List<Map<String, Object>> histories = new ArrayList<>();
+        if (Files.isDirectory(results)) {
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(results)) {
+                files = walk.filter(file -> file.toString().endsWith("-result.json")
+                        || file.getFileName().toString().equals("history.json")).collect(Collectors.toList());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read test history in " + results, e);
+            }
+            for (Path file : files) {
+                Map<String, Object> json = readJson(file);
+                if (json == null) {
+                    continue;
+                }
+                if (file.getFileName().toString().equals("history.json")) {
+                    histories.add(json);
+                    continue;
+                }
+                Object name = json.get("fullName");
+                if (name == null) {
+                    continue;
+                }
+                if (json.get("historyId") != null) {
+                    names.put(json.get("historyId").toString(), name.toString());
+                }
+                if (json.get("start") instanceof Number && json.get("stop") instanceof Number) {
+                    long start = ((Number) json.get("start")).longValue();
+                    add(runs, name.toString(), new Run(String.valueOf(json.get("status")), start,
+                            ((Number) json.get("stop")).longValue() - start));
+                }
+            }
+        }
+        for (Map<String, Object> history : histories) {
+            for (Map.Entry<String, Object> entry : history.entrySet()) {
+                String name = names.get(entry.getKey());
+                if (name == null || !(entry.getValue() instanceof Map)) {
+                    continue;
+                }
+                Object items = ((Map<String, Object>) entry.getValue()).get("items");
+                for (Object item : items instanceof List ? (List<Object>) items : Collections.emptyList()) {
+                    Map<String, Object> run = (Map<String, Object>) item;
+                    Object time = run.get("time");
+                    Map<String, Object> times = time instanceof Map ? (Map<String, Object>) time : Collections.emptyMap();
+                    if (times.get("duration") instanceof Number) {
+                        long start = times.get("start") instanceof Number ? ((Number) times.get("start")).longValue() : 0;
+                        add(runs, name, new Run(String.valueOf(run.get("status")), start,
+                                ((Number) times.get("duration")).longValue()));
+                    }
+                }
+            }
+        }
+        Map<String, List<Run>> byTest = new HashMap<>();
+        runs.forEach((test, testRuns) -> byTest.put(test, new ArrayList<>(testRuns.values())));
+        log.info("Read past runs of {} tests from {}", byTest.size(), results);
+        return of(byTest);
+    }
+
+    private static void add(Map<String, Map<Long, Run>> runs, String test, Run run) {
+        Map<Long, Run> testRuns = runs.computeIfAbsent(test, key -> new LinkedHashMap<>());
+        // Report history entries without a start time are always distinct runs
+        testRuns.putIfAbsent(run.getStart() == 0 ? -1 - testRuns.size() : run.getStart(), run);
+    }
+
+    /**
+     * @param test Class name + "." + method name
+     * @return Runs of the test, most recent first, empty if it never ran
+     */
+    public List<Run> getRuns(String test) {
+        return runs.getOrDefault(test, Collections.emptyList());
+    }
+
+    /**
+     * @return Names of every test with at least one run
+     */
+    public Set<String> getTests() {
+        return runs.keySet();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> readJson(Path file) {
+        try {
+            Object json = JSON.toType(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), Map.class);
+            return json instanceof Map ? (Map<String, Object>) json : null;
+        } catch (IOException | JsonException e) {
+            log.warn("Skipping unreadable Allure result {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * One past run of a test
+     */
+    public static final class Run {
+
+        private final String status;
+        private final long start;
+        private final long durationMillis;
+
+        public Run(String status, long start, long durationMillis) {
+            this.status = status;
+            this.start = start;
+            this.durationMillis = durationMillis;
+        }
+
+        /**
+         * @return Allure status: passed, failed, broken or skipped
+         */
+        public String getStatus() {
+            return status;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        /**
+         * @return true for a failed assertion or an error, skipped runs are neither passed nor failed
+         */
+        public boolean isFailure() {
+            return "failed".equals(status) || "broken".equals(status);
+        }
+
+        /**
+         * @return true if the test ran to the end, so its duration is representative
+         */
+        public boolean isComplete() {
+            return "passed".equals(status) || "failed".equals(status);
+        }
+    }
+}
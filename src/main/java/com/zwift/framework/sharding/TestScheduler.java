@@ -0,0 +1,267 @@
+package com.zwift.framework.sharding;
+
+import com.zwift.framework.logging.Log;
+import com.zwift.framework.metrics.Timings;
+import com.zwift.framework.utils.Reports;
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestContext;
+import org.testng.ITestResult;
+import org.testng.TestListenerAdapter;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runs the tests most likely to fail first, so a broken build shows its first failure as early as possible.
+ * <p>
+ * A test's risk comes from its past runs in the {@link HistoryStore} and the Allure results (allure-results, or
+ * -Dschedule.history): failures weigh more the more recent they are, and flaky tests, whose status keeps changing
+ * between runs, count as risky too. Tests that never ran are treated as a coin flip. Tests are ordered by risk, rounded
+ * to tenths, then shortest first and by name, within each &lt;test&gt; of the suite: TestNG always runs the
+ * &lt;test&gt;s in XML order. Tests given a priority in the code keep it. -Dschedule=xml keeps the XML order.
+ * <p>
+ * The time from the start of the suite to the first failed test or configuration method is recorded in
+ * {@link Timings} and written with the order used to build/reports/zwift/test-schedule-&lt;suite&gt;.json.
+ */
+public class TestScheduler extends TestListenerAdapter implements IMethodInterceptor, ISuiteListener {
+
+    private static final Log log = Log.of(TestScheduler.class);
+
+    private static final int WINDOW = 10;
+    private static final double DECAY = 0.7;
+    private static final double NEW_TEST_RISK = 0.5;
+    private static final String SCHEDULE_ATTRIBUTE = "testSchedule";
+    private static final String FIRST_FAILURE_TIMING = "Time to first failure";
+    // Room for estimates up to a day in tenths of a second within one risk level
+    private static final int LEVEL_PRIORITY = 1_000_000;
+
+    private final boolean enabled;
+    private final Path history;
+    private final Path store;
+
+    public TestScheduler() {
+        this(!"xml".equalsIgnoreCase(System.getProperty("schedule")),
+                Paths.get(System.getProperty("schedule.history", "allure-results")), HistoryRecorder.directory());
+    }
+
+    /**
+     * @param enabled FALSE to keep the XML order and only measure the time to first failure
+     * @param history Allure results holding the past runs
+     */
+    public TestScheduler(boolean enabled, Path history) {
+        this(enabled, history, null);
+    }
+
+    /**
+     * @param enabled FALSE to keep the XML order and only measure the time to first failure
+     * @param history Allure results holding the past runs
+     * @param store   {@link HistoryStore} holding more past runs, or null
+     */
+    public TestScheduler(boolean enabled, Path history, Path store) {
+        this.enabled = enabled;
+        this.history = history;
+        this.store = store;
+    }
+
+    /**
+     * @param runs Past runs of a test, most recent first
+     * @return Estimated probability that the next run fails, between 0 and 1
+     */
+    public static double risk(List<TestHistory.Run> runs) {
+        List<Boolean> failures = new ArrayList<>();
+        for (TestHistory.Run run : runs) {
+            // A skipped run says nothing about the test itself
+            if (!"skipped".equals(run.getStatus()) && failures.size() < WINDOW) {
+                failures.add(run.isFailure());
+            }
+        }
+        if (failures.isEmpty()) {
+            return NEW_TEST_RISK;
+        }
+        double failed = 0;
+        double weights = 0;
+        int flips = 0;
+        for (int i = 0; i < failures.size(); i++) {
+            double weight = Math.pow(DECAY, i);
+            weights += weight;
+            failed += failures.get(i) ? weight : 0;
+            if (i > 0 && !failures.get(i).equals(failures.get(i - 1))) {
+                flips++;
+            }
+        }
+        double recentFailures = failed / weights;
+        double flakiness = failures.size() < 2 ? 0 : (double) flips / (failures.size() - 1);
+        return 1 - (1 - recentFailures) * (1 - flakiness);
+    }
+
+    /**
+     * Orders the methods of a &lt;test&gt; and gives each a priority following the schedule, since TestNG runs them
+     * class by class otherwise. Priorities set in the code are kept.
+     */
+    @Override
+    public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+        Schedule schedule = schedule(context.getSuite());
+        List<IMethodInstance> ordered = new ArrayList<>(methods);
+        if (enabled) {
+            Map<IMethodInstance, Entry> entries = new HashMap<>();
+            for (IMethodInstance method : ordered) {
+                Entry entry = schedule.planner.entry(ShardInterceptor.name(method.getMethod()));
+                entries.put(method, entry);
+                if (method.getMethod().getPriority() == 0) {
+                    method.getMethod().setPriority(entry.priority());
+                }
+            }
+            ordered.sort(Comparator.comparing(entries::get, Entry.ORDER));
+        }
+        synchronized (schedule) {
+            for (IMethodInstance method : ordered) {
+                schedule.order.add(schedule.planner.entry(ShardInterceptor.name(method.getMethod())));
+            }
+        }
+        return ordered;
+    }
+
+    @Override
+    public void onStart(ISuite suite) {
+        schedule(suite);
+    }
+
+    @Override
+    public void onTestFailure(ITestResult result) {
+        failed(result);
+    }
+
+    @Override
+    public void onConfigurationFailure(ITestResult result) {
+        failed(result);
+    }
+
+    @Override
+    public void onFinish(ISuite suite) {
+        Schedule schedule = schedule(suite);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("ordered", enabled ? "risk" : "xml");
+        report.put("timeToFirstFailureMillis", schedule.firstFailureMillis);
+        report.put("firstFailure", schedule.firstFailure);
+        List<Map<String, Object>> order = new ArrayList<>();
+        synchronized (schedule) {
+            for (Entry entry : schedule.order) {
+                Map<String, Object> test = new LinkedHashMap<>();
+                test.put("test", entry.test);
+                test.put("risk", Math.round(entry.risk * 100) / 100.0);
+                test.put("estimatedMillis", entry.estimateMillis);
+                order.add(test);
+            }
+        }
+        report.put("order", order);
+        Reports.writeJson("test-schedule-" + suite.getName().replaceAll("\\W+", "-").toLowerCase(Locale.ROOT)
+                + ".json", report);
+        if (schedule.firstFailure != null) {
+            log.info("First failure after {} s: {}", schedule.firstFailureMillis / 1000.0, schedule.firstFailure);
+        }
+    }
+
+    private void failed(ITestResult result) {
+        Schedule schedule = schedule(result.getTestContext().getSuite());
+        synchronized (schedule) {
+            if (schedule.firstFailure != null) {
+                return;
+            }
+            long elapsed = System.nanoTime() - schedule.startNanos;
+            schedule.firstFailure = result.getTestClass().getName() + "." + result.getMethod().getMethodName();
+            schedule.firstFailureMillis = elapsed / 1_000_000;
+            Timings.record(FIRST_FAILURE_TIMING, elapsed);
+        }
+    }
+
+    private Schedule schedule(ISuite suite) {
+        synchronized (suite) {
+            Object existing = suite.getAttribute(SCHEDULE_ATTRIBUTE);
+            if (existing instanceof Schedule) {
+                return (Schedule) existing;
+            }
+            Schedule schedule = new Schedule(planner());
+            suite.setAttribute(SCHEDULE_ATTRIBUTE, schedule);
+            return schedule;
+        }
+    }
+
+    private Planner planner() {
+        TestHistory past = store == null ? TestHistory.load(history) : TestHistory.load(history, store);
+        return new Planner(past, TestDurations.of(past, 0));
+    }
+
+    /**
+     * Risk and duration of every test, from the history read once
+     */
+    private static final class Planner {
+
+        private final TestHistory history;
+        private final TestDurations durations;
+
+        private Planner(TestHistory history, TestDurations durations) {
+            this.history = history;
+            this.durations = durations;
+        }
+
+        Entry entry(String test) {
+            return new Entry(test, risk(history.getRuns(test)), durations.estimate(test));
+        }
+    }
+
+    /**
+     * Where a test goes in the order
+     */
+    private static final class Entry {
+
+        static final Comparator<Entry> ORDER = Comparator.<Entry>comparingInt(entry -> -entry.level)
+                .thenComparingLong(entry -> entry.estimateMillis)
+                .thenComparing(entry -> entry.test);
+
+        final String test;
+        final double risk;
+        final int level;
+        final long estimateMillis;
+
+        Entry(String test, double risk, long estimateMillis) {
+            this.test = test;
+            this.risk = risk;
+            // Risks this close count as equal, the shorter test goes first
+            this.level = (int) Math.round(risk * 10);
+            this.estimateMillis = estimateMillis;
+        }
+
+        /**
+         * @return TestNG priority running riskier tests first, then shorter ones
+         */
+        int priority() {
+            return (10 - level) * LEVEL_PRIORITY + (int) Math.min(estimateMillis / 100, LEVEL_PRIORITY - 1);
+        }
+    }
+
+    /**
+     * Order and first failure of one suite
+     */
+    private static final class Schedule {
+
+        final Planner planner;
+        final long startNanos = System.nanoTime();
+        final List<Entry> order = new ArrayList<>();
+        String firstFailure;
+        Long firstFailureMillis;
+
+        Schedule(Planner planner) {
+            this.planner = planner;
+        }
+    }
+}
@@ -4,61 +4,158 @@ package com.zwift.framework.utils;
  * Created by DHOLMAN on 1/26/16.
  */
 
-import org.testng.Reporter;
+import com.zwift.framework.logging.Log;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.testng.Assert.fail;
 
 
 // handles the parsing of the xxx.config file used in data driven test cases
+// Each file is parsed once into an immutable map shared by every Config instance, and swapped atomically when the
+// file changes on disk, so lookups never touch the file system. A change that does not parse keeps the last values.
 public class Config {
 
-    String str, key;
+    private static final Log log = Log.of(Config.class);
 
-    private String filePath = "driver.properties";
+    private static final Map<Path, ConfigFile> files = new ConcurrentHashMap<>();
+
+    private final ConfigFile file;
 
     public Config(String filePath) {
-        try {
-            File f = new File(filePath);
-            if (!f.exists()) {
-                throw new FileNotFoundException("driver.properties not found in the root directory! Please see ReadMe !!! !! !!! !!");
-            } else {
-                this.filePath = filePath;
+        Path path = Paths.get(filePath).toAbsolutePath().normalize();
+        ConfigFile loaded = files.get(path);
+        if (loaded == null) {
+            // Parsed outside the map so a slow or failing file does not block lookups of the others
+            try {
+                ConfigFile parsed = ConfigFile.load(path);
+                loaded = files.putIfAbsent(path, parsed);
+                if (loaded == null) {
+                    Watcher.INSTANCE.watch(parsed);
+                    loaded = parsed;
+                }
+            } catch (IOException | IllegalArgumentException f) {
+                log.warn("Could not read {}: {}", path, f.getLocalizedMessage());
+                fail("driver.properties not found in the root directory or could not find the specified .properties file! Please see ReadMe");
             }
-        } catch (Exception f) {
-            Reporter.log("", true);
-            Reporter.log("**********************************************************************************", true);
-            Reporter.log(f.getLocalizedMessage(), true);
-            Reporter.log("**********************************************************************************", true);
-            Reporter.log("", true);
-            fail("driver.properties not found in the root directory or could not find the specified .properties file! Please see ReadMe");
         }
+        this.file = loaded;
     }
 
     public String ReadProperty(String propkey) {
-        String propval = "";
-        try {
-            int check = 0;
-            while (check == 0) {
-                check = 1;
-                File cfgfile = new File(filePath);
-                if (cfgfile.exists()) {
-                    Properties props = new Properties();
-                    FileInputStream propin = new FileInputStream(cfgfile);
-                    props.load(propin);
-                    propval = props.getProperty(propkey.toUpperCase());
-                } else {
-                    check = 0;
+        return file.values.get(propkey.toUpperCase());
+    }
+
+    /**
+     * One parsed properties file, reloaded by {@link Watcher} when it changes
+     */
+    private static final class ConfigFile {
+
+        private final Path path;
+        private volatile Map<String, String> values;
+
+        private ConfigFile(Path path, Map<String, String> values) {
+            this.path = path;
+            this.values = values;
+        }
+
+        private static ConfigFile load(Path path) throws IOException {
+            if (!Files.isRegularFile(path)) {
+                throw new FileNotFoundException(path.getFileName() + " not found at " + path);
+            }
+            return new ConfigFile(path, parse(path));
+        }
+
+        /**
+         * Swaps in the new values once the whole file has parsed. A deleted, emptied or malformed file keeps the
+         * last good values until the next change.
+         */
+        private void reload() {
+            try {
+                Map<String, String> parsed = parse(path);
+                if (parsed.isEmpty() && !values.isEmpty()) {
+                    log.warn("Ignoring empty {}, keeping the previous values", path);
+                    return;
+                }
+                values = parsed;
+                log.info("Reloaded {}", path);
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn("Ignoring unreadable {}, keeping the previous values: {}", path, e.getMessage());
+            }
+        }
+
+        /**
+         * @throws IllegalArgumentException If the file holds a malformed unicode escape
+         */
+        private static Map<String, String> parse(Path path) throws IOException {
+            Properties props = new Properties();
+            try (InputStream propin = Files.newInputStream(path)) {
+                props.load(propin);
+            }
+            Map<String, String> values = new HashMap<>();
+            for (String key : props.stringPropertyNames()) {
+                values.put(key, props.getProperty(key));
+            }
+            return Collections.unmodifiableMap(values);
+        }
+    }
+
+    /**
+     * Single daemon thread reloading config files when their directory reports a change
+     */
+    private static final class Watcher implements Runnable {
+
+        private static final Watcher INSTANCE = new Watcher();
+
+        private final Map<WatchKey, Map<Path, ConfigFile>> watched = new ConcurrentHashMap<>();
+        private WatchService service;
+
+        private synchronized void watch(ConfigFile file) {
+            try {
+                register(file);
+            } catch (IOException e) {
+                log.warn("Changes to {} will not be picked up: {}", file.path, e.getMessage());
+            }
+        }
+
+        private void register(ConfigFile file) throws IOException {
+            if (service == null) {
+                service = FileSystems.getDefault().newWatchService();
+                Thread thread = new Thread(this, "config-watcher");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            WatchKey key = file.path.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            watched.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).put(file.path.getFileName(), file);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                WatchKey key;
+                try {
+                    key = service.take();
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    return;
+                }
+                Map<Path, ConfigFile> directory = watched.getOrDefault(key, Collections.emptyMap());
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    ConfigFile file = event.context() instanceof Path ? directory.get(event.context()) : null;
+                    if (file != null) {
+                        file.reload();
+                    }
                 }
+                key.reset();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
-        return propval;
     }
-}
\ No newline at end of file
+}
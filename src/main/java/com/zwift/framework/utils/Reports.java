@@ -0,0 +1,59 @@
+package com.zwift.framework.utils;
+
+import org.openqa.selenium.json.Json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Location and writing of the machine readable reports the framework produces next to the Allure results.
+ * <p>
+ * Reports go to build/reports/zwift unless -Dzwift.reports.dir points somewhere else.
+ */
+public final class Reports {
+
+    private static final Json JSON = new Json();
+
+    private Reports() {
+    }
+
+    /**
+     * @return The reports directory, created if needed
+     */
+    public static Path directory() {
+        Path directory = Paths.get(System.getProperty("zwift.reports.dir", "build/reports/zwift"));
+        try {
+            return Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create reports directory " + directory, e);
+        }
+    }
+
+    /**
+     * @param value Maps, lists, strings and numbers to serialize
+     * @return The value as JSON
+     */
+    public static String toJson(Object value) {
+        return JSON.toJson(value);
+    }
+
+    /**
+     * Writes a value as JSON into the reports directory, replacing any previous file.
+     *
+     * @param fileName Name of the report file
+     * @param value    Maps, lists, strings and numbers to serialize
+     * @return Path of the written file
+     */
+    public static Path writeJson(String fileName, Object value) {
+        Path file = directory().resolve(fileName);
+        try {
+            return Files.write(file, toJson(value).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write report " + file, e);
+        }
+    }
+}
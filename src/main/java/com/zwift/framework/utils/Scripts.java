@@ -0,0 +1,42 @@
+package com.zwift.framework.utils;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Loads the in-page JavaScript kept under src/main/resources/js.
+ * <p>
+ * Each script is read from the classpath once and served from memory afterwards.
+ */
+public final class Scripts {
+
+    private static final Map<String, String> cache = new ConcurrentHashMap<>();
+
+    private Scripts() {
+    }
+
+    /**
+     * @param name File name of the script, e.g. "wait-for.js"
+     * @return The script source
+     */
+    public static String load(String name) {
+        return cache.computeIfAbsent(name, Scripts::read);
+    }
+
+    private static String read(String name) {
+        try (InputStream in = Scripts.class.getResourceAsStream("/js/" + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Script not found on the classpath: /js/" + name);
+            }
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read script " + name, e);
+        }
+    }
+}
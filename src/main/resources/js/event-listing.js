@@ -0,0 +1,87 @@
+/*
+ * Reads every event card on the page into plain objects in one round trip.
+ *
+ * arguments: [cardSelector, limit, markSeen]
+ *   limit     optional maximum number of cards to read
+ *   markSeen  optional, only read cards not returned before and mark them with data-zw-seen,
+ *             used to stream an infinitely scrolling listing batch by batch
+ * returns:   [{id, title, sport, startTime, type, link}, ...] in document order
+ */
+var selector = arguments[0], limit = arguments[1], markSeen = arguments[2];
+
+function text(element) {
+    return element ? (element.innerText || element.textContent || '').trim() : '';
+}
+
+function first(card, selectors) {
+    for (var i = 0; i < selectors.length; i++) {
+        var element = card.querySelector(selectors[i]);
+        var value = text(element) || (element && (element.getAttribute('aria-label') || element.getAttribute('title')));
+        if (value) {
+            return value;
+        }
+    }
+    return '';
+}
+
+/*
+ * Where streaming the cards of the selector got to, kept on the window so scroll-for-more.js can use it too
+ */
+function stream() {
+    var streams = window.__zwCardStreams || (window.__zwCardStreams = {});
+    if (!streams[selector]) {
+        var created = {last: null};
+        /*
+         * Unread cards in document order, at most max (0 for all). The document is walked from the last card read,
+         * so each batch only visits what was added after it, not the whole listing again. Until a card was read,
+         * or once the last one left the page, every card without data-zw-seen.
+         */
+        created.unread = function (max) {
+            var found;
+            if (!created.last || !document.body.contains(created.last)) {
+                found = Array.prototype.slice.call(document.querySelectorAll(selector + ':not([data-zw-seen])'));
+                return max ? found.slice(0, max) : found;
+            }
+            found = [];
+            var walker = document.createTreeWalker(document.body, NodeFilter.SHOW_ELEMENT, null, false);
+            walker.currentNode = created.last;
+            for (var node = walker.nextNode(); node && !(max && found.length >= max); node = walker.nextNode()) {
+                if (node.matches(selector) && !node.hasAttribute('data-zw-seen')) {
+                    found.push(node);
+                }
+            }
+            return found;
+        };
+        streams[selector] = created;
+    }
+    return streams[selector];
+}
+
+var cards;
+if (markSeen) {
+    cards = stream().unread(limit || 0);
+    if (cards.length > 0) {
+        stream().last = cards[cards.length - 1];
+    }
+} else {
+    cards = Array.prototype.slice.call(document.querySelectorAll(selector));
+    if (limit) {
+        cards = cards.slice(0, limit);
+    }
+}
+
+return cards.map(function (card) {
+    if (markSeen) {
+        card.setAttribute('data-zw-seen', '');
+    }
+    var link = card.querySelector('a[href]') || (card.closest ? card.closest('a[href]') : null);
+    var time = card.querySelector('time');
+    return {
+        id: card.getAttribute('data-id') || card.id || (link ? link.getAttribute('href') : ''),
+        title: first(card, ['[class*="title"]', 'h1', 'h2', 'h3', 'h4']),
+        sport: card.getAttribute('data-sport') || first(card, ['[class*="sport"]']),
+        startTime: time ? (time.getAttribute('datetime') || text(time)) : first(card, ['[class*="date"]', '[class*="time"]']),
+        type: card.getAttribute('data-type') || first(card, ['[class*="type"]']),
+        link: link ? link.href : ''
+    };
+});
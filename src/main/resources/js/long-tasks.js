@@ -0,0 +1,25 @@
+/*
+ * Records long tasks from the start of every document, read by page-metrics.js.
+ *
+ * Installed with Page.addScriptToEvaluateOnNewDocument so it runs before the page's own scripts: Chrome does not
+ * buffer longtask entries, an observer created when the metrics are read would miss every task of the page load.
+ * Each task is kept as [startTime, duration], up to 10000 per document.
+ */
+(function () {
+    if (window.__zwiftLongTasks || typeof PerformanceObserver === 'undefined') {
+        return;
+    }
+    var tasks = [];
+    try {
+        new PerformanceObserver(function (list) {
+            list.getEntries().forEach(function (entry) {
+                if (tasks.length < 10000) {
+                    tasks.push([entry.startTime, entry.duration]);
+                }
+            });
+        }).observe({entryTypes: ['longtask']});
+        window.__zwiftLongTasks = tasks;
+    } catch (e) {
+        // longtask is not supported, page-metrics.js reports the time as not measured
+    }
+})();
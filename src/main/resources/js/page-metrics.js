@@ -0,0 +1,100 @@
+/*
+ * Collects Navigation Timing, Paint Timing and resource data for the current page.
+ *
+ * arguments: [mode, callback]
+ *   mode  transition  measure only if the URL changed since the last measurement
+ *         force       measure even if this page was already measured
+ *         current     measure the page as it is now, from the start of the current page, without
+ *                     marking it as measured (used for budget checks)
+ * Calls back with null when nothing is measured (already measured, or not a web page).
+ * A URL change within the same document is reported as a "soft" navigation, with only the resources
+ * loaded since the previous measurement.
+ * Long tasks come from the observer long-tasks.js installs at document start; longTaskMillis is null
+ * when it is not installed, e.g. in sessions without DevTools.
+ */
+var mode = arguments[0];
+var callback = arguments[arguments.length - 1];
+var marker = window.__zwiftPageMetrics;
+
+if (!/^(https?|file):$/.test(location.protocol) || (mode === 'transition' && marker && marker.url === location.href)) {
+    callback(null);
+    return;
+}
+
+var since, soft;
+if (mode === 'current' && marker && marker.url === location.href) {
+    since = marker.since;
+    soft = marker.soft;
+} else {
+    soft = !!marker;
+    since = marker ? marker.measuredAt : 0;
+    if (mode !== 'current') {
+        window.__zwiftPageMetrics = {url: location.href, since: since, soft: soft, measuredAt: performance.now()};
+    }
+}
+
+function round(value) {
+    return value > 0 ? Math.round(value) : null;
+}
+
+function observed(type, done) {
+    try {
+        var entries = [];
+        var observer = new PerformanceObserver(function (list) {
+            entries = entries.concat(list.getEntries());
+        });
+        observer.observe({type: type, buffered: true});
+        setTimeout(function () {
+            entries = entries.concat(observer.takeRecords());
+            observer.disconnect();
+            done(entries);
+        }, 0);
+    } catch (e) {
+        done([]);
+    }
+}
+
+observed('largest-contentful-paint', function (lcpEntries) {
+    var navigation = performance.getEntriesByType('navigation')[0] || {};
+    var paints = {};
+    performance.getEntriesByType('paint').forEach(function (entry) {
+        paints[entry.name] = entry.startTime;
+    });
+    var resources = performance.getEntriesByType('resource').filter(function (entry) {
+        return entry.startTime >= since;
+    });
+    var byType = {};
+    var transferBytes = 0, bodyBytes = 0;
+    resources.forEach(function (entry) {
+        byType[entry.initiatorType] = (byType[entry.initiatorType] || 0) + 1;
+        transferBytes += entry.transferSize || 0;
+        bodyBytes += entry.encodedBodySize || 0;
+    });
+    var longTaskMillis = null;
+    if (window.__zwiftLongTasks) {
+        longTaskMillis = 0;
+        window.__zwiftLongTasks.forEach(function (task) {
+            if (task[0] >= since) {
+                longTaskMillis += task[1];
+            }
+        });
+    }
+    var lcp = lcpEntries.length ? lcpEntries[lcpEntries.length - 1].startTime : 0;
+
+    callback({
+        url: location.href,
+        page: location.host + location.pathname,
+        navigation: soft ? 'soft' : (navigation.type || 'navigate'),
+        ttfbMillis: soft ? null : round(navigation.responseStart),
+        domContentLoadedMillis: soft ? null : round(navigation.domContentLoadedEventEnd),
+        loadMillis: soft ? null : round(navigation.loadEventEnd),
+        fcpMillis: soft ? null : round(paints['first-contentful-paint']),
+        lcpMillis: soft ? null : round(lcp),
+        documentTransferBytes: soft ? 0 : (navigation.transferSize || 0),
+        resourceCount: resources.length,
+        resourceTransferBytes: transferBytes,
+        resourceBodyBytes: bodyBytes,
+        resourcesByType: byType,
+        longTaskMillis: longTaskMillis === null ? null : Math.round(longTaskMillis)
+    });
+});
@@ -0,0 +1,23 @@
+/*
+ * Lists the URLs the current page has requested since the last call, for recording.
+ *
+ * Returns {userAgent, urls}: the document URL followed by every resource URL not returned before.
+ * The resource timing buffer is enlarged on the first call so long pages are not cut off.
+ */
+var seen = window.__zwiftRecordedResources || 0;
+if (!seen && performance.setResourceTimingBufferSize) {
+    performance.setResourceTimingBufferSize(10000);
+}
+var resources = performance.getEntriesByType('resource');
+window.__zwiftRecordedResources = resources.length;
+
+var urls = [location.href];
+for (var i = seen; i < resources.length; i++) {
+    urls.push(resources[i].name);
+}
+return {
+    userAgent: navigator.userAgent,
+    urls: urls.filter(function (url) {
+        return /^https?:/.test(url);
+    })
+};
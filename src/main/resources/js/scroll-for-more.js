@@ -0,0 +1,54 @@
+/*
+ * Scrolls an infinitely loading listing and waits for cards that have not been read yet.
+ *
+ * arguments: [cardSelector, settleMillis, callback]
+ * Calls back with the number of unread cards (after the last card event-listing.js streamed, or without
+ * data-zw-seen) as soon as new ones render, or with 0 once the page stays unchanged for settleMillis.
+ */
+var selector = arguments[0], settle = arguments[1];
+var callback = arguments[arguments.length - 1];
+var stream = (window.__zwCardStreams || {})[selector];
+
+function unread(max) {
+    if (stream) {
+        return stream.unread(max);
+    }
+    var cards = Array.prototype.slice.call(document.querySelectorAll(selector + ':not([data-zw-seen])'));
+    return max ? cards.slice(0, max) : cards;
+}
+
+if (unread(1).length > 0) {
+    callback(unread(0).length);
+    return;
+}
+
+var last = stream && stream.last;
+if (!last) {
+    var cards = document.querySelectorAll(selector);
+    last = cards.length > 0 ? cards[cards.length - 1] : null;
+}
+if (last) {
+    last.scrollIntoView();
+}
+window.scrollTo(0, document.documentElement.scrollHeight);
+window.dispatchEvent(new Event('scroll'));
+
+var finished = false;
+var observer = new MutationObserver(function () {
+    if (unread(1).length > 0) {
+        finish();
+    }
+});
+var timer = setTimeout(finish, settle);
+
+function finish() {
+    if (finished) {
+        return;
+    }
+    finished = true;
+    observer.disconnect();
+    clearTimeout(timer);
+    callback(unread(0).length);
+}
+
+observer.observe(document.body, {childList: true, subtree: true});
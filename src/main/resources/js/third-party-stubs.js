@@ -0,0 +1,25 @@
+/*
+ * Injected into every document when requests are intercepted. Defines no-op versions of the analytics and
+ * marketing globals whose scripts are blocked, so page code calling them does not throw.
+ * Existing globals are left untouched, in case a script was not blocked.
+ */
+(function () {
+    function noop() {
+    }
+
+    window.dataLayer = window.dataLayer || [];
+    window.gtag = window.gtag || function () {
+        window.dataLayer.push(arguments);
+    };
+    window.ga = window.ga || noop;
+    window.fbq = window.fbq || noop;
+    window.hj = window.hj || noop;
+    window.uetq = window.uetq || [];
+    window.optimizely = window.optimizely || [];
+    if (!window.analytics) {
+        window.analytics = {};
+        ['track', 'page', 'identify', 'group', 'alias', 'ready', 'reset', 'on', 'once', 'off'].forEach(function (method) {
+            window.analytics[method] = noop;
+        });
+    }
+})();
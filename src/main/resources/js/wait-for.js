@@ -0,0 +1,117 @@
+/*
+ * Resolves as soon as elements matching a locator reach the requested state.
+ *
+ * arguments: [kind, value, condition, timeoutMillis, element, callback]
+ *   kind       css | xpath | id | name | className | tagName | linkText | partialLinkText
+ *   condition  present | visible | clickable | allVisible
+ *   element    optional WebElement to check instead of a locator
+ *
+ * Calls back with the matching element (or array for allVisible), or null once the timeout expires.
+ * A MutationObserver re-checks on every DOM change; a short in-page interval covers layout-only changes
+ * such as CSS transitions, without any extra WebDriver round trips.
+ */
+var kind = arguments[0], value = arguments[1], condition = arguments[2], timeout = arguments[3], target = arguments[4];
+var callback = arguments[arguments.length - 1];
+
+function toArray(list) {
+    return Array.prototype.slice.call(list);
+}
+
+function find() {
+    if (target) {
+        return [target];
+    }
+    switch (kind) {
+        case 'css':
+            return toArray(document.querySelectorAll(value));
+        case 'id':
+            var byId = document.getElementById(value);
+            return byId ? [byId] : [];
+        case 'name':
+            return toArray(document.getElementsByName(value));
+        case 'className':
+            return toArray(document.getElementsByClassName(value));
+        case 'tagName':
+            return toArray(document.getElementsByTagName(value));
+        case 'xpath':
+            var snapshot = document.evaluate(value, document, null, XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null);
+            var nodes = [];
+            for (var i = 0; i < snapshot.snapshotLength; i++) {
+                nodes.push(snapshot.snapshotItem(i));
+            }
+            return nodes;
+        case 'linkText':
+        case 'partialLinkText':
+            return toArray(document.getElementsByTagName('a')).filter(function (a) {
+                var text = (a.innerText || a.textContent || '').trim();
+                return kind === 'linkText' ? text === value : text.indexOf(value) !== -1;
+            });
+    }
+    return [];
+}
+
+function visible(element) {
+    if (!element.isConnected) {
+        return false;
+    }
+    var style = window.getComputedStyle(element);
+    if (style.display === 'none' || style.visibility === 'hidden' || parseFloat(style.opacity) === 0) {
+        return false;
+    }
+    var rect = element.getBoundingClientRect();
+    return rect.width > 0 && rect.height > 0;
+}
+
+function evaluate() {
+    var found = find();
+    if (found.length === 0) {
+        return null;
+    }
+    switch (condition) {
+        case 'present':
+            return found[0];
+        case 'visible':
+            return visible(found[0]) ? found[0] : null;
+        case 'clickable':
+            return visible(found[0]) && !found[0].disabled ? found[0] : null;
+        case 'allVisible':
+            return found.every(visible) ? found : null;
+    }
+    return null;
+}
+
+var finished = false, observer = null, interval = null, timer = null;
+
+function finish(result) {
+    if (finished) {
+        return;
+    }
+    finished = true;
+    if (observer) {
+        observer.disconnect();
+    }
+    clearInterval(interval);
+    clearTimeout(timer);
+    callback(result);
+}
+
+function check() {
+    try {
+        var result = evaluate();
+        if (result) {
+            finish(result);
+        }
+    } catch (e) {
+        // The DOM can be mid-update, the next mutation or tick checks again
+    }
+}
+
+check();
+if (!finished) {
+    observer = new MutationObserver(check);
+    observer.observe(document.documentElement || document, {childList: true, subtree: true, attributes: true});
+    interval = setInterval(check, 100);
+    timer = setTimeout(function () {
+        finish(null);
+    }, timeout);
+}
@@ -0,0 +1,84 @@
+package test;
+
+import com.zwift.framework.listeners.ArtifactCollector;
+import com.zwift.framework.listeners.ArtifactStore;
+import io.qameta.allure.*;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+/**
+ * Stores artifacts once per distinct content, without a browser.
+ */
+@Epic("Framework")
+@Feature("Artifact Store")
+public class ArtifactStoreTest {
+
+    @Test(description = "Equal content is stored once, under the name of its hash")
+    @Severity(SeverityLevel.NORMAL)
+    public void storesDistinctContentOnce() throws IOException {
+        Path directory = Files.createTempDirectory("artifacts");
+        ArtifactStore store = new ArtifactStore(directory, Files.createTempDirectory("allure-results"));
+        byte[] page = "Service Unavailable".getBytes(StandardCharsets.UTF_8);
+
+        Path first = null;
+        for (int i = 0; i < 100; i++) {
+            Path file = store.save(ArtifactStore.Blob.of(page.clone(), "text/plain", ".txt"));
+            Assert.assertTrue(first == null || first.equals(file), file.toString());
+            first = file;
+        }
+        Path other = store.save(ArtifactStore.Blob.of("OK".getBytes(StandardCharsets.UTF_8), "text/plain", ".txt"));
+        Assert.assertTrue(ArtifactCollector.drain(Duration.ofSeconds(10)));
+
+        Assert.assertNotEquals(other, first);
+        Assert.assertTrue(first.getFileName().toString().matches("[0-9a-f]{32}\\.txt"), first.toString());
+        Assert.assertEquals(Files.readAllBytes(first), page);
+        try (Stream<Path> files = Files.list(directory)) {
+            Assert.assertEquals(files.count(), 2);
+        }
+    }
+
+    @Test(description = "Screenshots are scaled down and recompressed once, and named after the original and the conversion")
+    @Severity(SeverityLevel.NORMAL)
+    public void convertsScreenshots() throws IOException {
+        BufferedImage image = new BufferedImage(1600, 900, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.ORANGE);
+        graphics.fillRect(0, 0, 800, 900);
+        graphics.dispose();
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+
+        ArtifactStore.Blob original = ArtifactStore.Blob.screenshot(png.toByteArray(), 0, "png");
+        ArtifactStore.Blob jpeg = ArtifactStore.Blob.screenshot(png.toByteArray(), 800, "jpg");
+        ArtifactStore.Blob smaller = ArtifactStore.Blob.screenshot(png.toByteArray(), 400, "jpg");
+        ArtifactStore.Blob scaled = ArtifactStore.Blob.screenshot(png.toByteArray(), 800, "png");
+        Assert.assertEquals(jpeg.getName(), ArtifactStore.Blob.screenshot(png.toByteArray(), 800, "jpg").getName());
+        Assert.assertNotEquals(smaller.getName(), jpeg.getName(), "Another width is stored apart");
+        Assert.assertNotEquals(scaled.getName(), original.getName(), "A scaled PNG is stored apart from the original");
+        Assert.assertEquals(jpeg.getType(), "image/jpeg");
+
+        ArtifactStore store = new ArtifactStore(Files.createTempDirectory("artifacts"),
+                Files.createTempDirectory("allure-results"));
+        Path file = store.save(jpeg);
+        Path smallerFile = store.save(smaller);
+        Assert.assertTrue(ArtifactCollector.drain(Duration.ofSeconds(10)));
+
+        BufferedImage stored = ImageIO.read(new ByteArrayInputStream(Files.readAllBytes(file)));
+        Assert.assertEquals(stored.getWidth(), 800);
+        Assert.assertEquals(stored.getHeight(), 450);
+        Assert.assertEquals(ImageIO.read(smallerFile.toFile()).getWidth(), 400);
+    }
+}
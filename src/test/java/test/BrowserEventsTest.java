@@ -0,0 +1,87 @@
+package test;
+
+import com.zwift.framework.driver.BrowserEvents;
+import io.qameta.allure.*;
+import org.openqa.selenium.logging.LogEntry;
+import org.openqa.selenium.logging.LogType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * Keeps the console and network events of a session in a bounded buffer, fed with log entries instead of a browser.
+ */
+@Epic("Framework")
+@Feature("Browser Events")
+public class BrowserEventsTest {
+
+    @Test(description = "The ring keeps the latest events, the first errors and counts of everything")
+    @Severity(SeverityLevel.NORMAL)
+    public void ringKeepsLatestEventsAndFirstErrors() {
+        BrowserEvents.Buffer buffer = new BrowserEvents.Buffer(50);
+        buffer.add(LogType.BROWSER, Collections.singletonList(new LogEntry(Level.SEVERE, 1,
+                "https://zwift.com/app.js 10:5 Uncaught TypeError: x is undefined")));
+        List<LogEntry> console = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            console.add(new LogEntry(i % 100 == 0 ? Level.WARNING : Level.INFO, 2 + i, "message " + i));
+        }
+        buffer.add(LogType.BROWSER, console);
+
+        List<BrowserEvents.Event> events = buffer.getEvents();
+        Assert.assertEquals(events.size(), 50);
+        Assert.assertEquals(events.get(49).getText(), "message 999");
+        Assert.assertEquals(events.get(0).getText(), "message 950");
+        Assert.assertEquals(buffer.count(BrowserEvents.Kind.CONSOLE), 1000);
+        Assert.assertEquals(buffer.count(BrowserEvents.Kind.EXCEPTION), 1);
+
+        String summary = buffer.summary();
+        Assert.assertTrue(summary.contains("1001 messages, 1 errors, 10 warnings, 1 uncaught exceptions"), summary);
+        Assert.assertTrue(summary.contains("Uncaught TypeError"), "The early exception is kept: " + summary);
+        Assert.assertTrue(buffer.dump().contains("message 999"));
+    }
+
+    @Test(description = "Network events are matched to their request, blocked requests are listed for the interceptor")
+    @Severity(SeverityLevel.NORMAL)
+    public void networkEvents() {
+        BrowserEvents.Buffer buffer = new BrowserEvents.Buffer(10);
+        buffer.add(LogType.PERFORMANCE, Arrays.asList(
+                request("1", "https://zwift.com/"),
+                response("1", "Document", "https://zwift.com/", 200),
+                network("Network.dataReceived", "\"requestId\":\"1\",\"dataLength\":100"),
+                request("2", "https://zwift.com/api"),
+                response("2", "XHR", "https://zwift.com/api", 503),
+                request("3", "https://ads.example/tag.js"),
+                network("Network.loadingFailed", "\"requestId\":\"3\",\"errorText\":\"net::ERR_BLOCKED_BY_CLIENT\","
+                        + "\"blockedReason\":\"inspector\""),
+                request("4", "https://cdn.zwift.com/a.css"),
+                network("Network.loadingFailed", "\"requestId\":\"4\",\"errorText\":\"net::ERR_CONNECTION_RESET\"")));
+
+        Assert.assertEquals(buffer.count(BrowserEvents.Kind.RESPONSE), 2);
+        Assert.assertEquals(buffer.count(BrowserEvents.Kind.FAILED), 1);
+        Assert.assertEquals(buffer.getBlocked(), Collections.singletonList("https://ads.example/tag.js"));
+        String summary = buffer.summary();
+        Assert.assertTrue(summary.contains("2 responses, 1 HTTP errors, 1 failed, 1 blocked"), summary);
+        Assert.assertTrue(summary.contains("503 XHR https://zwift.com/api"), summary);
+        Assert.assertTrue(summary.contains("ERR_CONNECTION_RESET https://cdn.zwift.com/a.css"), summary);
+    }
+
+    private static LogEntry request(String id, String url) {
+        return network("Network.requestWillBeSent", "\"requestId\":\"" + id + "\",\"request\":{\"url\":\"" + url
+                + "\"}");
+    }
+
+    private static LogEntry response(String id, String type, String url, int status) {
+        return network("Network.responseReceived", "\"requestId\":\"" + id + "\",\"type\":\"" + type
+                + "\",\"response\":{\"url\":\"" + url + "\",\"status\":" + status + "}");
+    }
+
+    private static LogEntry network(String method, String params) {
+        return new LogEntry(Level.INFO, System.currentTimeMillis(),
+                "{\"message\":{\"method\":\"" + method + "\",\"params\":{" + params + "}},\"webview\":\"1\"}");
+    }
+}
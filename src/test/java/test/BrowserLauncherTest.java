@@ -0,0 +1,88 @@
+package test;
+
+import com.zwift.framework.driver.BrowserLauncher;
+import io.qameta.allure.*;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks spare browsers are started ahead of time and handed out without waiting. Browsers are stubbed with a fixed
+ * start time.
+ */
+@Epic("Framework")
+@Feature("Browser Launcher")
+public class BrowserLauncherTest {
+
+    private static final long START_MILLIS = 300;
+
+    @Test(description = "A spare that finished starting is a hit, taking the next one right away waits for it")
+    @Severity(SeverityLevel.NORMAL)
+    public void sparesAreStartedAhead() throws InterruptedException {
+        AtomicInteger started = new AtomicInteger();
+        BrowserLauncher launcher = new BrowserLauncher(1, () -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(START_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            started.incrementAndGet();
+            return stub(WebDriver.class);
+        });
+        try {
+            TimeUnit.MILLISECONDS.sleep(START_MILLIS * 2);
+
+            long start = System.nanoTime();
+            Assert.assertNotNull(launcher.take());
+            long warm = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            Assert.assertTrue(warm < START_MILLIS / 2, "Took " + warm + " ms to get a started browser");
+            Assert.assertEquals(launcher.getHits(), 1);
+
+            Assert.assertNotNull(launcher.take());
+            Assert.assertEquals(launcher.getMisses(), 1);
+            Assert.assertEquals(launcher.getHitRate(), 0.5, 0.001);
+        } finally {
+            launcher.shutdown();
+        }
+        Assert.assertTrue(started.get() >= 2, "Started " + started + " browsers");
+    }
+
+    /**
+     * Builds a do-nothing implementation of a Selenium interface. Nested interfaces (options, navigation, target
+     * locator) are stubbed as well so the launcher can quit the session.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type, JavascriptExecutor.class},
+                (proxy, method, args) -> {
+                    Class<?> returnType = method.getReturnType();
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "Stub" + type.getSimpleName();
+                        case "getWindowHandles":
+                            return Collections.singleton("window");
+                        case "getWindowHandle":
+                            return "window";
+                        default:
+                            break;
+                    }
+                    if (returnType.isInterface() && returnType.getName().startsWith("org.openqa.selenium")) {
+                        return stub(returnType);
+                    }
+                    if (returnType == boolean.class) {
+                        return false;
+                    }
+                    return returnType.isPrimitive() && returnType != void.class ? 0 : null;
+                });
+    }
+}
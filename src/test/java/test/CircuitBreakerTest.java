@@ -0,0 +1,202 @@
+package test;
+
+import com.sun.net.httpserver.HttpServer;
+import com.zwift.framework.Environment;
+import com.zwift.framework.health.CircuitBreaker;
+import com.zwift.framework.health.EnvironmentGuard;
+import com.zwift.framework.health.HealthProbe;
+import io.qameta.allure.*;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.NoSuchSessionException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.remote.UnreachableBrowserException;
+import org.testng.Assert;
+import org.testng.ITestNGListener;
+import org.testng.TestListenerAdapter;
+import org.testng.TestNG;
+import org.testng.annotations.Test;
+import org.testng.xml.XmlClass;
+import org.testng.xml.XmlSuite;
+import org.testng.xml.XmlTest;
+
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Opens the circuit breaker on infrastructure failures and closes it once a probe succeeds, without a browser.
+ */
+@Epic("Framework")
+@Feature("Circuit Breaker")
+public class CircuitBreakerTest {
+
+    @Test(description = "Only consecutive infrastructure failures open the breaker")
+    @Severity(SeverityLevel.NORMAL)
+    public void opensOnConsecutiveInfrastructureFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(3, Duration.ofMinutes(1), () -> null);
+
+        breaker.recordFailure(new UnreachableBrowserException("Could not start a new session"));
+        breaker.recordFailure(new NoSuchSessionException("Session closed"));
+        breaker.recordFailure(new AssertionError("Title differs"));
+        breaker.recordFailure(new NoSuchSessionException("Session closed"));
+        breaker.recordSuccess();
+        breaker.recordFailure(new NoSuchSessionException("Session closed"));
+        breaker.recordFailure(new NoSuchSessionException("Session closed"));
+        Assert.assertEquals(breaker.getState(), CircuitBreaker.State.CLOSED);
+        Assert.assertNull(breaker.allow());
+
+        Assert.assertTrue(CircuitBreaker.isInfrastructureFailure(new RuntimeException(new ConnectException())));
+        breaker.recordFailure(new NoSuchSessionException("Session closed"));
+        Assert.assertEquals(breaker.getState(), CircuitBreaker.State.OPEN);
+        String reason = breaker.allow();
+        Assert.assertTrue(reason.contains("3 consecutive infrastructure failures"), reason);
+        Assert.assertFalse(reason.contains("\n"), reason);
+    }
+
+    @Test(description = "Missing elements and wait timeouts are regressions while the environment is up")
+    @Severity(SeverityLevel.NORMAL)
+    public void elementFailuresDoNotOpenTheBreaker() {
+        CircuitBreaker breaker = new CircuitBreaker(3, Duration.ofMinutes(1), () -> null);
+
+        for (int i = 0; i < 5; i++) {
+            breaker.recordFailure(new NoSuchElementException("Unable to locate element: .event-card"));
+        }
+        breaker.recordFailure(new StaleElementReferenceException("Element is no longer attached"));
+        breaker.recordFailure(new TimeoutException("Expected condition failed",
+                new NoSuchElementException("Unable to locate element: .event-card")));
+        Assert.assertEquals(breaker.getState(), CircuitBreaker.State.CLOSED);
+        Assert.assertNull(breaker.allow());
+    }
+
+    @Test(description = "Missing elements and wait timeouts open the breaker once the site went down, probed sparingly")
+    @Severity(SeverityLevel.NORMAL)
+    public void elementFailuresOpenTheBreakerWhenTheSiteIsDown() {
+        AtomicInteger probes = new AtomicInteger();
+        CircuitBreaker breaker = new CircuitBreaker(3, Duration.ofMinutes(1), Duration.ofMinutes(1), () -> {
+            probes.incrementAndGet();
+            return "https://zwift.com answered 502 Bad Gateway";
+        });
+
+        breaker.recordFailure(new TimeoutException("Expected condition failed",
+                new NoSuchElementException("Unable to locate element: .event-card")));
+        breaker.recordFailure(new NoSuchElementException("Unable to locate element: .apply-button"));
+        Assert.assertEquals(breaker.getState(), CircuitBreaker.State.CLOSED);
+        breaker.recordFailure(new NoSuchElementException("Unable to locate element: .apply-button"));
+
+        Assert.assertEquals(breaker.getState(), CircuitBreaker.State.OPEN);
+        Assert.assertEquals(probes.get(), 1, "Failures within the probe interval share one probe");
+        Assert.assertTrue(breaker.allow().contains("502 Bad Gateway"), breaker.allow());
+    }
+
+    @Test(description = "After the cooldown one probe decides whether tests resume")
+    @Severity(SeverityLevel.NORMAL)
+    public void halfOpenProbeClosesTheBreaker() {
+        AtomicReference<String> health = new AtomicReference<>("down");
+        AtomicInteger probes = new AtomicInteger();
+        CircuitBreaker breaker = new CircuitBreaker(1, Duration.ZERO, () -> {
+            probes.incrementAndGet();
+            return health.get();
+        });
+
+        breaker.open("the environment is down");
+        Assert.assertTrue(breaker.allow().contains("down"));
+        Assert.assertEquals(breaker.getState(), CircuitBreaker.State.OPEN);
+
+        health.set(null);
+        Assert.assertNull(breaker.allow());
+        Assert.assertNull(breaker.allow());
+        Assert.assertEquals(breaker.getState(), CircuitBreaker.State.CLOSED);
+        Assert.assertEquals(probes.get(), 2, "A closed breaker does not probe");
+    }
+
+    @Test(description = "A test refused while the environment is down is skipped alone, the rest of its class runs")
+    @Severity(SeverityLevel.NORMAL)
+    public void refusedTestDoesNotSkipItsClass() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        // Down for the probe when the suite starts and the one before the first test, up afterwards
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(requests.incrementAndGet() <= 2 ? 503 : 200, -1);
+            exchange.close();
+        });
+        server.start();
+        String cooldown = System.getProperty("breaker.cooldown.ms");
+        TestListenerAdapter results = new TestListenerAdapter();
+        try {
+            System.setProperty("breaker.cooldown.ms", "0");
+            EnvironmentGuard.start(Environment.of(Collections.singletonMap("URL",
+                    "http://127.0.0.1:" + server.getAddress().getPort() + "/")));
+
+            XmlSuite suite = new XmlSuite();
+            suite.setName("Guard Sample");
+            XmlTest test = new XmlTest(suite);
+            test.setName("Guard Sample");
+            test.setXmlClasses(Collections.singletonList(new XmlClass(GuardSample.class)));
+            TestNG testNG = new TestNG();
+            testNG.setUseDefaultListeners(false);
+            testNG.setVerbose(0);
+            // Keeps service loaded listeners such as Allure from reporting the sample methods
+            testNG.setServiceLoaderClassLoader(new URLClassLoader(new URL[0], null));
+            testNG.setXmlSuites(Collections.singletonList(suite));
+            testNG.addListener((ITestNGListener) new EnvironmentGuard());
+            testNG.addListener((ITestNGListener) results);
+            testNG.run();
+        } finally {
+            if (cooldown == null) {
+                System.clearProperty("breaker.cooldown.ms");
+            } else {
+                System.setProperty("breaker.cooldown.ms", cooldown);
+            }
+            // The framework suite runs without probing, as set up by Base
+            EnvironmentGuard.start(Environment.of(Collections.emptyMap()));
+            server.stop(0);
+        }
+
+        Assert.assertEquals(results.getSkippedTests().size(), 1, results.getSkippedTests().toString());
+        Assert.assertEquals(results.getSkippedTests().get(0).getMethod().getMethodName(), "first");
+        Assert.assertTrue(results.getSkippedTests().get(0).getThrowable().getMessage().contains("circuit breaker open"));
+        Assert.assertEquals(results.getPassedTests().size(), 2, results.getPassedTests().toString());
+        Assert.assertTrue(results.getConfigurationSkips().isEmpty(), results.getConfigurationSkips().toString());
+    }
+
+    @Test(description = "The probe accepts any answer below 500 and reports refused connections quickly")
+    @Severity(SeverityLevel.NORMAL)
+    public void probeChecksEveryUrl() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            int status = exchange.getRequestURI().getPath().equals("/down") ? 503 : 404;
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        server.start();
+        int closed;
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            closed = socket.getLocalPort();
+        }
+        try {
+            String base = "http://127.0.0.1:" + server.getAddress().getPort();
+            Duration timeout = Duration.ofSeconds(2);
+
+            Assert.assertNull(new HealthProbe(Arrays.asList(base + "/", null), timeout).check());
+            Assert.assertTrue(new HealthProbe(Arrays.asList(base + "/", base + "/down"), timeout).check()
+                    .contains("503"));
+
+            long start = System.nanoTime();
+            String refused = new HealthProbe(Collections.singletonList("http://127.0.0.1:" + closed + "/"), timeout)
+                    .check();
+            Assert.assertNotNull(refused);
+            Assert.assertTrue((System.nanoTime() - start) / 1_000_000 < 2000, refused);
+        } finally {
+            server.stop(0);
+        }
+    }
+}
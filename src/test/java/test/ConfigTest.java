@@ -0,0 +1,85 @@
+package test;
+
+import com.zwift.framework.utils.Config;
+import io.qameta.allure.*;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks properties files are read once, picked up again when they change and fail at once when missing.
+ */
+@Epic("Framework")
+@Feature("Config")
+public class ConfigTest {
+
+    private static final long RELOAD_TIMEOUT_MILLIS = 10_000;
+
+    @Test(description = "A changed file is picked up by existing and new instances")
+    @Severity(SeverityLevel.NORMAL)
+    public void changedFileIsReloaded() throws IOException, InterruptedException {
+        Path file = Files.createTempDirectory("config-test").resolve("reload.properties");
+        write(file, "BROWSER=chrome\n");
+        Config config = new Config(file.toString());
+        Assert.assertEquals(config.ReadProperty("browser"), "chrome");
+
+        write(file, "BROWSER=inmemory\n");
+        Assert.assertEquals(awaitValue(config, "browser", "inmemory"), "inmemory");
+        Assert.assertEquals(new Config(file.toString()).ReadProperty("browser"), "inmemory");
+    }
+
+    @Test(description = "A change that does not parse keeps the previous values")
+    @Severity(SeverityLevel.NORMAL)
+    public void unreadableChangeKeepsPreviousValues() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("config-test");
+        Path file = directory.resolve("broken.properties");
+        Path marker = directory.resolve("marker.properties");
+        write(file, "BROWSER=chrome\n");
+        write(marker, "STEP=0\n");
+        Config config = new Config(file.toString());
+        Config markerConfig = new Config(marker.toString());
+
+        // Changes in one directory are reloaded in order, the marker shows the broken file has been handled
+        write(file, "BROWSER=\\u00zz\n");
+        write(marker, "STEP=1\n");
+        Assert.assertEquals(awaitValue(markerConfig, "step", "1"), "1");
+        Assert.assertEquals(config.ReadProperty("browser"), "chrome", "After a malformed escape");
+
+        write(file, "");
+        write(marker, "STEP=2\n");
+        Assert.assertEquals(awaitValue(markerConfig, "step", "2"), "2");
+        Assert.assertEquals(config.ReadProperty("browser"), "chrome", "After emptying the file");
+    }
+
+    @Test(description = "A missing file fails without waiting for it to appear", expectedExceptions = AssertionError.class)
+    @Severity(SeverityLevel.NORMAL)
+    public void missingFileFailsFast() throws IOException {
+        Path file = Files.createTempDirectory("config-test").resolve("missing.properties");
+        long start = System.nanoTime();
+        try {
+            new Config(file.toString());
+        } finally {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            Assert.assertTrue(elapsed < 1000, "Took " + elapsed + " ms to fail");
+        }
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static String awaitValue(Config config, String key, String expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + RELOAD_TIMEOUT_MILLIS;
+        String value = config.ReadProperty(key);
+        while (!expected.equals(value) && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+            value = config.ReadProperty(key);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,60 @@
+package test;
+
+import com.zwift.elements.EventCard;
+import com.zwift.elements.EventCardIterator;
+import com.zwift.elements.Events;
+import com.zwift.framework.WebDriverSetup;
+import io.qameta.allure.*;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Validates the streaming events iterator against a local listing that lazy-loads thousands of synthetic cards.
+ */
+@Epic("Framework")
+@Feature("Events Streaming")
+public class EventStreamTest extends WebDriverSetup {
+
+    private static final int TOTAL_EVENTS = 5000;
+    private static final int BATCH_SIZE = 50;
+
+    @Test(description = "Stream every event of an infinite-scroll listing")
+    @Severity(SeverityLevel.NORMAL)
+    @Description("Every synthetic event is streamed once, with flat batch latency and a bounded de-duplication window")
+    public void streamThousandsOfEvents() {
+        navigate(getClass().getResource("/fixtures/events-infinite.html") + "?total=" + TOTAL_EVENTS);
+
+        EventCardIterator iterator = new Events(getDriver()).iterateEvents(BATCH_SIZE);
+        Set<String> ids = new HashSet<>();
+        List<Long> batchMillis = new ArrayList<>();
+        int batches = 0;
+        while (iterator.hasNext()) {
+            EventCard card = iterator.next();
+            Assert.assertTrue(ids.add(card.getId()), "Duplicate event streamed: " + card);
+            if (iterator.getBatches() != batches) {
+                batches = iterator.getBatches();
+                batchMillis.add(iterator.getLastBatchDuration().toMillis());
+            }
+        }
+
+        Assert.assertEquals(ids.size(), TOTAL_EVENTS, "Streamed events");
+        Assert.assertTrue(iterator.getSeenWindowSize() <= 1024, "Seen window grew to " + iterator.getSeenWindowSize());
+
+        int sample = batchMillis.size() / 10;
+        long early = median(batchMillis.subList(0, sample));
+        long late = median(batchMillis.subList(batchMillis.size() - sample, batchMillis.size()));
+        Assert.assertTrue(late <= early * 3 + 50, "Batch latency grew from " + early + " ms to " + late + " ms");
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+}
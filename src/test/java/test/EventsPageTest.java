@@ -1,16 +1,14 @@
 package test;
 
+import com.zwift.elements.EventListing;
 import com.zwift.elements.Events;
 import com.zwift.elements.FilterEventsMenu;
 import com.zwift.elements.MainNav;
 import com.zwift.framework.WebDriverSetup;
 import com.zwift.framework.helpers.Helper;
 import io.qameta.allure.*;
-import org.openqa.selenium.WebElement;
 import org.testng.annotations.Test;
 
-import java.util.List;
-
 /**
  *
  */
@@ -23,20 +21,20 @@ public class EventsPageTest extends WebDriverSetup {
     @Severity(SeverityLevel.NORMAL)
     @Description("Filtering for Events Changes Results")
     public void userFilterForEvent() {
-        new Helper(driver).acceptCookie();
-        MainNav mainNav = new MainNav(driver);
+        new Helper(getDriver()).acceptCookie();
+        MainNav mainNav = new MainNav(getDriver());
         mainNav.clickMenuButton();
         mainNav.clickEventsLink();
-        Events events = new Events(driver);
+        Events events = new Events(getDriver());
         events.verifyPageLoads();
-        List<WebElement> initialEvents = events.getEvents();
+        EventListing initialEvents = events.getEventListing();
         events.clickFilterEventsButton();
-        FilterEventsMenu filterEventsMenu = new FilterEventsMenu(driver);
+        FilterEventsMenu filterEventsMenu = new FilterEventsMenu(getDriver());
         filterEventsMenu.clickCycling();
         filterEventsMenu.clickGroupRide();
         filterEventsMenu.clickNight();
         filterEventsMenu.clickApplyFilters();
-        List<WebElement> filteredEvents = events.getEvents();
+        EventListing filteredEvents = events.getEventListing(initialEvents);
         events.verifyEventChanged(initialEvents, filteredEvents);
     }
 
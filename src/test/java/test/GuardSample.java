@@ -0,0 +1,29 @@
+package test;
+
+import com.zwift.framework.health.EnvironmentGuard;
+import org.testng.ITestResult;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Sample methods run by the circuit breaker test, set up like browser tests: the guard admits each one first.
+ */
+public class GuardSample {
+
+    @BeforeMethod
+    public void admit(ITestResult result) {
+        EnvironmentGuard.admit(result);
+    }
+
+    @Test(priority = 1)
+    public void first() {
+    }
+
+    @Test(priority = 2)
+    public void second() {
+    }
+
+    @Test(priority = 3)
+    public void third() {
+    }
+}
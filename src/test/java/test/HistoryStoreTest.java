@@ -0,0 +1,110 @@
+package test;
+
+import com.zwift.framework.sharding.HistoryStore;
+import com.zwift.framework.sharding.TestHistory;
+import io.qameta.allure.*;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Appends runs to the test history store and queries it, without a browser.
+ */
+@Epic("Framework")
+@Feature("Test History")
+public class HistoryStoreTest {
+
+    private static final String LOGIN = "test.Sample.login";
+    private static final String SEARCH = "test.Sample.search";
+
+    @Test(description = "The index answers the latest runs and flakiness, and is rebuilt from the segments")
+    @Severity(SeverityLevel.NORMAL)
+    public void queriesSurviveReopening() throws IOException {
+        Path directory = Files.createTempDirectory("test-history");
+        HistoryStore store = HistoryStore.open(directory);
+        Assert.assertTrue(store.isEmpty());
+        for (int run = 1; run <= 6; run++) {
+            Map<String, List<TestHistory.Run>> results = new HashMap<>();
+            results.put(LOGIN, Collections.singletonList(new TestHistory.Run("passed", run * 1000L, 100 + run)));
+            results.put(SEARCH, Collections.singletonList(new TestHistory.Run(run % 2 == 0 ? "failed" : "passed",
+                    run * 1000L + 200, 50)));
+            store.append(results);
+        }
+        check(store);
+        check(HistoryStore.open(directory));
+
+        Files.delete(directory.resolve("index.bin"));
+        check(HistoryStore.open(directory));
+    }
+
+    @Test(description = "Compaction keeps the latest runs only")
+    @Severity(SeverityLevel.NORMAL)
+    public void compactionKeepsLatestRuns() throws IOException {
+        Path directory = Files.createTempDirectory("test-history");
+        HistoryStore store = HistoryStore.open(directory);
+        for (int run = 1; run <= 10; run++) {
+            store.append(Collections.singletonMap(LOGIN,
+                    Collections.singletonList(new TestHistory.Run(run > 7 ? "broken" : "passed", run, 10))));
+        }
+        store.compact(3);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            Assert.assertEquals(files.filter(file -> file.getFileName().toString().startsWith("segment-")).count(), 1);
+        }
+        Files.delete(directory.resolve("index.bin"));
+        HistoryStore compacted = HistoryStore.open(directory);
+        Assert.assertEquals(compacted.lastRuns(LOGIN, 50).size(), 3);
+        Assert.assertEquals(compacted.failureRate(LOGIN), 1.0, 0.001);
+    }
+
+    @Test(description = "A torn block followed by later runs ends its segment when the index is rebuilt")
+    @Severity(SeverityLevel.NORMAL)
+    public void tornBlockEndsTheRebuild() throws IOException {
+        Path directory = Files.createTempDirectory("test-history");
+        HistoryStore store = HistoryStore.open(directory);
+        store.append(Collections.singletonMap(LOGIN, Collections.singletonList(new TestHistory.Run("passed", 1, 10))));
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.getFileName().toString().startsWith("segment-")).findFirst()
+                    .orElseThrow(AssertionError::new);
+        }
+        // Remains of a block cut short whose length reads as negative
+        Files.write(segment, new byte[]{(byte) 0xff, (byte) 0xff, 0, 0}, StandardOpenOption.APPEND);
+        HistoryStore.open(directory).append(Collections.singletonMap(SEARCH,
+                Collections.singletonList(new TestHistory.Run("failed", 2, 20))));
+        Files.delete(directory.resolve("index.bin"));
+        HistoryStore negative = HistoryStore.open(directory);
+
+        // Remains whose length reads as almost 2 GB
+        Files.write(segment, new byte[]{0x7f, (byte) 0xff, (byte) 0xff, 0, 1, 2, 3});
+        Files.delete(directory.resolve("index.bin"));
+        HistoryStore huge = HistoryStore.open(directory);
+
+        Assert.assertEquals(negative.getTests(), Collections.singleton(LOGIN), "Runs before the torn block are kept");
+        Assert.assertEquals(negative.lastRuns(LOGIN, 50).size(), 1);
+        Assert.assertTrue(huge.isEmpty());
+    }
+
+    private static void check(HistoryStore store) {
+        Assert.assertEquals(store.getTests(), new TreeSet<>(Arrays.asList(LOGIN, SEARCH)));
+        List<Long> durations = store.lastRuns(LOGIN, 3).stream().map(TestHistory.Run::getDurationMillis)
+                .collect(Collectors.toList());
+        Assert.assertEquals(durations, Arrays.asList(106L, 105L, 104L), "Most recent first");
+        Assert.assertEquals(store.flakiness(LOGIN), 0.0, 0.001);
+        Assert.assertEquals(store.flakiness(SEARCH), 1.0, 0.001, "Every run changes status");
+        Assert.assertEquals(store.failureRate(SEARCH), 0.5, 0.001);
+        Assert.assertEquals(store.toHistory().getRuns(SEARCH).get(0).getStatus(), "failed");
+    }
+}
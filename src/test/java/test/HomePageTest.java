@@ -17,8 +17,8 @@ public class HomePageTest extends WebDriverSetup {
     @Description("Home Page Loads Test")
     @Severity(SeverityLevel.CRITICAL)
     public void homePageLoads() {
-        new Helper(driver).acceptCookie();
-        Home home = new Home(driver);
+        new Helper(getDriver()).acceptCookie();
+        Home home = new Home(getDriver());
         home.verifyPageLoads();
         home.verifyVideoDisplayed();
     }
@@ -0,0 +1,71 @@
+package test;
+
+import com.zwift.framework.helpers.Helper;
+import com.zwift.framework.logging.Log;
+import io.qameta.allure.*;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Logger;
+import org.apache.logging.log4j.core.async.AsyncLoggerConfig;
+import org.testng.Assert;
+import org.testng.ITestResult;
+import org.testng.Reporter;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Framework messages are written by an async logger and still end up in the test's Reporter output, in order.
+ */
+@Epic("Framework")
+@Feature("Logging")
+public class LoggingTest {
+
+    // Only com.zwift loggers are async
+    private static final Log log = Log.of(Helper.class);
+
+    @Test(description = "Framework loggers are async and their messages reach the Reporter output of the test")
+    @Severity(SeverityLevel.NORMAL)
+    public void messagesReachReporterOutput() {
+        Assert.assertTrue(((Logger) LogManager.getLogger(Helper.class)).get() instanceof AsyncLoggerConfig,
+                "com.zwift loggers are async");
+
+        for (int i = 0; i < 100; i++) {
+            log.info("Message {} of {}", i, 100);
+        }
+        ITestResult result = Reporter.getCurrentTestResult();
+        Log.await(result, Duration.ofSeconds(5));
+
+        List<String> output = Reporter.getOutput(result);
+        Assert.assertEquals(output.size(), 100, output.toString());
+        Assert.assertEquals(output.get(0), "Message 0 of 100");
+        Assert.assertEquals(output.get(99), "Message 99 of 100");
+    }
+
+    @Test(description = "A long test log is streamed to a file capped to its head and tail, Reporter keeps 1000 lines")
+    @Severity(SeverityLevel.NORMAL)
+    public void longLogKeepsHeadAndTail() throws IOException {
+        StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            padding.append('x');
+        }
+        for (int i = 0; i < 12_000; i++) {
+            log.info("Line {} {}", i, padding);
+        }
+        ITestResult result = Reporter.getCurrentTestResult();
+        Log.await(result, Duration.ofSeconds(30));
+        Path file = Log.closeLog(result);
+
+        Assert.assertEquals(Reporter.getOutput(result).size(), 1001);
+        Assert.assertTrue(Files.size(file) <= 1024 * 1024 + 100, "Capped at 1 MB, was " + Files.size(file));
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        Assert.assertTrue(lines.get(0).startsWith("Line 0 "), lines.get(0));
+        Assert.assertTrue(lines.get(lines.size() - 1).startsWith("Line 11999 "), lines.get(lines.size() - 1));
+        Assert.assertTrue(lines.stream().anyMatch(line -> line.matches("\\.\\.\\. \\d+ lines \\(\\d+ characters\\) omitted \\.\\.\\.")));
+        Files.delete(file);
+    }
+}
@@ -0,0 +1,31 @@
+package test;
+
+import com.zwift.elements.Home;
+import com.zwift.framework.Base;
+import com.zwift.framework.Environment;
+import com.zwift.framework.WebDriverSetup;
+import org.openqa.selenium.WebDriver;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.testng.xml.XmlSuite;
+
+/**
+ * Sample method run by the stress test with browser=inmemory, which runs {@link ParallelSample} in a suite of its own
+ * while holding a session, the way a framework test runs sample suites.
+ */
+public class NestingSample extends WebDriverSetup {
+
+    @Test
+    public void runsSample() {
+        WebDriver session = getDriver();
+        Environment environment = Base.getEnvironment();
+
+        ParallelSample.reset();
+        ParallelExecutionTest.runSample(ParallelSample.class, XmlSuite.ParallelMode.NONE, 1);
+
+        Assert.assertSame(Base.getEnvironment(), environment, "Environment was replaced by the sample suite");
+        Assert.assertFalse(ParallelSample.sessionsUsed.contains(session), "Sample suite used this suite's session");
+        // Fails if the sample suite quit the sessions of this suite
+        new Home(session).verifyPageLoads();
+    }
+}
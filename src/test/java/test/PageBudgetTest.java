@@ -0,0 +1,42 @@
+package test;
+
+import com.zwift.elements.Events;
+import com.zwift.elements.Home;
+import com.zwift.elements.MainNav;
+import com.zwift.framework.WebDriverSetup;
+import com.zwift.framework.helpers.Helper;
+import io.qameta.allure.*;
+import org.testng.annotations.Test;
+
+/**
+ * Checks the pages against budgets.properties. Runs in its own test of the suite with intercept=false, so the hero
+ * video and every third-party request are loaded and counted.
+ */
+@Epic("JIRA-1234")
+@Feature("Performance")
+public class PageBudgetTest extends WebDriverSetup {
+
+    @Test(description = "Home Page Within Budget")
+    @Description("Home page LCP, transfer bytes, requests and long tasks are within budget")
+    @Severity(SeverityLevel.NORMAL)
+    public void homePageWithinBudget() {
+        new Helper(getDriver()).acceptCookie();
+        Home home = new Home(getDriver());
+        home.verifyPageLoads();
+        home.verifyWithinBudget();
+    }
+
+    @Test(description = "Events Page Within Budget")
+    @Description("What the events listing loads after the home page is within budget")
+    @Severity(SeverityLevel.NORMAL)
+    public void eventsPageWithinBudget() {
+        new Helper(getDriver()).acceptCookie();
+        MainNav mainNav = new MainNav(getDriver());
+        mainNav.clickMenuButton();
+        mainNav.clickEventsLink();
+        Events events = new Events(getDriver());
+        events.verifyPageLoads();
+        events.verifyWithinBudget();
+    }
+
+}
@@ -0,0 +1,72 @@
+package test;
+
+import com.zwift.elements.EventListing;
+import com.zwift.elements.Events;
+import com.zwift.elements.FilterEventsMenu;
+import com.zwift.elements.Home;
+import com.zwift.elements.MainNav;
+import com.zwift.framework.WebDriverSetup;
+import com.zwift.framework.driver.InMemoryDriver;
+import com.zwift.framework.helpers.Helper;
+import io.qameta.allure.*;
+import org.openqa.selenium.By;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Runs the page objects against the local fixtures in src/test/resources/fixtures with browser=inmemory, no browser
+ * process involved.
+ */
+@Epic("Framework")
+@Feature("In-Memory Driver")
+public class PageObjectTest extends WebDriverSetup {
+
+    @Test(description = "Sessions are in-process and start on the fixture home page")
+    @Severity(SeverityLevel.NORMAL)
+    public void homePageLoads() {
+        Assert.assertTrue(getDriver() instanceof InMemoryDriver, "Session: " + getDriver());
+        Home home = new Home(getDriver());
+        home.verifyPageLoads();
+        home.verifyVideoDisplayed();
+    }
+
+    @Test(description = "Accepting the cookies removes the consent banner, and does nothing once accepted")
+    @Severity(SeverityLevel.NORMAL)
+    public void acceptCookieOnce() {
+        Helper helper = new Helper(getDriver());
+        helper.acceptCookie();
+        Assert.assertTrue(getDriver().findElements(By.id("truste-consent-button")).isEmpty(),
+                "Consent banner still displayed");
+        helper.acceptCookie();
+    }
+
+    @Test(description = "The main menu leads to the events page")
+    @Severity(SeverityLevel.NORMAL)
+    public void navigateToEvents() {
+        MainNav mainNav = new MainNav(getDriver());
+        mainNav.clickMenuButton();
+        mainNav.clickEventsLink();
+        new Events(getDriver()).verifyPageLoads();
+    }
+
+    @Test(description = "Filtering the events changes the listing")
+    @Severity(SeverityLevel.NORMAL)
+    public void filterEvents() {
+        navigate(getProperty("URL") + "/events");
+        Events events = new Events(getDriver());
+        EventListing initialEvents = events.getEventListing();
+        Assert.assertEquals(initialEvents.size(), 5, "Fixture events");
+
+        events.clickFilterEventsButton();
+        FilterEventsMenu filterEventsMenu = new FilterEventsMenu(getDriver());
+        filterEventsMenu.clickCycling();
+        filterEventsMenu.clickGroupRide();
+        filterEventsMenu.clickNight();
+        filterEventsMenu.clickApplyFilters();
+        EventListing filteredEvents = events.getEventListing(initialEvents);
+
+        events.verifyEventChanged(initialEvents, filteredEvents);
+        Assert.assertEquals(filteredEvents.size(), 2, "Night cycling group rides: " + filteredEvents.getCards());
+        Assert.assertEquals(events.getEvents().size(), 2, "Displayed events");
+    }
+}
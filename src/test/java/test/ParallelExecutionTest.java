@@ -0,0 +1,133 @@
+package test;
+
+import com.zwift.framework.Base;
+import com.zwift.framework.Environment;
+import com.zwift.framework.driver.DriverPool;
+import com.zwift.framework.driver.InMemoryDriver;
+import com.zwift.framework.health.CircuitBreaker;
+import com.zwift.framework.health.EnvironmentGuard;
+import io.qameta.allure.*;
+import org.openqa.selenium.WebDriver;
+import org.testng.Assert;
+import org.testng.TestNG;
+import org.testng.annotations.Test;
+import org.testng.xml.XmlClass;
+import org.testng.xml.XmlSuite;
+import org.testng.xml.XmlTest;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stress test for parallel execution: runs the same {@link com.zwift.framework.WebDriverSetup} methods serially and
+ * with parallel="methods" and compares the wall time. Sessions are in-memory browsers on the local fixtures, so the
+ * test covers the framework's setup, pooling and listeners without starting Chrome. Also checks that the pool quits
+ * sessions it cannot reset.
+ */
+@Epic("Framework")
+@Feature("Parallel Execution")
+public class ParallelExecutionTest {
+
+    private static final int THREADS = 4;
+    static final long WORK_MILLIS = 400;
+
+    @Test(description = "Parallel methods finish in about 1/N of the serial time")
+    @Severity(SeverityLevel.NORMAL)
+    public void parallelMethodsScaleWithThreadCount() {
+        ParallelSample.reset();
+        long serial = runSample(ParallelSample.class, XmlSuite.ParallelMode.NONE, 1);
+        ParallelSample.reset();
+        long parallel = runSample(ParallelSample.class, XmlSuite.ParallelMode.METHODS, THREADS);
+
+        double speedup = (double) serial / parallel;
+        Assert.assertTrue(speedup > THREADS * 0.75,
+                "Expected about " + THREADS + "x speedup, serial " + serial + " ms, parallel " + parallel + " ms");
+        Assert.assertTrue(ParallelSample.sessionsUsed.size() <= THREADS,
+                "Pool created " + ParallelSample.sessionsUsed.size() + " sessions");
+        Assert.assertFalse(ParallelSample.sharedSession, "A session was used by two tests at the same time");
+    }
+
+    @Test(description = "A session that fails its reset with any exception is quit, the pool keeps its size")
+    @Severity(SeverityLevel.NORMAL)
+    public void failedResetQuitsTheSession() throws InterruptedException {
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger quit = new AtomicInteger();
+        DriverPool pool = new DriverPool(1, () -> {
+            created.incrementAndGet();
+            return new InMemoryDriver() {
+                @Override
+                public void quit() {
+                    quit.incrementAndGet();
+                    super.quit();
+                }
+            };
+        });
+        WebDriver first = pool.acquire();
+        // No fixture, so a plain text page on which HtmlUnit refuses to run the reset's script
+        first.get("https://zwift.com/no-such-page");
+        pool.release(first);
+        WebDriver second = pool.acquire();
+        int quitBeforeShutdown = quit.get();
+        pool.release(second);
+        pool.shutdown();
+
+        Assert.assertNotSame(second, first, "The session that failed its reset was handed out again");
+        Assert.assertEquals(quitBeforeShutdown, 1, "The session that failed its reset was not quit");
+        Assert.assertEquals(quit.get(), created.get(), "Every session the pool created was quit");
+    }
+
+    @Test(description = "A sample suite run by a test leaves the running suite's environment, breaker and sessions alone")
+    @Severity(SeverityLevel.NORMAL)
+    public void sampleSuiteKeepsTheEnclosingState() {
+        Environment environment = Base.getEnvironment();
+        CircuitBreaker breaker = EnvironmentGuard.getBreaker();
+
+        // NestingSample holds a session of its own suite while it runs ParallelSample
+        runSample(NestingSample.class, XmlSuite.ParallelMode.NONE, 1);
+
+        Assert.assertSame(Base.getEnvironment(), environment, "Environment of the running suite was replaced");
+        Assert.assertSame(EnvironmentGuard.getBreaker(), breaker, "Breaker of the running suite was replaced");
+    }
+
+    /**
+     * Runs the sample class alone in a suite with browser=inmemory.
+     *
+     * @return Wall time of the suite in milliseconds
+     */
+    static long runSample(Class<?> sample, XmlSuite.ParallelMode mode, int threads) {
+        XmlSuite suite = new XmlSuite();
+        suite.setName(sample.getSimpleName());
+        suite.setParallel(mode);
+        suite.setThreadCount(threads);
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("environment", "PROD");
+        parameters.put("browser", "inmemory");
+        parameters.put("config", "test/config.properties");
+        parameters.put("headless", "true");
+        parameters.put("healthProbe", "false");
+        suite.setParameters(parameters);
+        XmlTest test = new XmlTest(suite);
+        test.setName(sample.getSimpleName() + " " + mode);
+        test.setXmlClasses(Collections.singletonList(new XmlClass(sample)));
+
+        TestNG testNG = new TestNG();
+        testNG.setUseDefaultListeners(false);
+        testNG.setVerbose(0);
+        // Keeps service loaded listeners such as Allure from reporting the sample methods
+        testNG.setServiceLoaderClassLoader(new URLClassLoader(new URL[0], null));
+        testNG.setXmlSuites(Collections.singletonList(suite));
+
+        long start = System.nanoTime();
+        testNG.run();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assert.assertFalse(testNG.hasFailure() || testNG.getStatus() != 0,
+                sample.getSimpleName() + " suite failed in mode " + mode);
+        return elapsed;
+    }
+}
@@ -0,0 +1,76 @@
+package test;
+
+import com.zwift.elements.Home;
+import com.zwift.framework.WebDriverSetup;
+import com.zwift.framework.driver.InMemoryDriver;
+import org.openqa.selenium.WebDriver;
+import org.testng.Assert;
+import org.testng.ITestResult;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sample methods run by the stress test with browser=inmemory, each opening the fixture home page through
+ * {@link WebDriverSetup} and holding its pooled session for a fixed amount of time.
+ */
+public class ParallelSample extends WebDriverSetup {
+
+    static final Set<WebDriver> sessionsUsed = ConcurrentHashMap.newKeySet();
+    static final Set<WebDriver> inUse = ConcurrentHashMap.newKeySet();
+    static volatile boolean sharedSession;
+
+    static void reset() {
+        sessionsUsed.clear();
+        inUse.clear();
+        sharedSession = false;
+    }
+
+    // Runs after WebDriverSetup.openRemoteBrowser, which leased the session
+    @BeforeMethod
+    public void lease() {
+        sessionsUsed.add(getDriver());
+        if (!inUse.add(getDriver())) {
+            sharedSession = true;
+        }
+    }
+
+    // Runs before WebDriverSetup.breakDown, which hands the session back
+    @AfterMethod
+    public void handBack(ITestResult result) {
+        inUse.remove(getDriver());
+    }
+
+    @Test
+    public void first() throws InterruptedException {
+        work();
+    }
+
+    @Test
+    public void second() throws InterruptedException {
+        work();
+    }
+
+    @Test
+    public void third() throws InterruptedException {
+        work();
+    }
+
+    @Test
+    public void fourth() throws InterruptedException {
+        work();
+    }
+
+    /**
+     * Checks the page under test, then holds the session the way a test waiting on a real site would.
+     */
+    private void work() throws InterruptedException {
+        Assert.assertTrue(getDriver() instanceof InMemoryDriver, "Session: " + getDriver());
+        new Home(getDriver()).verifyPageLoads();
+        TimeUnit.MILLISECONDS.sleep(ParallelExecutionTest.WORK_MILLIS);
+    }
+}
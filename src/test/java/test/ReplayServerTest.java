@@ -0,0 +1,148 @@
+package test;
+
+import com.zwift.framework.replay.ReplayArchive;
+import com.zwift.framework.replay.ReplayServer;
+import io.qameta.allure.*;
+import org.apache.commons.io.IOUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Serves a small archive from the replay server over plain sockets and HTTPS, without a browser.
+ */
+@Epic("Framework")
+@Feature("Record and Replay")
+public class ReplayServerTest {
+
+    private static final int CLIENTS = 16;
+
+    private Path directory;
+    private ReplayServer server;
+    private byte[] script;
+
+    @BeforeClass
+    public void startServer() throws Exception {
+        directory = Files.createTempDirectory("replay-archive");
+        script = new byte[256 * 1024];
+        for (int i = 0; i < script.length; i++) {
+            script[i] = (byte) ('a' + i % 26);
+        }
+        ReplayArchive recorded = ReplayArchive.open(directory);
+        recorded.setProperty("URL", "https://zwift.com");
+        recorded.put("https://zwift.com/", 200, Collections.singletonMap("Content-Type", "text/html"),
+                "<title>Zwift</title>".getBytes(StandardCharsets.UTF_8));
+        recorded.put("http://cdn.zwift.com/app.js", 200, Collections.singletonMap("Content-Type", "application/javascript"), script);
+        recorded.put("https://127.0.0.1/", 301, Collections.singletonMap("Location", "https://zwift.com/"), new byte[0]);
+        recorded.save();
+
+        server = ReplayServer.start(ReplayArchive.open(directory));
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopServer() throws Exception {
+        server.stop();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Collections.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test(description = "Parallel clients get the recorded bodies, query strings and unknown URLs are handled")
+    @Severity(SeverityLevel.NORMAL)
+    public void servesArchiveToParallelClients() throws Exception {
+        long hits = server.getHits();
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<byte[]>> bodies = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                bodies.add(clients.submit(() -> get("cdn.zwift.com", "/app.js?v=" + System.nanoTime())));
+            }
+            for (Future<byte[]> body : bodies) {
+                Assert.assertEquals(body.get(), script, "Replayed body differs from the recorded one");
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+        Assert.assertEquals(new String(get("unknown.zwift.com", "/"), StandardCharsets.US_ASCII), "");
+        Assert.assertTrue(server.getMisses().contains("GET http://unknown.zwift.com/"), "Misses: " + server.getMisses());
+        Assert.assertEquals(server.getHits() - hits, CLIENTS);
+    }
+
+    @Test(description = "HTTPS responses, including redirects, are served with the recorded status and headers")
+    @Severity(SeverityLevel.NORMAL)
+    public void servesHttps() throws Exception {
+        SSLContext trustAll = SSLContext.getInstance("TLS");
+        trustAll.init(null, new TrustManager[]{new X509TrustManager() {
+            public void checkClientTrusted(X509Certificate[] chain, String authType) {
+            }
+
+            public void checkServerTrusted(X509Certificate[] chain, String authType) {
+            }
+
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+        }}, null);
+        HttpsURLConnection connection = (HttpsURLConnection) new URL("https://127.0.0.1:" + server.getHttpsPort() + "/").openConnection();
+        connection.setSSLSocketFactory(trustAll.getSocketFactory());
+        connection.setHostnameVerifier((host, session) -> true);
+        connection.setInstanceFollowRedirects(false);
+
+        Assert.assertEquals(connection.getResponseCode(), 301);
+        Assert.assertEquals(connection.getHeaderField("Location"), "https://zwift.com/");
+    }
+
+    /**
+     * Sends a request the way a browser mapped by host resolver rules would: to the server's address, with the
+     * original host in the Host header.
+     */
+    private byte[] get(String host, String path) throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getHttpPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET " + path + " HTTP/1.1\r\nHost: " + host + "\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            InputStream in = socket.getInputStream();
+            byte[] response = IOUtils.toByteArray(in);
+            int start = indexOf(response, "\r\n\r\n".getBytes(StandardCharsets.US_ASCII)) + 4;
+            byte[] body = new byte[response.length - start];
+            System.arraycopy(response, start, body, 0, body.length);
+            return body;
+        }
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        throw new IllegalStateException("No end of headers in response");
+    }
+}
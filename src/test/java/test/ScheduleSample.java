@@ -0,0 +1,26 @@
+package test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sample methods ordered by the scheduler test, listed in the opposite of the expected run order.
+ */
+public class ScheduleSample {
+
+    @Test
+    public void checkout() throws InterruptedException {
+        TimeUnit.MILLISECONDS.sleep(300);
+    }
+
+    @Test
+    public void login() {
+    }
+
+    @Test
+    public void search() {
+        Assert.fail("Fails on purpose");
+    }
+}
@@ -0,0 +1,29 @@
+package test;
+
+import org.testng.annotations.Test;
+
+/**
+ * Sample methods split across shards by the sharding test, each does nothing.
+ */
+public class ShardSample {
+
+    @Test
+    public void first() {
+    }
+
+    @Test
+    public void second() {
+    }
+
+    @Test
+    public void third() {
+    }
+
+    @Test
+    public void fourth() {
+    }
+
+    @Test
+    public void fifth() {
+    }
+}
@@ -0,0 +1,190 @@
+package test;
+
+import com.zwift.framework.sharding.HistoryStore;
+import com.zwift.framework.sharding.ShardInterceptor;
+import com.zwift.framework.sharding.ShardPlan;
+import com.zwift.framework.sharding.TestDurations;
+import com.zwift.framework.sharding.TestHistory;
+import com.zwift.framework.utils.Reports;
+import io.qameta.allure.*;
+import org.openqa.selenium.json.Json;
+import org.testng.Assert;
+import org.testng.ITestNGListener;
+import org.testng.ITestResult;
+import org.testng.TestListenerAdapter;
+import org.testng.TestNG;
+import org.testng.annotations.Test;
+import org.testng.xml.XmlClass;
+import org.testng.xml.XmlSuite;
+import org.testng.xml.XmlTest;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks the shard plan is balanced, reads past durations from Allure results, and that the shards of a suite run
+ * every test exactly once.
+ */
+@Epic("Framework")
+@Feature("Sharding")
+public class ShardingTest {
+
+    @Test(description = "Longest tests are spread first and every shard gets about the same time")
+    @Severity(SeverityLevel.NORMAL)
+    public void planIsBalanced() {
+        Map<String, Long> durations = new HashMap<>();
+        long[] millis = {90, 60, 50, 40, 30, 20, 10};
+        for (int i = 0; i < millis.length; i++) {
+            durations.put("test.Sample.m" + i, millis[i]);
+        }
+        ShardPlan plan = ShardPlan.of(durations.keySet(), TestDurations.of(durations, 0), 3);
+
+        Set<String> planned = new HashSet<>();
+        long total = 0;
+        for (int shard = 0; shard < 3; shard++) {
+            planned.addAll(plan.getTests(shard));
+            total += plan.getLoad(shard);
+            Assert.assertTrue(plan.getLoad(shard) >= 90 && plan.getLoad(shard) <= 110,
+                    "Shard " + shard + " has " + plan.getLoad(shard) + " ms: " + plan.getTests(shard));
+        }
+        Assert.assertEquals(planned, durations.keySet());
+        Assert.assertEquals(total, 300);
+    }
+
+    @Test(description = "Durations come from result files and report history, unknown tests get the default")
+    @Severity(SeverityLevel.NORMAL)
+    public void durationsFromAllureResults() throws IOException {
+        Path results = Files.createTempDirectory("allure-results");
+        write(results.resolve("a-result.json"), "{\"fullName\":\"test.A.slow\",\"historyId\":\"h1\","
+                + "\"status\":\"passed\",\"start\":1000,\"stop\":5000}");
+        write(results.resolve("history/b-result.json"), "{\"fullName\":\"test.A.slow\",\"historyId\":\"h1\","
+                + "\"status\":\"skipped\",\"start\":2000,\"stop\":2001}");
+        write(results.resolve("history/history.json"), "{\"h1\":{\"items\":["
+                + "{\"status\":\"failed\",\"time\":{\"duration\":6000}},"
+                + "{\"status\":\"passed\",\"time\":{\"duration\":5000}}]}}");
+
+        TestDurations durations = TestDurations.load(results, 2000);
+        Assert.assertEquals(durations.estimate("test.A.slow"), 5000, "Median of the passed and failed runs");
+        Assert.assertFalse(durations.isKnown("test.A.fast"));
+        Assert.assertEquals(durations.estimate("test.A.fast"), 2000);
+        Assert.assertEquals(TestDurations.load(results, 0).estimate("test.A.fast"), 5000,
+                "Default is the median of the known tests");
+    }
+
+    @Test(description = "Running every shard of a suite runs each test exactly once")
+    @Severity(SeverityLevel.NORMAL)
+    public void shardsCoverTheSuiteOnce() throws IOException {
+        Path history = Files.createTempDirectory("allure-results");
+        List<String> all = new ArrayList<>();
+        for (String method : Arrays.asList("first", "second", "third", "fourth", "fifth")) {
+            all.add(ShardSample.class.getName() + "." + method);
+        }
+        List<String> ran = new ArrayList<>();
+        for (int shard = 1; shard <= 2; shard++) {
+            List<String> shardRan = runShard(shard + "/2", history);
+            Assert.assertFalse(shardRan.isEmpty(), "Shard " + shard + " ran nothing");
+            ran.addAll(shardRan);
+        }
+        Collections.sort(all);
+        Collections.sort(ran);
+        Assert.assertEquals(ran, all);
+    }
+
+    @Test(description = "Nodes with different local history stores agree on the plan")
+    @Severity(SeverityLevel.NORMAL)
+    public void localHistoryDoesNotChangeThePlan() throws IOException {
+        Path shared = Files.createTempDirectory("allure-results");
+        List<String> all = new ArrayList<>();
+        for (String method : Arrays.asList("first", "second", "third", "fourth", "fifth")) {
+            all.add(ShardSample.class.getName() + "." + method);
+        }
+        // Each node only recorded its own shard, with a different slow test
+        Path[] stores = {Files.createTempDirectory("test-history"), Files.createTempDirectory("test-history")};
+        for (int node = 0; node < stores.length; node++) {
+            Map<String, List<TestHistory.Run>> runs = new HashMap<>();
+            for (int i = 0; i < all.size(); i++) {
+                long duration = i == node * 4 ? 60_000 : 100;
+                runs.put(all.get(i), Collections.singletonList(new TestHistory.Run("passed", 1000 + i, duration)));
+            }
+            HistoryStore.open(stores[node]).append(runs);
+        }
+
+        List<String> ran = new ArrayList<>();
+        List<Object> plans = new ArrayList<>();
+        Map<String, String> previous = new HashMap<>();
+        for (String key : Arrays.asList("shard", "shard.history", "shard.default.ms", "history.store")) {
+            previous.put(key, System.getProperty(key));
+        }
+        try {
+            System.setProperty("shard.history", shared.toString());
+            System.setProperty("shard.default.ms", "1000");
+            for (int shard = 1; shard <= 2; shard++) {
+                // Configured like a node, from the system properties
+                System.setProperty("shard", shard + "/2");
+                System.setProperty("history.store", stores[shard - 1].toString());
+                ran.addAll(runShard(new ShardInterceptor()));
+                plans.add(new Json().toType(new String(Files.readAllBytes(
+                        Reports.directory().resolve("shard-plan-shard-sample.json")), StandardCharsets.UTF_8),
+                        List.class));
+            }
+        } finally {
+            previous.forEach((key, value) -> {
+                if (value == null) {
+                    System.clearProperty(key);
+                } else {
+                    System.setProperty(key, value);
+                }
+            });
+        }
+        Assert.assertEquals(plans.get(0), plans.get(1), "Both nodes planned the same shards");
+        Collections.sort(all);
+        Collections.sort(ran);
+        Assert.assertEquals(ran, all, "Every test ran on exactly one node");
+    }
+
+    private static List<String> runShard(String shard, Path history) {
+        return runShard(new ShardInterceptor(shard, history, 1000));
+    }
+
+    private static List<String> runShard(ShardInterceptor interceptor) {
+        XmlSuite suite = new XmlSuite();
+        suite.setName("Shard Sample");
+        XmlTest test = new XmlTest(suite);
+        test.setName("Shard Sample");
+        test.setXmlClasses(Collections.singletonList(new XmlClass(ShardSample.class)));
+
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        TestNG testNG = new TestNG();
+        testNG.setUseDefaultListeners(false);
+        testNG.setVerbose(0);
+        // Keeps service loaded listeners such as Allure from reporting the sample methods
+        testNG.setServiceLoaderClassLoader(new URLClassLoader(new URL[0], null));
+        testNG.setXmlSuites(Collections.singletonList(suite));
+        testNG.addListener(interceptor);
+        testNG.addListener((ITestNGListener) new TestListenerAdapter() {
+            @Override
+            public void onTestSuccess(ITestResult result) {
+                ran.add(result.getTestClass().getName() + "." + result.getMethod().getMethodName());
+            }
+        });
+        testNG.run();
+        return ran;
+    }
+
+    private static void write(Path file, String json) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,111 @@
+package test;
+
+import com.zwift.framework.sharding.TestHistory;
+import com.zwift.framework.sharding.TestScheduler;
+import com.zwift.framework.utils.Reports;
+import io.qameta.allure.*;
+import org.openqa.selenium.json.Json;
+import org.testng.Assert;
+import org.testng.ITestNGListener;
+import org.testng.ITestResult;
+import org.testng.TestListenerAdapter;
+import org.testng.TestNG;
+import org.testng.annotations.Test;
+import org.testng.xml.XmlClass;
+import org.testng.xml.XmlSuite;
+import org.testng.xml.XmlTest;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks tests are ordered by failure risk then duration, and that the time to first failure is reported.
+ */
+@Epic("Framework")
+@Feature("Test Scheduling")
+public class TestSchedulerTest {
+
+    @Test(description = "Recent failures and flaky tests are riskier than stable ones, new tests are in between")
+    @Severity(SeverityLevel.NORMAL)
+    public void riskFollowsHistory() {
+        double stable = TestScheduler.risk(runs("passed", "passed", "passed", "passed"));
+        double recentFailure = TestScheduler.risk(runs("failed", "passed", "passed", "passed"));
+        double oldFailure = TestScheduler.risk(runs("passed", "passed", "passed", "failed"));
+        double flaky = TestScheduler.risk(runs("passed", "failed", "passed", "failed"));
+
+        Assert.assertEquals(stable, 0.0, 0.001);
+        Assert.assertTrue(recentFailure > oldFailure, recentFailure + " <= " + oldFailure);
+        Assert.assertTrue(flaky > recentFailure, flaky + " <= " + recentFailure);
+        Assert.assertEquals(TestScheduler.risk(Collections.emptyList()), 0.5, 0.001);
+        Assert.assertEquals(TestScheduler.risk(runs("skipped", "passed")), 0.0, 0.001, "Skipped runs are ignored");
+    }
+
+    @Test(description = "The failing test runs first, new tests next, then stable ones shortest first, across classes")
+    @Severity(SeverityLevel.NORMAL)
+    @SuppressWarnings("unchecked")
+    public void riskiestFirstThenShortest() throws IOException {
+        Path history = Files.createTempDirectory("allure-results");
+        String sample = ScheduleSample.class.getName();
+        for (int run = 1; run <= 3; run++) {
+            result(history, sample + ".checkout", "passed", run * 10_000, 300);
+            result(history, sample + ".login", "passed", run * 10_000 + 1000, 5);
+            result(history, sample + ".search", run == 3 ? "failed" : "passed", run * 10_000 + 2000, 50);
+        }
+
+        XmlSuite suite = new XmlSuite();
+        suite.setName("Schedule Sample");
+        XmlTest test = new XmlTest(suite);
+        test.setName("Schedule Sample");
+        // Listed first but never ran, so its tests go between the failing and the stable ones
+        test.setXmlClasses(Arrays.asList(new XmlClass(ShardSample.class), new XmlClass(ScheduleSample.class)));
+
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        TestNG testNG = new TestNG();
+        testNG.setUseDefaultListeners(false);
+        testNG.setVerbose(0);
+        // Keeps service loaded listeners such as Allure from reporting the sample methods
+        testNG.setServiceLoaderClassLoader(new URLClassLoader(new URL[0], null));
+        testNG.setXmlSuites(Collections.singletonList(suite));
+        testNG.addListener((ITestNGListener) new TestScheduler(true, history));
+        testNG.addListener((ITestNGListener) new TestListenerAdapter() {
+            @Override
+            public void onTestStart(ITestResult result) {
+                started.add(result.getMethod().getRealClass().getSimpleName() + "." + result.getMethod().getMethodName());
+            }
+        });
+        testNG.run();
+
+        Assert.assertEquals(started.size(), 8, started.toString());
+        Assert.assertEquals(started.get(0), "ScheduleSample.search");
+        Assert.assertTrue(started.subList(1, 6).stream().allMatch(name -> name.startsWith("ShardSample.")),
+                started.toString());
+        Assert.assertEquals(started.subList(6, 8), Arrays.asList("ScheduleSample.login", "ScheduleSample.checkout"));
+        Map<String, Object> report = new Json().toType(new String(Files.readAllBytes(
+                Reports.directory().resolve("test-schedule-schedule-sample.json")), StandardCharsets.UTF_8), Map.class);
+        Assert.assertEquals(report.get("firstFailure"), sample + ".search");
+        Assert.assertTrue(((Number) report.get("timeToFirstFailureMillis")).longValue() < 300,
+                "First failure after " + report.get("timeToFirstFailureMillis") + " ms");
+    }
+
+    private static List<TestHistory.Run> runs(String... statuses) {
+        List<TestHistory.Run> runs = new ArrayList<>();
+        for (int i = 0; i < statuses.length; i++) {
+            runs.add(new TestHistory.Run(statuses[i], statuses.length - i, 100));
+        }
+        return runs;
+    }
+
+    private static void result(Path history, String test, String status, long start, long duration) throws IOException {
+        Files.write(history.resolve(start + "-result.json"), ("{\"fullName\":\"" + test + "\",\"status\":\"" + status
+                + "\",\"start\":" + start + ",\"stop\":" + (start + duration) + "}").getBytes(StandardCharsets.UTF_8));
+    }
+}
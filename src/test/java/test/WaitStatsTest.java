@@ -0,0 +1,117 @@
+package test;
+
+import com.zwift.framework.metrics.WaitStats;
+import io.qameta.allure.*;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Derives the timeout and polling interval of waits from the past durations of each locator.
+ */
+@Epic("Framework")
+@Feature("Adaptive Waits")
+public class WaitStatsTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration POLL = Duration.ofMillis(200);
+
+    @Test(description = "Locators without enough history use the defaults")
+    @Severity(SeverityLevel.NORMAL)
+    public void defaultsUntilEnoughSamples() {
+        String locator = "VISIBLE By.cssSelector: .wait-stats-test-new";
+        for (int i = 0; i < 9; i++) {
+            WaitStats.record(locator, TimeUnit.MILLISECONDS.toNanos(50), false);
+        }
+        WaitStats.Budget budget = WaitStats.budget(locator, TIMEOUT, POLL);
+        WaitStats.forget(locator);
+        Assert.assertFalse(budget.isAdaptive());
+        Assert.assertEquals(budget.getTimeout(), TIMEOUT);
+        Assert.assertEquals(budget.getPoll(), POLL);
+    }
+
+    @Test(description = "Fast locators poll often and time out early, slow ones get longer timeouts up to the cap")
+    @Severity(SeverityLevel.NORMAL)
+    public void budgetFollowsLatencies() {
+        String fast = "CLICKABLE By.cssSelector: .wait-stats-test-fast";
+        String slow = "CLICKABLE By.cssSelector: .wait-stats-test-slow";
+        String timingOut = "VISIBLE By.cssSelector: .wait-stats-test-missing";
+        for (int i = 0; i < 20; i++) {
+            WaitStats.record(fast, TimeUnit.MILLISECONDS.toNanos(80), false);
+            WaitStats.record(slow, TimeUnit.MILLISECONDS.toNanos(i < 18 ? 2000 : 6000), false);
+            WaitStats.record(timingOut, TimeUnit.SECONDS.toNanos(10), i % 2 == 0);
+        }
+
+        WaitStats.Budget fastBudget = WaitStats.budget(fast, TIMEOUT, POLL);
+        WaitStats.Budget slowBudget = WaitStats.budget(slow, TIMEOUT, POLL);
+        WaitStats.Budget cappedBudget = WaitStats.budget(timingOut, TIMEOUT, POLL);
+        // Kept out of the history saved for the real locators
+        WaitStats.forget(fast);
+        WaitStats.forget(slow);
+        WaitStats.forget(timingOut);
+
+        Assert.assertTrue(fastBudget.isAdaptive());
+        Assert.assertEquals(fastBudget.getTimeout(), Duration.ofSeconds(2), "Never below the minimum timeout");
+        Assert.assertTrue(fastBudget.getPoll().toMillis() >= 19 && fastBudget.getPoll().toMillis() <= 21,
+                "p50/4 of 80 ms, was " + fastBudget.getPoll());
+
+        long timeout = slowBudget.getTimeout().toMillis();
+        Assert.assertTrue(timeout > 17_000 && timeout < 19_000, "p99x3 of 6 s, was " + slowBudget.getTimeout());
+        Assert.assertTrue(slowBudget.getPoll().toMillis() >= 480 && slowBudget.getPoll().toMillis() <= 520,
+                "p50/4 of 2 s, was " + slowBudget.getPoll());
+
+        Assert.assertEquals(cappedBudget.getTimeout(), Duration.ofSeconds(30), "Capped at the maximum timeout");
+        Assert.assertEquals(cappedBudget.getPoll(), Duration.ofSeconds(1), "Capped at the maximum poll");
+    }
+
+    @Test(description = "Timed out waits are not learned from, a failing locator keeps its timeout")
+    @Severity(SeverityLevel.NORMAL)
+    public void timeoutsDoNotRaiseTheTimeout() {
+        String locator = "VISIBLE By.cssSelector: .wait-stats-test-broken";
+        for (int i = 0; i < 20; i++) {
+            WaitStats.record(locator, TimeUnit.MILLISECONDS.toNanos(100), false);
+        }
+        Duration before = WaitStats.budget(locator, TIMEOUT, POLL).getTimeout();
+        for (int i = 0; i < 50; i++) {
+            WaitStats.record(locator, before.toNanos(), true);
+        }
+        WaitStats.Budget fallback = WaitStats.budget(locator, TIMEOUT, POLL);
+        WaitStats.record(locator, TimeUnit.MILLISECONDS.toNanos(100), false);
+        WaitStats.Budget after = WaitStats.budget(locator, TIMEOUT, POLL);
+        WaitStats.forget(locator);
+
+        Assert.assertEquals(before, Duration.ofSeconds(2));
+        Assert.assertFalse(fallback.isAdaptive());
+        Assert.assertEquals(fallback.getTimeout(), TIMEOUT, "Falls back to the caller's timeout after a timeout");
+        Assert.assertTrue(after.isAdaptive());
+        Assert.assertEquals(after.getTimeout(), before, "Timeouts do not move the learned timeout");
+    }
+
+    @Test(description = "A locator that became slower falls back to the caller's timeout until it learned the slower durations")
+    @Severity(SeverityLevel.NORMAL)
+    public void slowerLocatorRecovers() {
+        String locator = "VISIBLE By.cssSelector: .wait-stats-test-slower";
+        for (int i = 0; i < 200; i++) {
+            WaitStats.record(locator, TimeUnit.MILLISECONDS.toNanos(100), false);
+        }
+        Duration learned = WaitStats.budget(locator, TIMEOUT, POLL).getTimeout();
+        WaitStats.record(locator, learned.toNanos(), true);
+        long slower = TimeUnit.SECONDS.toNanos(4);
+        int fallbacks = 0;
+        WaitStats.Budget budget = WaitStats.budget(locator, TIMEOUT, POLL);
+        while (!budget.isAdaptive() && fallbacks < 100) {
+            Assert.assertEquals(budget.getTimeout(), TIMEOUT, "Long enough for the slower waits to succeed");
+            WaitStats.record(locator, slower, false);
+            fallbacks++;
+            budget = WaitStats.budget(locator, TIMEOUT, POLL);
+        }
+        WaitStats.forget(locator);
+
+        Assert.assertEquals(learned, Duration.ofSeconds(2));
+        Assert.assertTrue(fallbacks > 1 && fallbacks < 100, "Fell back until learned, was " + fallbacks + " waits");
+        Assert.assertTrue(budget.getTimeout().toNanos() >= slower, "Learned the slower durations, was "
+                + budget.getTimeout());
+    }
+}